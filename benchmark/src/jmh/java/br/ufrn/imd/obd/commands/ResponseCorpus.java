@@ -0,0 +1,102 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package br.ufrn.imd.obd.commands;
+
+/**
+ * Raw ELM327 responses, as read up to the '&gt;' prompt with echo and line
+ * feeds off, spaces and headers as the adapter defaults them.
+ * <p>
+ * The Mode 01 replies are the same on all buses; what changes is how the
+ * trouble codes and the VIN are framed: ISO-TP frames on CAN, one message per
+ * line on the older protocols.
+ */
+enum ResponseCorpus {
+
+    CAN(new String[]{
+            "SEARCHING...\r41 0C 0C 80\r\r",
+            "41 0C 1A F8\r\r",
+            "41 0D 3C\r\r",
+            "41 05 7B\r\r",
+            "41 10 01 5E\r\r",
+            "41 04 3C\r\r",
+            "41 42 37 5A\r\r",
+    },
+            "43 02 01 33 C3 00\r\r",
+            "014\r0: 49 02 01 31 48 47\r1: 42 48 34 31 4A 58 4D\r2: 4E 31 30 39 31 38 36\r\r"),
+
+    CAN_MULTI_FRAME(new String[]{
+            // engine and transmission ECUs both answering
+            "41 0D 3C\r41 0D 3C\r\r",
+            "41 0C 1A F8\r41 0C 1A F8\r\r",
+            "41 05 7B\r41 05 7C\r\r",
+    },
+            "00C\r0: 43 05 01 33 C3 00\r1: 01 00 12 34 02 17\r\r",
+            "014\r0: 49 02 01 57 56 57\r1: 5A 5A 5A 31 4A 5A 33\r2: 57 33 38 36 37 35 32\r\r"),
+
+    KWP(new String[]{
+            "41 0C 1A F8\r\r",
+            "41 0D 3C\r\r",
+            "41 05 7B\r\r",
+            "41 10 01 5E\r\r",
+            "41 04 3C\r\r",
+            "41 42 37 5A\r\r",
+    },
+            "43 01 33 C3 00 01 00\r43 12 34 00 00 00 00\r\r",
+            "49 02 01 00 00 00 31\r49 02 02 48 47 42 48\r49 02 03 34 31 4A 58\r"
+                    + "49 02 04 4D 4E 31 30\r49 02 05 39 31 38 36\r\r"),
+
+    ISO_9141(new String[]{
+            "41 0C 0C 80\r\r",
+            "41 0D 00\r\r",
+            "41 05 5A\r\r",
+            "41 0F 41\r\r",
+            "41 11 24\r\r",
+    },
+            "43 01 33 00 00 00 00\r\r",
+            "49 02 01 00 00 00 56\r49 02 02 46 31 4B 41\r49 02 03 32 33 35 38\r"
+                    + "49 02 04 35 32 31 30\r49 02 05 39 38 37 36\r\r"),
+
+    J1850(new String[]{
+            "41 0C 0C 80\r\r",
+            "41 0D 00\r\r",
+            "41 05 5A\r\r",
+            "41 0B 21\r\r",
+            "41 0E 8C\r\r",
+    },
+            "43 01 33 04 20 00 00\r\r",
+            "49 02 01 00 00 00 31\r49 02 02 47 31 4A 43\r49 02 03 35 34 34 34\r"
+                    + "49 02 04 52 37 32 35\r49 02 05 32 33 36 37\r\r");
+
+    /**
+     * Error responses, the same on every bus.
+     */
+    static final String[] ERRORS = {
+            "NO DATA\r\r",
+            "UNABLE TO CONNECT\r\r",
+            "BUS INIT: ...ERROR\r\r",
+            "?\r\r",
+            "STOPPED\r\r",
+            "7F 01 12\r\r",
+            "ERROR\r\r",
+    };
+
+    final String[] pids;
+    final String troubleCodes;
+    final String vin;
+
+    ResponseCorpus(String[] pids, String troubleCodes, String vin) {
+        this.pids = pids;
+        this.troubleCodes = troubleCodes;
+        this.vin = vin;
+    }
+}
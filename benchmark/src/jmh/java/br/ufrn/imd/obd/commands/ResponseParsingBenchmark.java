@@ -0,0 +1,194 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package br.ufrn.imd.obd.commands;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import br.ufrn.imd.obd.commands.control.ModuleVoltageCommand;
+import br.ufrn.imd.obd.commands.control.TimingAdvanceCommand;
+import br.ufrn.imd.obd.commands.control.TroubleCodesCommand;
+import br.ufrn.imd.obd.commands.control.VinCommand;
+import br.ufrn.imd.obd.commands.engine.LoadCommand;
+import br.ufrn.imd.obd.commands.engine.MassAirFlowCommand;
+import br.ufrn.imd.obd.commands.engine.RPMCommand;
+import br.ufrn.imd.obd.commands.engine.SpeedCommand;
+import br.ufrn.imd.obd.commands.engine.ThrottlePositionCommand;
+import br.ufrn.imd.obd.commands.pressure.IntakeManifoldPressureCommand;
+import br.ufrn.imd.obd.commands.temperature.AirIntakeTemperatureCommand;
+import br.ufrn.imd.obd.commands.temperature.EngineCoolantTemperatureCommand;
+import br.ufrn.imd.obd.connection.ResponseReader;
+import br.ufrn.imd.obd.enums.ResponseStatus;
+
+/**
+ * Throughput of each response decoding path, over the {@link ResponseCorpus}
+ * of one protocol. Each invocation decodes one response, cycling through the
+ * corpus.
+ * <p>
+ * The protected steps are benchmarked on their own with the raw data the
+ * commands keep after reading, as {@link ObdCommand#readRawData} leaves it;
+ * {@link #readResponse()} covers the whole path from the adapter bytes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ResponseParsingBenchmark {
+
+    @Param({"CAN", "CAN_MULTI_FRAME", "KWP", "ISO_9141", "J1850"})
+    String protocol;
+
+    private ObdCommand[] pidCommands;
+    private byte[][] pidBytes;
+    private String[] pidData;
+    private String[] statusInputs;
+    private String troubleCodesData;
+    private String vinData;
+
+    private final TroubleCodesCommand troubleCodes = new TroubleCodesCommand();
+    private final VinCommand vin = new VinCommand();
+    private final ResponseBytes bytes = new ResponseBytes();
+    private final ResponseReader reader = new ResponseReader(bytes);
+    private int next = 0;
+
+    @Setup
+    public void setUp() throws IOException {
+        ResponseCorpus corpus = ResponseCorpus.valueOf(protocol);
+
+        pidCommands = new ObdCommand[corpus.pids.length];
+        pidBytes = new byte[corpus.pids.length][];
+        pidData = new String[corpus.pids.length];
+        for (int i = 0; i < corpus.pids.length; i++) {
+            pidBytes[i] = (corpus.pids[i] + ResponseReader.PROMPT).getBytes(StandardCharsets.US_ASCII);
+            pidCommands[i] = new RPMCommand();
+            pidData[i] = read(pidCommands[i], corpus.pids[i]);
+            pidCommands[i] = commandFor(pidData[i]);
+        }
+
+        statusInputs = new String[corpus.pids.length + ResponseCorpus.ERRORS.length];
+        System.arraycopy(pidData, 0, statusInputs, 0, pidData.length);
+        for (int i = 0; i < ResponseCorpus.ERRORS.length; i++) {
+            statusInputs[pidData.length + i] = read(new RPMCommand(), ResponseCorpus.ERRORS[i]);
+        }
+
+        troubleCodesData = read(troubleCodes, corpus.troubleCodes);
+        vinData = read(vin, corpus.vin);
+    }
+
+    /**
+     * Runs the reading step of a command once, to get the raw data it keeps.
+     */
+    private String read(ObdCommand command, String response) throws IOException {
+        command.readRawData(new ByteArrayInputStream(
+                (response + ResponseReader.PROMPT).getBytes(StandardCharsets.US_ASCII)));
+        return command.rawData;
+    }
+
+    private static ObdCommand commandFor(String data) {
+        int pid = data.indexOf("41") + 2;  // after "SEARCHING..." if any
+        switch (data.substring(pid, pid + 2)) {
+            case "04":
+                return new LoadCommand();
+            case "05":
+                return new EngineCoolantTemperatureCommand();
+            case "0B":
+                return new IntakeManifoldPressureCommand();
+            case "0C":
+                return new RPMCommand();
+            case "0D":
+                return new SpeedCommand();
+            case "0E":
+                return new TimingAdvanceCommand();
+            case "0F":
+                return new AirIntakeTemperatureCommand();
+            case "10":
+                return new MassAirFlowCommand();
+            case "11":
+                return new ThrottlePositionCommand();
+            case "42":
+                return new ModuleVoltageCommand();
+            default:
+                throw new IllegalArgumentException("No command for " + data);
+        }
+    }
+
+    private int nextIndex(int length) {
+        if (next >= length) {
+            next = 0;
+        }
+        return next++;
+    }
+
+    @Benchmark
+    public int fillBuffer() {
+        int i = nextIndex(pidData.length);
+        ObdCommand command = pidCommands[i];
+        command.rawData = pidData[i];
+        command.fillBuffer();
+        return command.getBufferLength();
+    }
+
+    @Benchmark
+    public ResponseStatus classify() {
+        return ResponseStatus.classify(statusInputs[nextIndex(statusInputs.length)]);
+    }
+
+    @Benchmark
+    public String troubleCodes() {
+        ObdCommand command = troubleCodes;
+        command.rawData = troubleCodesData;
+        command.performCalculations();
+        return troubleCodes.getCalculatedResult();
+    }
+
+    @Benchmark
+    public String vin() {
+        ObdCommand command = vin;
+        command.rawData = vinData;
+        command.performCalculations();
+        return vin.getCalculatedResult();
+    }
+
+    @Benchmark
+    public ResponseStatus readResponse() throws IOException {
+        int i = nextIndex(pidBytes.length);
+        bytes.set(pidBytes[i]);
+        return pidCommands[i].readResponse(reader);
+    }
+
+    /**
+     * Reusable stream over one response.
+     */
+    private static final class ResponseBytes extends ByteArrayInputStream {
+        ResponseBytes() {
+            super(new byte[0]);
+        }
+
+        void set(byte[] response) {
+            buf = response;
+            pos = 0;
+            count = response.length;
+            mark = 0;
+        }
+    }
+}
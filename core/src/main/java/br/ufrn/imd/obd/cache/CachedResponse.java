@@ -0,0 +1,94 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package br.ufrn.imd.obd.cache;
+
+import java.util.Arrays;
+
+/**
+ * A response kept by a {@link ResponseCache}: the raw data of a command and
+ * the bytes decoded from it.
+ */
+public final class CachedResponse {
+
+    private final String rawData;
+    private final int[] bytes;
+    private final long storedAt;
+
+    /**
+     * Default constructor.
+     *
+     * @param rawData  the raw data of the command.
+     * @param bytes    the response bytes.
+     * @param storedAt when the response was received, in milliseconds since the epoch.
+     */
+    public CachedResponse(String rawData, int[] bytes, long storedAt) {
+        if (rawData == null || bytes == null) {
+            throw new IllegalArgumentException("Response must not be null");
+        }
+        this.rawData = rawData;
+        this.bytes = bytes.clone();
+        this.storedAt = storedAt;
+    }
+
+    /**
+     * <p>Getter for the field <code>rawData</code>.</p>
+     *
+     * @return the raw data of the command.
+     */
+    public String getRawData() {
+        return rawData;
+    }
+
+    /**
+     * <p>Getter for the field <code>bytes</code>.</p>
+     *
+     * @return a copy of the response bytes.
+     */
+    public int[] getBytes() {
+        return bytes.clone();
+    }
+
+    /**
+     * <p>Getter for the field <code>storedAt</code>.</p>
+     *
+     * @return when the response was received, in milliseconds since the epoch.
+     */
+    public long getStoredAt() {
+        return storedAt;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        CachedResponse that = (CachedResponse) o;
+        return storedAt == that.storedAt && rawData.equals(that.rawData) && Arrays.equals(bytes, that.bytes);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = rawData.hashCode();
+        result = 31 * result + Arrays.hashCode(bytes);
+        result = 31 * result + (int) (storedAt ^ (storedAt >>> 32));
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return rawData;
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package br.ufrn.imd.obd.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link MemoryResponseCache} saved to a local file, so a vehicle that
+ * reconnects is answered from it without any request to the adapter.
+ * <p>
+ * Use one file per vehicle, as given by {@link #forVehicle(File, String)}. The
+ * cache is saved after each new response; if that fails, it is retried by
+ * {@link #save()} and {@link #close()}.
+ * <pre>
+ * VinCommand vin = new VinCommand();
+ * vin.run(connection);
+ * FileResponseCache cache = FileResponseCache.forVehicle(dir, vin.getFormattedResult());
+ * connection.setCache(cache);
+ * </pre>
+ */
+public class FileResponseCache extends MemoryResponseCache implements Closeable {
+
+    private static final int MAGIC = 0x4f424443;  // "OBDC"
+    private static final int VERSION = 1;
+
+    private final File file;
+    private boolean dirty = false;
+
+    /**
+     * Creates a cache of {@link #DEFAULT_MAX_ENTRIES} responses that never
+     * expire, loading the responses already in the file.
+     *
+     * @param file the file the cache is saved to.
+     * @throws java.io.IOException if the file exists but can't be read.
+     */
+    public FileResponseCache(File file) throws IOException {
+        this(file, DEFAULT_MAX_ENTRIES, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a cache loading the responses already in the file.
+     *
+     * @param file       the file the cache is saved to.
+     * @param maxEntries the maximum number of responses.
+     * @param ttl        how long a response is kept, or 0 to keep it until evicted.
+     * @param unit       the unit of the time to live.
+     * @throws java.io.IOException if the file exists but can't be read.
+     */
+    public FileResponseCache(File file, int maxEntries, long ttl, TimeUnit unit) throws IOException {
+        super(maxEntries, ttl, unit);
+        this.file = file;
+        load();
+    }
+
+    /**
+     * Opens the cache of a vehicle in a directory.
+     * <p>
+     * Identify the vehicle by its VIN. The address of the adapter is known
+     * before connecting, but only identifies the vehicle if the adapter never
+     * moves to another car: otherwise that car would be answered with the
+     * cached responses of the first one.
+     *
+     * @param directory the directory holding the caches, created if needed.
+     * @param vehicleId the vehicle identifier.
+     * @return the cache of the vehicle.
+     * @throws java.io.IOException if the directory can't be created or the cache can't be read.
+     */
+    public static FileResponseCache forVehicle(File directory, String vehicleId) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can't create " + directory);
+        }
+        String name = vehicleId.replaceAll("[^A-Za-z0-9_-]", "_");
+        return new FileResponseCache(new File(directory, name + ".cache"));
+    }
+
+    /**
+     * <p>Getter for the field <code>file</code>.</p>
+     *
+     * @return the file the cache is saved to.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void put(String key, CachedResponse response) {
+        super.put(key, response);
+        trySave();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void remove(String key) {
+        super.remove(key);
+        trySave();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear() {
+        super.clear();
+        trySave();
+    }
+
+    private void trySave() {
+        try {
+            save();
+        } catch (IOException e) {
+            // kept in memory; save() and close() try again
+        }
+    }
+
+    /**
+     * Writes the responses to the file, replacing it atomically where the file
+     * system allows.
+     *
+     * @throws java.io.IOException if the file can't be written.
+     */
+    public synchronized void save() throws IOException {
+        dirty = true;
+        Map<String, CachedResponse> entries = getEntries();
+        File temp = new File(file.getPath() + ".tmp");
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(entries.size());
+            for (Map.Entry<String, CachedResponse> entry : entries.entrySet()) {
+                CachedResponse response = entry.getValue();
+                int[] bytes = response.getBytes();
+                out.writeUTF(entry.getKey());
+                out.writeLong(response.getStoredAt());
+                out.writeUTF(response.getRawData());
+                out.writeInt(bytes.length);
+                for (int b : bytes) {
+                    out.writeByte(b);
+                }
+            }
+        } finally {
+            out.close();
+        }
+
+        if (!temp.renameTo(file) && !(file.delete() && temp.renameTo(file))) {
+            throw new IOException("Can't replace " + file);
+        }
+        dirty = false;
+    }
+
+    private void load() throws IOException {
+        DataInputStream in;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        } catch (FileNotFoundException e) {
+            return;  // a vehicle not seen yet
+        }
+
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a response cache: " + file);
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String key = in.readUTF();
+                long storedAt = in.readLong();
+                String rawData = in.readUTF();
+                int[] bytes = new int[in.readInt()];
+                for (int j = 0; j < bytes.length; j++) {
+                    bytes[j] = in.readUnsignedByte();
+                }
+                super.put(key, new CachedResponse(rawData, bytes, storedAt));
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Saves the responses if the last save failed.
+     *
+     * @throws java.io.IOException if the file can't be written.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (dirty) {
+            save();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package br.ufrn.imd.obd.cache;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ResponseCache} held in memory.
+ * <p>
+ * Responses expire a fixed time after they were received, and when the cache
+ * is full the oldest response is evicted to make room for a new one.
+ */
+public class MemoryResponseCache implements ResponseCache {
+
+    /**
+     * Default maximum number of responses.
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 64;
+
+    private final ConcurrentMap<String, CachedResponse> entries = new ConcurrentHashMap<>();
+    private final int maxEntries;
+    private final long ttlMillis;
+
+    /**
+     * Creates a cache of {@link #DEFAULT_MAX_ENTRIES} responses that never expire.
+     */
+    public MemoryResponseCache() {
+        this(DEFAULT_MAX_ENTRIES, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * <p>Constructor for MemoryResponseCache.</p>
+     *
+     * @param maxEntries the maximum number of responses.
+     * @param ttl        how long a response is kept, or 0 to keep it until evicted.
+     * @param unit       the unit of the time to live.
+     */
+    public MemoryResponseCache(int maxEntries, long ttl, TimeUnit unit) {
+        if (maxEntries <= 0 || ttl < 0) {
+            throw new IllegalArgumentException("Invalid cache limits: " + maxEntries + ", " + ttl);
+        }
+        this.maxEntries = maxEntries;
+        this.ttlMillis = unit.toMillis(ttl);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CachedResponse get(String key) {
+        CachedResponse response = entries.get(key);
+        if (response != null && isExpired(response, System.currentTimeMillis())) {
+            entries.remove(key, response);
+            return null;
+        }
+        return response;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void put(String key, CachedResponse response) {
+        entries.put(key, response);
+        while (entries.size() > maxEntries) {
+            evictOldest();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void remove(String key) {
+        entries.remove(key);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear() {
+        entries.clear();
+    }
+
+    /**
+     * <p>size.</p>
+     *
+     * @return the number of responses stored, expired ones included.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the responses that haven't expired.
+     *
+     * @return an unmodifiable snapshot of the responses by key.
+     */
+    public Map<String, CachedResponse> getEntries() {
+        long now = System.currentTimeMillis();
+        Map<String, CachedResponse> snapshot = new HashMap<>();
+        for (Map.Entry<String, CachedResponse> entry : entries.entrySet()) {
+            if (!isExpired(entry.getValue(), now)) {
+                snapshot.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    /**
+     * <p>Getter for the field <code>maxEntries</code>.</p>
+     *
+     * @return the maximum number of responses.
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * <p>Getter for the field <code>ttlMillis</code>.</p>
+     *
+     * @return how long a response is kept in milliseconds, or 0 if forever.
+     */
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    private boolean isExpired(CachedResponse response, long now) {
+        return ttlMillis > 0 && now - response.getStoredAt() >= ttlMillis;
+    }
+
+    private void evictOldest() {
+        String oldestKey = null;
+        CachedResponse oldest = null;
+        for (Map.Entry<String, CachedResponse> entry : entries.entrySet()) {
+            if (oldest == null || entry.getValue().getStoredAt() < oldest.getStoredAt()) {
+                oldestKey = entry.getKey();
+                oldest = entry.getValue();
+            }
+        }
+        if (oldestKey != null) {
+            entries.remove(oldestKey, oldest);
+        }
+    }
+}
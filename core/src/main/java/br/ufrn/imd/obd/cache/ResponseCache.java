@@ -0,0 +1,52 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package br.ufrn.imd.obd.cache;
+
+/**
+ * Stores the responses of {@link br.ufrn.imd.obd.commands.PersistentCommand}s,
+ * which don't change while the vehicle is the same (VIN, supported PIDs...).
+ * <p>
+ * A cache belongs to one vehicle: each {@link br.ufrn.imd.obd.connection.ObdConnection}
+ * has its own, so a gateway serving many vehicles never answers one of them
+ * with the data of another. Implementations must be thread-safe.
+ */
+public interface ResponseCache {
+
+    /**
+     * Returns a stored response.
+     *
+     * @param key the key of the command.
+     * @return the response, or null if it isn't stored or has expired.
+     */
+    CachedResponse get(String key);
+
+    /**
+     * Stores a response, replacing any previous one.
+     *
+     * @param key      the key of the command.
+     * @param response the response.
+     */
+    void put(String key, CachedResponse response);
+
+    /**
+     * Removes a response.
+     *
+     * @param key the key of the command.
+     */
+    void remove(String key);
+
+    /**
+     * Removes all responses.
+     */
+    void clear();
+}
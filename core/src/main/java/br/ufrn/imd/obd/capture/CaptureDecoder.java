@@ -0,0 +1,382 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package br.ufrn.imd.obd.capture;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import br.ufrn.imd.obd.commands.ResponseDecoder;
+import br.ufrn.imd.obd.enums.ResponseStatus;
+
+/**
+ * Decodes capture logs on all cores into {@link DecodedColumns}.
+ * <p>
+ * A first pass over the record headers splits the log into chunks of
+ * {@link #getChunkSize()} requests; the chunks are then decoded in parallel by
+ * a {@link ForkJoinPool}, each worker thread with its own
+ * {@link ResponseDecoder}, and their columns are joined in capture order.
+ * <p>
+ * This class is meant for the JVM, where captures are analysed offline:
+ * {@link ForkJoinPool} and {@link RecursiveTask} need Android API 21, above the
+ * minimum SDK of the library, so it must not be loaded on older devices.
+ * <pre>
+ * try (CaptureDecoder decoder = new CaptureDecoder()) {
+ *     DecodedColumns columns = decoder.decode(file);
+ *     DecodedColumns.Column rpm = columns.getColumn(AvailableCommand.ENGINE_RPM);
+ * }
+ * </pre>
+ */
+public class CaptureDecoder implements Closeable {
+
+    /**
+     * Requests per chunk by default.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 8192;
+
+    private final ForkJoinPool pool;
+    private final boolean ownsPool;
+    private final ThreadLocal<ResponseDecoder> decoders = new ThreadLocal<ResponseDecoder>() {
+        @Override
+        protected ResponseDecoder initialValue() {
+            return new ResponseDecoder();
+        }
+    };
+    private volatile int chunkSize = DEFAULT_CHUNK_SIZE;
+
+    /**
+     * Creates a decoder using all the available processors.
+     */
+    public CaptureDecoder() {
+        this(new ForkJoinPool(), true);
+    }
+
+    /**
+     * Creates a decoder running on the given pool, which isn't shut down by
+     * {@link #close()}.
+     *
+     * @param pool a {@link ForkJoinPool} object.
+     */
+    public CaptureDecoder(ForkJoinPool pool) {
+        this(pool, false);
+    }
+
+    private CaptureDecoder(ForkJoinPool pool, boolean ownsPool) {
+        this.pool = pool;
+        this.ownsPool = ownsPool;
+    }
+
+    /**
+     * Sets the number of requests decoded by each task.
+     *
+     * @param chunkSize a positive number of requests.
+     */
+    public void setChunkSize(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Invalid chunk size: " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * <p>Getter for the field <code>chunkSize</code>.</p>
+     *
+     * @return the number of requests decoded by each task.
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Decodes a capture log file.
+     *
+     * @param file a file written by {@link CaptureLog}.
+     * @return the decoded values.
+     * @throws java.io.IOException if the file can't be read or isn't a log.
+     */
+    public DecodedColumns decode(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            return decode(null, raf.getChannel());
+        }
+    }
+
+    /**
+     * Decodes a capture log already in memory.
+     *
+     * @param log the content of a log, from index 0 to its limit.
+     * @return the decoded values.
+     * @throws java.io.IOException if it isn't a log.
+     */
+    public DecodedColumns decode(ByteBuffer log) throws IOException {
+        return decode(log, null);
+    }
+
+    /**
+     * Decodes a log in memory, or a log file read through its channel in
+     * windows, so files of any length can be decoded.
+     */
+    private DecodedColumns decode(ByteBuffer log, FileChannel channel) throws IOException {
+        int size = chunkSize;
+        long[] starts = new long[16];
+        long[] offsets = new long[16];
+        int chunks = 0;
+        long requests = 0;
+        long offset = 0;
+
+        // only the record headers are read to find where each chunk starts
+        CaptureReader reader = newReader(log, channel);
+        while (reader.next()) {
+            if (reader.getType() == CaptureLog.SESSION) {
+                offset = sessionOffset(reader);
+            } else if (reader.getType() == CaptureLog.REQUEST && requests++ % size == 0) {
+                if (chunks == starts.length) {
+                    starts = Arrays.copyOf(starts, 2 * chunks);
+                    offsets = Arrays.copyOf(offsets, 2 * chunks);
+                }
+                starts[chunks] = reader.recordStart();
+                offsets[chunks] = offset;
+                chunks++;
+            }
+        }
+        long end = reader.position();
+
+        List<ChunkTask> tasks = new ArrayList<>(chunks);
+        for (int i = 0; i < chunks; i++) {
+            tasks.add(new ChunkTask(log, channel, starts[i], i + 1 < chunks ? starts[i + 1] : end, offsets[i]));
+        }
+        return pool.invoke(new JoinTask(tasks));
+    }
+
+    private static CaptureReader newReader(ByteBuffer log, FileChannel channel) throws IOException {
+        return channel != null ? new CaptureReader(channel, CaptureReader.DEFAULT_WINDOW_SIZE)
+                : new CaptureReader(log.duplicate());
+    }
+
+    private static long sessionOffset(CaptureReader reader) {
+        return reader.getSessionMillis() * 1000000L - reader.getTimestampNanos();
+    }
+
+    /**
+     * Shuts down the pool created by this decoder, if any.
+     */
+    @Override
+    public void close() {
+        if (ownsPool) {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Forks every chunk and joins their columns in order.
+     */
+    private static final class JoinTask extends RecursiveTask<DecodedColumns> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<ChunkTask> tasks;
+
+        JoinTask(List<ChunkTask> tasks) {
+            this.tasks = tasks;
+        }
+
+        @Override
+        protected DecodedColumns compute() {
+            invokeAll(tasks);
+            List<DecodedColumns> results = new ArrayList<>(tasks.size());
+            for (ChunkTask task : tasks) {
+                results.add(task.join());
+            }
+            return DecodedColumns.concat(results);
+        }
+    }
+
+    /**
+     * Decodes the records between two positions of a log.
+     */
+    private final class ChunkTask extends RecursiveTask<DecodedColumns> {
+        private static final long serialVersionUID = 1L;
+
+        private final ByteBuffer log;
+        private final FileChannel channel;
+        private final long start;
+        private final long end;
+        private final long startOffset;
+
+        ChunkTask(ByteBuffer log, FileChannel channel, long start, long end, long startOffset) {
+            this.log = log;
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+            this.startOffset = startOffset;
+        }
+
+        @Override
+        protected DecodedColumns compute() {
+            DecodedColumns columns = new DecodedColumns();
+            ResponseDecoder decoder = decoders.get();
+            decoder.setSampleSink(columns);
+            try {
+                decodeRecords(decoder, columns);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            } finally {
+                decoder.setSampleSink(null);
+            }
+            return columns;
+        }
+
+        private void decodeRecords(ResponseDecoder decoder, DecodedColumns columns) throws IOException {
+            CaptureReader reader = newReader(log, channel);
+            reader.seek(start);
+            AsciiText request = new AsciiText();
+            AsciiText response = new AsciiText();
+            long offset = startOffset;
+            long responseNanos = 0;
+            boolean requested = false;
+
+            while (reader.position() < end && reader.next()) {
+                switch (reader.getType()) {
+                    case CaptureLog.SESSION:
+                        offset = sessionOffset(reader);
+                        requested = false;
+                        break;
+                    case CaptureLog.REQUEST:
+                        request.set(reader);
+                        response.clear();
+                        requested = true;
+                        break;
+                    case CaptureLog.RESPONSE:
+                        if (!requested) {
+                            break;
+                        }
+                        if (response.length() == 0) {
+                            responseNanos = reader.getTimestampNanos() + offset;
+                        }
+                        response.append(reader);
+                        if (response.endsWith('>')) {
+                            decodeExchange(decoder, columns, request, response, responseNanos);
+                            requested = false;
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+
+        private void decodeExchange(ResponseDecoder decoder, DecodedColumns columns,
+                                    AsciiText request, AsciiText response, long timestampNanos) {
+            columns.countExchange();
+            request.trimEnd();
+            response.trimPrompt();
+            response.skipEcho(request);
+            try {
+                ResponseStatus status = decoder.decode(request, response, timestampNanos);
+                if (status == null) {
+                    columns.countUndecoded();
+                } else if (status.isError()) {
+                    columns.countError();
+                }
+            } catch (RuntimeException e) {
+                // a garbled response, such as one cut by a reset
+                columns.countError();
+            }
+        }
+    }
+
+    /**
+     * ASCII record data seen as characters, reused from one record to the next.
+     */
+    private static final class AsciiText implements CharSequence {
+        private byte[] data = new byte[256];
+        private int from = 0;
+        private int to = 0;
+
+        void set(CaptureReader reader) {
+            clear();
+            append(reader);
+        }
+
+        void clear() {
+            from = 0;
+            to = 0;
+        }
+
+        void append(CaptureReader reader) {
+            if (to + reader.getLength() > data.length) {
+                data = Arrays.copyOf(data, Math.max(to + reader.getLength(), 2 * data.length));
+            }
+            to += reader.getData(data, to);
+        }
+
+        boolean endsWith(char c) {
+            return to > from && data[to - 1] == c;
+        }
+
+        void trimEnd() {
+            while (to > from && (data[to - 1] == '\r' || data[to - 1] == '\n')) {
+                to--;
+            }
+        }
+
+        void trimPrompt() {
+            if (endsWith('>')) {
+                to--;
+            }
+        }
+
+        /**
+         * Skips the echo of the request, sent before the response when echo is on.
+         */
+        void skipEcho(AsciiText request) {
+            int n = request.length();
+            if (to - from <= n || data[from + n] != '\r') {
+                return;
+            }
+            for (int i = 0; i < n; i++) {
+                if (data[from + i] != request.data[request.from + i]) {
+                    return;
+                }
+            }
+            from += n + 1;
+        }
+
+        @Override
+        public int length() {
+            return to - from;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (data[from + index] & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return new String(data, from, to - from, StandardCharsets.US_ASCII);
+        }
+    }
+}
@@ -0,0 +1,369 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package br.ufrn.imd.obd.capture;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Append-only log of the raw bytes exchanged with an adapter, for replaying a
+ * session later with {@link CaptureReader}.
+ * <p>
+ * The streams returned by {@link #capture(InputStream)} and
+ * {@link #capture(OutputStream)} copy every request and response to the log:
+ * <pre>
+ * CaptureLog log = new CaptureLog(file);
+ * ObdConnection connection = new ObdConnection(log.capture(in), log.capture(out));
+ * </pre>
+ * The file starts with an 8-byte header (magic, version) followed by records
+ * of a 4-byte tag (type in the high byte, data length in the low 3 bytes), the
+ * {@link System#nanoTime()} of its first byte and its data. Each session starts
+ * with a {@link #SESSION} record holding the wall-clock time in milliseconds.
+ * A response is written as it arrives, so it may span several consecutive
+ * {@link #RESPONSE} records; it ends with the '&gt;' prompt.
+ * <p>
+ * Records are copied into a memory-mapped region of the file, which is
+ * remapped further as it fills, so appending never waits for the storage.
+ * The tag of a record is written last and the unused part of the file is
+ * zeroed, so after a crash the log ends at the last complete record. Call
+ * {@link #force()} to also survive a power loss. This class is thread-safe.
+ */
+public class CaptureLog implements Closeable {
+
+    /**
+     * Bytes written to the adapter.
+     */
+    public static final int REQUEST = 1;
+    /**
+     * Bytes read from the adapter.
+     */
+    public static final int RESPONSE = 2;
+    /**
+     * Start of a session, holding the {@link System#currentTimeMillis()} of the start.
+     */
+    public static final int SESSION = 3;
+
+    /**
+     * Size of the regions mapped by default.
+     */
+    public static final int DEFAULT_REGION_SIZE = 1 << 20;
+
+    static final int MAGIC = 0x4f42444c;  // "OBDL"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 8;
+    static final int RECORD_HEADER_SIZE = 12;
+    static final int MAX_LENGTH = 0xFFFFFF;
+
+    private final File file;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final int regionSize;
+    private MappedByteBuffer region;
+    private long regionStart;
+    private long position;
+    private long records = 0;
+    // start of the last record in the region, while more response bytes can be added to it
+    private int openResponse = -1;
+    private boolean closed = false;
+
+    /**
+     * Opens a log with regions of {@link #DEFAULT_REGION_SIZE} bytes.
+     *
+     * @param file the log file, created if it doesn't exist or appended to.
+     * @throws java.io.IOException if the file can't be opened or isn't a log.
+     */
+    public CaptureLog(File file) throws IOException {
+        this(file, DEFAULT_REGION_SIZE);
+    }
+
+    /**
+     * Opens a log, starting a new session after the records already in the file.
+     *
+     * @param file       the log file, created if it doesn't exist or appended to.
+     * @param regionSize the bytes mapped at a time.
+     * @throws java.io.IOException if the file can't be opened or isn't a log.
+     */
+    public CaptureLog(File file, int regionSize) throws IOException {
+        if (regionSize < RECORD_HEADER_SIZE + 8) {
+            throw new IllegalArgumentException("Invalid region size: " + regionSize);
+        }
+        this.file = file;
+        this.regionSize = regionSize;
+        this.raf = new RandomAccessFile(file, "rw");
+        this.channel = raf.getChannel();
+        try {
+            long size = channel.size();
+            if (size == 0) {
+                map(0, HEADER_SIZE);
+                region.putInt(0, MAGIC);
+                region.putInt(4, VERSION);
+                position = HEADER_SIZE;
+            } else {
+                position = CaptureReader.findEnd(channel);
+                clear(position, size);
+            }
+            startSession();
+        } catch (IOException | RuntimeException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Zeroes what a crash left after the last record, so it can't be read as
+     * the tag of the records appended next.
+     */
+    private void clear(long from, long to) throws IOException {
+        ByteBuffer zeros = ByteBuffer.allocate((int) Math.min(to - from, 8192));
+        for (long at = from; at < to; at += zeros.limit()) {
+            zeros.clear();
+            zeros.limit((int) Math.min(zeros.capacity(), to - at));
+            while (zeros.hasRemaining()) {
+                channel.write(zeros, at + zeros.position());
+            }
+        }
+    }
+
+    /**
+     * Wraps the adapter input stream, logging what is read from it.
+     *
+     * @param in the adapter {@link java.io.InputStream}.
+     * @return the stream to read the adapter from.
+     */
+    public InputStream capture(InputStream in) {
+        return new CapturingInputStream(in);
+    }
+
+    /**
+     * Wraps the adapter output stream, logging what is written to it.
+     *
+     * @param out the adapter {@link java.io.OutputStream}.
+     * @return the stream to write to the adapter.
+     */
+    public OutputStream capture(OutputStream out) {
+        return new CapturingOutputStream(out);
+    }
+
+    private synchronized void startSession() throws IOException {
+        int at = reserve(8);
+        region.putLong(at + RECORD_HEADER_SIZE, System.currentTimeMillis());
+        commit(at, SESSION, 8, System.nanoTime());
+    }
+
+    /**
+     * Appends a record.
+     *
+     * @param type           {@link #REQUEST} or {@link #RESPONSE}.
+     * @param b              the data.
+     * @param off            the start of the data in b.
+     * @param len            the length of the data.
+     * @param timestampNanos the {@link System#nanoTime()} of the transfer.
+     * @throws java.io.IOException if the log is closed or the file can't grow.
+     */
+    public synchronized void append(int type, byte[] b, int off, int len, long timestampNanos) throws IOException {
+        if (type != REQUEST && type != RESPONSE) {
+            throw new IllegalArgumentException("Invalid record type: " + type);
+        }
+        if (type == RESPONSE && openResponse >= 0) {
+            int n = extendResponse(b, off, len);
+            off += n;
+            len -= n;
+        }
+        while (len > 0) {
+            int chunk = Math.min(len, MAX_LENGTH);
+            int at = reserve(chunk);
+            region.position(at + RECORD_HEADER_SIZE);
+            region.put(b, off, chunk);
+            commit(at, type, chunk, timestampNanos);
+            if (type == RESPONSE && b[off + chunk - 1] != '>') {
+                openResponse = at;
+            }
+            off += chunk;
+            len -= chunk;
+        }
+    }
+
+    /**
+     * Adds bytes to the response record at the end of the region.
+     *
+     * @return how many bytes were added.
+     */
+    private int extendResponse(byte[] b, int off, int len) {
+        int at = (int) (position - regionStart);
+        int tag = region.getInt(openResponse);
+        int length = tag & MAX_LENGTH;
+        int n = Math.min(len, Math.min(MAX_LENGTH - length, region.capacity() - at));
+        if (n <= 0) {
+            openResponse = -1;
+            return 0;
+        }
+        region.position(at);
+        region.put(b, off, n);
+        region.putInt(openResponse, tag + n);
+        position += n;
+        if (n < len || b[off + n - 1] == '>') {
+            openResponse = -1;
+        }
+        return n;
+    }
+
+    private int reserve(int length) throws IOException {
+        if (closed) {
+            throw new IOException("Capture log closed: " + file);
+        }
+        int size = RECORD_HEADER_SIZE + length;
+        if (region == null || position - regionStart + size > region.capacity()) {
+            map(position, size);
+        }
+        return (int) (position - regionStart);
+    }
+
+    private void commit(int at, int type, int length, long timestampNanos) {
+        region.putLong(at + 4, timestampNanos);
+        // the tag goes last, so a torn record reads as the end of the log
+        region.putInt(at, type << 24 | length);
+        position += RECORD_HEADER_SIZE + length;
+        records++;
+        openResponse = -1;
+    }
+
+    private void map(long start, int needed) throws IOException {
+        region = channel.map(FileChannel.MapMode.READ_WRITE, start, Math.max(regionSize, needed));
+        regionStart = start;
+        openResponse = -1;
+    }
+
+    /**
+     * Writes the records appended so far to the storage device.
+     *
+     * @throws java.io.IOException if any.
+     */
+    public synchronized void force() throws IOException {
+        if (!closed) {
+            region.force();
+            channel.force(false);
+        }
+    }
+
+    /**
+     * <p>Getter for the field <code>file</code>.</p>
+     *
+     * @return the log file.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the length of the log, which is where the next record goes.
+     *
+     * @return the length in bytes.
+     */
+    public synchronized long getLength() {
+        return position;
+    }
+
+    /**
+     * Returns the records appended since the log was opened, including the
+     * {@link #SESSION} record.
+     *
+     * @return the record count.
+     */
+    public synchronized long getRecordCount() {
+        return records;
+    }
+
+    /**
+     * Writes the records to the storage device and trims the unused end of
+     * the file. Streams still capturing to the log fail afterwards.
+     *
+     * @throws java.io.IOException if any.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            region.force();
+            region = null;
+            channel.truncate(position);
+        } finally {
+            raf.close();
+        }
+    }
+
+    private final class CapturingInputStream extends FilterInputStream {
+
+        private final byte[] single = new byte[1];
+
+        CapturingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) {
+                single[0] = (byte) b;
+                append(RESPONSE, single, 0, 1, System.nanoTime());
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if (n > 0) {
+                append(RESPONSE, b, off, n, System.nanoTime());
+            }
+            return n;
+        }
+    }
+
+    private final class CapturingOutputStream extends FilterOutputStream {
+
+        private final byte[] single = new byte[1];
+
+        CapturingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            long now = System.nanoTime();
+            out.write(b);
+            single[0] = (byte) b;
+            append(REQUEST, single, 0, 1, now);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            long now = System.nanoTime();
+            out.write(b, off, len);
+            if (len > 0) {
+                append(REQUEST, b, off, len, now);
+            }
+        }
+    }
+}
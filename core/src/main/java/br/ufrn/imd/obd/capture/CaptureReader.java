@@ -0,0 +1,301 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package br.ufrn.imd.obd.capture;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads the records of a {@link CaptureLog}, one at a time, without copying
+ * the file into the heap.
+ * <pre>
+ * CaptureReader reader = new CaptureReader(file);
+ * while (reader.next()) {
+ *     if (reader.getType() == CaptureLog.RESPONSE) ...
+ * }
+ * </pre>
+ * Files are mapped in windows of {@link #DEFAULT_WINDOW_SIZE} bytes, moved as
+ * the records are read, so logs of any length can be read. The log ends at the
+ * first incomplete record, such as the one being written when the process
+ * died. This class is not thread-safe.
+ */
+public class CaptureReader implements Closeable {
+
+    /**
+     * Size of the windows mapped by default.
+     */
+    public static final int DEFAULT_WINDOW_SIZE = 64 << 20;
+
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final int windowSize;
+    private long size;
+    private ByteBuffer buffer;
+    private ByteBuffer data;
+    private long windowStart = 0;
+    private long next = CaptureLog.HEADER_SIZE;
+    private long current = -1;
+    private int type = 0;
+    private int length = 0;
+    private long timestampNanos = 0;
+
+    /**
+     * Maps a log file.
+     *
+     * @param file the log file.
+     * @throws java.io.IOException if the file can't be read or isn't a log.
+     */
+    public CaptureReader(File file) throws IOException {
+        this(new RandomAccessFile(file, "r"), DEFAULT_WINDOW_SIZE);
+    }
+
+    private CaptureReader(RandomAccessFile raf, int windowSize) throws IOException {
+        this.raf = raf;
+        this.channel = raf.getChannel();
+        this.windowSize = windowSize;
+        try {
+            open();
+        } catch (IOException | RuntimeException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads a log through a channel, which isn't closed by {@link #close()}.
+     *
+     * @param channel    the channel of a log file.
+     * @param windowSize the bytes mapped at a time.
+     * @throws java.io.IOException if the file can't be read or isn't a log.
+     */
+    CaptureReader(FileChannel channel, int windowSize) throws IOException {
+        if (windowSize < CaptureLog.RECORD_HEADER_SIZE) {
+            throw new IllegalArgumentException("Invalid window size: " + windowSize);
+        }
+        this.raf = null;
+        this.channel = channel;
+        this.windowSize = windowSize;
+        open();
+    }
+
+    /**
+     * Reads a log already in memory.
+     *
+     * @param buffer the content of a log file, from index 0 to its limit.
+     * @throws java.io.IOException if it isn't a log.
+     */
+    public CaptureReader(ByteBuffer buffer) throws IOException {
+        this.raf = null;
+        this.channel = null;
+        this.windowSize = buffer.limit();
+        this.size = buffer.limit();
+        this.buffer = buffer;
+        this.data = buffer.duplicate();
+        checkHeader();
+    }
+
+    private void open() throws IOException {
+        size = channel.size();
+        buffer = ByteBuffer.allocate(0);
+        data = buffer;
+        checkHeader();
+    }
+
+    private void checkHeader() throws IOException {
+        if (!map(0, CaptureLog.HEADER_SIZE) || buffer.getInt(0) != CaptureLog.MAGIC) {
+            throw new IOException("Not a capture log");
+        }
+        if (buffer.getInt(4) != CaptureLog.VERSION) {
+            throw new IOException("Unsupported capture log version: " + buffer.getInt(4));
+        }
+    }
+
+    /**
+     * Makes sure a range of the log is in the mapped window.
+     *
+     * @return false if the range goes past the end of the log.
+     */
+    private boolean map(long position, int length) throws IOException {
+        if (position + length > size) {
+            return false;
+        }
+        if (position >= windowStart && position + length <= windowStart + buffer.limit()) {
+            return true;
+        }
+        if (channel == null) {
+            return false;  // a buffer is a single window
+        }
+        long mapped = Math.min(size - position, Math.max(windowSize, length));
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, mapped);
+        data = buffer.duplicate();
+        windowStart = position;
+        return true;
+    }
+
+    /**
+     * Returns where the records of a log end.
+     */
+    static long findEnd(FileChannel channel) throws IOException {
+        CaptureReader reader = new CaptureReader(channel, DEFAULT_WINDOW_SIZE);
+        while (reader.next()) {
+            // skip
+        }
+        return reader.next;
+    }
+
+    /**
+     * Moves to the next record.
+     *
+     * @return false at the end of the log.
+     * @throws IllegalStateException if the file can't be mapped.
+     */
+    public boolean next() {
+        try {
+            if (!map(next, CaptureLog.RECORD_HEADER_SIZE)) {
+                return false;
+            }
+            int tag = buffer.getInt(index(next));
+            int recordSize = tag & CaptureLog.MAX_LENGTH;
+            if (!isType(tag >>> 24) || !map(next, CaptureLog.RECORD_HEADER_SIZE + recordSize)) {
+                // the end, or data written past the last record before a crash
+                return false;
+            }
+            current = next;
+            type = tag >>> 24;
+            length = recordSize;
+            timestampNanos = buffer.getLong(index(next) + 4);
+            next += CaptureLog.RECORD_HEADER_SIZE + recordSize;
+            return true;
+        } catch (IOException e) {
+            throw new IllegalStateException("Can't map the capture log", e);
+        }
+    }
+
+    private int index(long position) {
+        return (int) (position - windowStart);
+    }
+
+    private static boolean isType(int type) {
+        return type == CaptureLog.REQUEST || type == CaptureLog.RESPONSE || type == CaptureLog.SESSION;
+    }
+
+    /**
+     * Goes back to the first record.
+     */
+    public void rewind() {
+        next = CaptureLog.HEADER_SIZE;
+        current = -1;
+    }
+
+    /**
+     * Returns where the next record starts, for {@link #seek(long)}.
+     */
+    long position() {
+        return next;
+    }
+
+    /**
+     * Returns where the current record starts.
+     */
+    long recordStart() {
+        return current;
+    }
+
+    /**
+     * Moves back or forth to a position given by {@link #position()}.
+     */
+    void seek(long position) {
+        next = position;
+        current = -1;
+    }
+
+    /**
+     * Returns the type of the current record.
+     *
+     * @return {@link CaptureLog#REQUEST}, {@link CaptureLog#RESPONSE} or {@link CaptureLog#SESSION}.
+     */
+    public int getType() {
+        return type;
+    }
+
+    /**
+     * Returns the {@link System#nanoTime()} of the first byte of the current
+     * record, in the clock of the process that captured it.
+     *
+     * @return the timestamp in nanoseconds.
+     */
+    public long getTimestampNanos() {
+        return timestampNanos;
+    }
+
+    /**
+     * <p>Getter for the field <code>length</code>.</p>
+     *
+     * @return the data length of the current record.
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Returns a data byte of the current record.
+     *
+     * @param index the index, between 0 and {@link #getLength()} - 1.
+     * @return the byte, between 0 and 255.
+     */
+    public int byteAt(int index) {
+        if (current < 0 || index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + length);
+        }
+        return buffer.get(index(current) + CaptureLog.RECORD_HEADER_SIZE + index) & 0xFF;
+    }
+
+    /**
+     * Copies the data of the current record.
+     *
+     * @param dest the destination, with room for {@link #getLength()} bytes.
+     * @param off  the start in dest.
+     * @return the number of bytes copied.
+     */
+    public int getData(byte[] dest, int off) {
+        if (current < 0) {
+            return 0;
+        }
+        data.position(index(current) + CaptureLog.RECORD_HEADER_SIZE);
+        data.get(dest, off, length);
+        return length;
+    }
+
+    /**
+     * Returns the wall-clock time a session started, for a {@link CaptureLog#SESSION} record.
+     *
+     * @return the {@link System#currentTimeMillis()} of the start of the session.
+     */
+    public long getSessionMillis() {
+        if (type != CaptureLog.SESSION) {
+            throw new IllegalStateException("Not a session record");
+        }
+        return buffer.getLong(index(current) + CaptureLog.RECORD_HEADER_SIZE);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (raf != null) {
+            raf.close();
+        }
+    }
+}
@@ -0,0 +1,270 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package br.ufrn.imd.obd.capture;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import br.ufrn.imd.obd.commands.SampleSink;
+import br.ufrn.imd.obd.enums.AvailableCommand;
+import br.ufrn.imd.obd.enums.Unit;
+
+/**
+ * The values decoded from a capture log by {@link CaptureDecoder}, as one
+ * column of timestamps and one of values per command, in capture order.
+ * <p>
+ * Timestamps are wall-clock nanoseconds since the epoch, derived from the
+ * session records of the log.
+ */
+public class DecodedColumns implements SampleSink {
+
+    private final Map<AvailableCommand, Column> columns = new EnumMap<>(AvailableCommand.class);
+    private long exchanges = 0;
+    private long errors = 0;
+    private long undecoded = 0;
+
+    /**
+     * Concatenates decoded chunks.
+     *
+     * @param chunks the chunks, in capture order.
+     * @return the columns of all the chunks.
+     */
+    static DecodedColumns concat(List<DecodedColumns> chunks) {
+        DecodedColumns all = new DecodedColumns();
+        for (DecodedColumns chunk : chunks) {
+            all.exchanges += chunk.exchanges;
+            all.errors += chunk.errors;
+            all.undecoded += chunk.undecoded;
+            for (Column column : chunk.columns.values()) {
+                Column dest = all.columns.get(column.command);
+                if (dest == null) {
+                    all.columns.put(column.command, new Column(column));
+                } else {
+                    dest.addAll(column);
+                }
+            }
+        }
+        return all;
+    }
+
+    @Override
+    public void onSample(AvailableCommand command, long timestampNanos, long value, Unit unit) {
+        column(command, unit).add(timestampNanos, value);
+    }
+
+    @Override
+    public void onSample(AvailableCommand command, long timestampNanos, double value, Unit unit) {
+        column(command, unit).add(timestampNanos, value);
+    }
+
+    private Column column(AvailableCommand command, Unit unit) {
+        Column column = columns.get(command);
+        if (column == null) {
+            column = new Column(command, unit);
+            columns.put(command, column);
+        }
+        return column;
+    }
+
+    void countExchange() {
+        exchanges++;
+    }
+
+    void countError() {
+        errors++;
+    }
+
+    void countUndecoded() {
+        undecoded++;
+    }
+
+    /**
+     * Returns the column of a command.
+     *
+     * @param command the command.
+     * @return its column, or null if no value of it was decoded.
+     */
+    public Column getColumn(AvailableCommand command) {
+        return columns.get(command);
+    }
+
+    /**
+     * <p>getCommands.</p>
+     *
+     * @return the commands that have a column.
+     */
+    public Set<AvailableCommand> getCommands() {
+        return Collections.unmodifiableSet(columns.keySet());
+    }
+
+    /**
+     * Returns the number of requests answered in the log.
+     *
+     * @return the exchange count.
+     */
+    public long getExchangeCount() {
+        return exchanges;
+    }
+
+    /**
+     * Returns the number of responses that were error messages (such as "NO
+     * DATA") or couldn't be parsed.
+     *
+     * @return the error count.
+     */
+    public long getErrorCount() {
+        return errors;
+    }
+
+    /**
+     * Returns the number of requests no command decodes, such as AT commands.
+     *
+     * @return the undecoded count.
+     */
+    public long getUndecodedCount() {
+        return undecoded;
+    }
+
+    /**
+     * The values of one command.
+     */
+    public static final class Column {
+
+        private final AvailableCommand command;
+        private final Unit unit;
+        private long[] timestamps;
+        private double[] values;
+        private int size = 0;
+
+        Column(AvailableCommand command, Unit unit) {
+            this.command = command;
+            this.unit = unit;
+            this.timestamps = new long[64];
+            this.values = new double[64];
+        }
+
+        Column(Column other) {
+            this.command = other.command;
+            this.unit = other.unit;
+            this.timestamps = Arrays.copyOf(other.timestamps, other.size);
+            this.values = Arrays.copyOf(other.values, other.size);
+            this.size = other.size;
+        }
+
+        void add(long timestampNanos, double value) {
+            if (size == values.length) {
+                grow(size + 1);
+            }
+            timestamps[size] = timestampNanos;
+            values[size] = value;
+            size++;
+        }
+
+        void addAll(Column other) {
+            if (size + other.size > values.length) {
+                grow(size + other.size);
+            }
+            System.arraycopy(other.timestamps, 0, timestamps, size, other.size);
+            System.arraycopy(other.values, 0, values, size, other.size);
+            size += other.size;
+        }
+
+        private void grow(int minCapacity) {
+            int capacity = Math.max(minCapacity, values.length + (values.length >> 1));
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        /**
+         * <p>Getter for the field <code>command</code>.</p>
+         *
+         * @return the command of the values.
+         */
+        public AvailableCommand getCommand() {
+            return command;
+        }
+
+        /**
+         * <p>Getter for the field <code>unit</code>.</p>
+         *
+         * @return the unit of the values.
+         */
+        public Unit getUnit() {
+            return unit;
+        }
+
+        /**
+         * <p>size.</p>
+         *
+         * @return the number of values.
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * <p>getTimestampNanos.</p>
+         *
+         * @param index the row, between 0 and {@link #size()} - 1.
+         * @return the time of the response, in nanoseconds since the epoch.
+         */
+        public long getTimestampNanos(int index) {
+            checkIndex(index);
+            return timestamps[index];
+        }
+
+        /**
+         * <p>getValue.</p>
+         *
+         * @param index the row, between 0 and {@link #size()} - 1.
+         * @return the value.
+         */
+        public double getValue(int index) {
+            checkIndex(index);
+            return values[index];
+        }
+
+        /**
+         * <p>getTimestamps.</p>
+         *
+         * @return a copy of the timestamp column.
+         */
+        public long[] getTimestamps() {
+            return Arrays.copyOf(timestamps, size);
+        }
+
+        /**
+         * <p>getValues.</p>
+         *
+         * @return a copy of the value column.
+         */
+        public double[] getValues() {
+            return Arrays.copyOf(values, size);
+        }
+
+        private void checkIndex(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return command.getValue() + " [" + size + " values, " + unit.getSymbol() + "]";
+        }
+    }
+}
@@ -0,0 +1,377 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package br.ufrn.imd.obd.capture;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An adapter that answers each request with the response recorded for it in
+ * a {@link CaptureLog}, so commands and groups can be run on a captured
+ * session without a vehicle:
+ * <pre>
+ * ReplayTransport replay = new ReplayTransport(file);
+ * ObdConnection connection = new ObdConnection(replay.getInputStream(), replay.getOutputStream());
+ * new RPMCommand().run(connection);
+ * </pre>
+ * Requests are matched in the order they were captured. A request that isn't
+ * the next one is looked for further in the log; if it was never captured,
+ * the answer is "?", like the adapter answers an unknown command.
+ * <p>
+ * With a speed of 1, a response becomes readable as long after its request as
+ * it did in the captured session; 10 replays ten times faster and
+ * {@link #AS_FAST_AS_POSSIBLE} doesn't wait at all. Requests must be written
+ * in one call, as {@link br.ufrn.imd.obd.commands.ObdCommand} does.
+ */
+public class ReplayTransport implements Closeable {
+
+    /**
+     * Speed at which responses are readable as soon as they are requested.
+     */
+    public static final double AS_FAST_AS_POSSIBLE = 0;
+
+    private static final byte[] UNKNOWN = {'?', '\r', '\r', '>'};
+
+    private final CaptureReader reader;
+    private final boolean ownsReader;
+    private double speed = AS_FAST_AS_POSSIBLE;
+    private boolean looping = false;
+    private boolean closed = false;
+
+    private byte[] request = new byte[64];
+    private int requestLength = 0;
+    private byte[] recorded = new byte[64];
+    private byte[] response = new byte[256];
+    private int responseStart = 0;
+    private int responseEnd = 0;
+    private long readyAt = 0;
+    private long replayed = 0;
+    private long mismatches = 0;
+
+    private final InputStream inputStream = new ResponseStream();
+    private final OutputStream outputStream = new RequestStream();
+
+    /**
+     * Replays a log file as fast as possible.
+     *
+     * @param file the {@link CaptureLog} file.
+     * @throws java.io.IOException if the file can't be read or isn't a log.
+     */
+    public ReplayTransport(File file) throws IOException {
+        this(new CaptureReader(file), true);
+    }
+
+    /**
+     * Replays the records of a reader as fast as possible, from its current
+     * record. The reader is not closed with this transport.
+     *
+     * @param reader a {@link CaptureReader} object.
+     */
+    public ReplayTransport(CaptureReader reader) {
+        this(reader, false);
+    }
+
+    private ReplayTransport(CaptureReader reader, boolean ownsReader) {
+        this.reader = reader;
+        this.ownsReader = ownsReader;
+    }
+
+    /**
+     * Sets how fast the session is replayed.
+     *
+     * @param speed 1 for the captured pace, a greater value for a faster one,
+     *              or {@link #AS_FAST_AS_POSSIBLE}.
+     */
+    public synchronized void setSpeed(double speed) {
+        if (speed < 0 || Double.isNaN(speed) || Double.isInfinite(speed)) {
+            throw new IllegalArgumentException("Invalid speed: " + speed);
+        }
+        this.speed = speed;
+    }
+
+    /**
+     * <p>Getter for the field <code>speed</code>.</p>
+     *
+     * @return the replay speed, {@link #AS_FAST_AS_POSSIBLE} by default.
+     */
+    public synchronized double getSpeed() {
+        return speed;
+    }
+
+    /**
+     * Makes the replay start over from the first record when the log ends,
+     * e.g. to run a benchmark longer than the captured session.
+     *
+     * @param looping true to start over, false to answer "?" past the end.
+     */
+    public synchronized void setLooping(boolean looping) {
+        this.looping = looping;
+    }
+
+    /**
+     * <p>isLooping.</p>
+     *
+     * @return true if the replay starts over when the log ends.
+     */
+    public synchronized boolean isLooping() {
+        return looping;
+    }
+
+    /**
+     * <p>getInputStream.</p>
+     *
+     * @return the stream the responses are read from.
+     */
+    public InputStream getInputStream() {
+        return inputStream;
+    }
+
+    /**
+     * <p>getOutputStream.</p>
+     *
+     * @return the stream the requests are written to.
+     */
+    public OutputStream getOutputStream() {
+        return outputStream;
+    }
+
+    /**
+     * Returns how many requests were answered with a captured response.
+     *
+     * @return the replayed response count.
+     */
+    public synchronized long getReplayedCount() {
+        return replayed;
+    }
+
+    /**
+     * Returns how many requests weren't found in the log and got "?".
+     *
+     * @return the mismatch count.
+     */
+    public synchronized long getMismatchCount() {
+        return mismatches;
+    }
+
+    /**
+     * Ends the replay: reads return the end of the stream and writes fail.
+     *
+     * @throws java.io.IOException if the log can't be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            notifyAll();
+        }
+        if (ownsReader) {
+            reader.close();
+        }
+    }
+
+    private void received(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Replay closed");
+        }
+        for (int i = off; i < off + len; i++) {
+            if (b[i] == '\r') {
+                answer();
+                requestLength = 0;
+            } else if (b[i] != '\n') {
+                if (requestLength == request.length) {
+                    request = Arrays.copyOf(request, 2 * request.length);
+                }
+                request[requestLength++] = b[i];
+            }
+        }
+    }
+
+    private void answer() {
+        long requestNanos = findRequest();
+        if (requestNanos == -1) {
+            mismatches++;
+            appendResponse(UNKNOWN, UNKNOWN.length);
+            readyAt = System.nanoTime();
+            return;
+        }
+
+        // the response is in the following records, up to the prompt
+        long responseNanos = 0;
+        boolean first = true;
+        long mark = reader.position();
+        while (reader.next() && reader.getType() == CaptureLog.RESPONSE) {
+            int n = copyRecord();
+            if (first) {
+                responseNanos = reader.getTimestampNanos();
+                first = false;
+            }
+            appendResponse(recorded, n);
+            mark = reader.position();
+            if (n > 0 && recorded[n - 1] == '>') {
+                break;
+            }
+        }
+        reader.seek(mark);
+        replayed++;
+
+        long delay = speed == AS_FAST_AS_POSSIBLE || first ? 0 : (long) ((responseNanos - requestNanos) / speed);
+        readyAt = System.nanoTime() + Math.max(0, delay);
+    }
+
+    /**
+     * Moves the reader past the next captured request equal to the current one.
+     *
+     * @return its timestamp, or -1 if it wasn't captured.
+     */
+    private long findRequest() {
+        long start = reader.position();
+        boolean wrapped = false;
+        while (true) {
+            if (!reader.next()) {
+                if (!looping || wrapped) {
+                    reader.seek(start);
+                    return -1;
+                }
+                reader.rewind();
+                wrapped = true;
+                continue;
+            }
+            if (wrapped && reader.position() > start) {
+                reader.seek(start);
+                return -1;
+            }
+            if (reader.getType() == CaptureLog.REQUEST && matches(copyRecord())) {
+                return reader.getTimestampNanos();
+            }
+        }
+    }
+
+    private int copyRecord() {
+        if (recorded.length < reader.getLength()) {
+            recorded = new byte[Math.max(reader.getLength(), 2 * recorded.length)];
+        }
+        return reader.getData(recorded, 0);
+    }
+
+    private boolean matches(int length) {
+        while (length > 0 && (recorded[length - 1] == '\r' || recorded[length - 1] == '\n')) {
+            length--;
+        }
+        if (length != requestLength) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (recorded[i] != request[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void appendResponse(byte[] b, int len) {
+        if (responseStart == responseEnd) {
+            responseStart = 0;
+            responseEnd = 0;
+        }
+        if (responseEnd + len > response.length) {
+            response = Arrays.copyOf(response, Math.max(responseEnd + len, 2 * response.length));
+        }
+        System.arraycopy(b, 0, response, responseEnd, len);
+        responseEnd += len;
+        notifyAll();
+    }
+
+    private final class RequestStream extends OutputStream {
+        private final byte[] single = new byte[1];
+
+        @Override
+        public void write(int b) throws IOException {
+            synchronized (ReplayTransport.this) {
+                single[0] = (byte) b;
+                received(single, 0, 1);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            synchronized (ReplayTransport.this) {
+                received(b, off, len);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            ReplayTransport.this.close();
+        }
+    }
+
+    private final class ResponseStream extends InputStream {
+        private final byte[] single = new byte[1];
+
+        @Override
+        public int read() throws IOException {
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            synchronized (ReplayTransport.this) {
+                try {
+                    while (true) {
+                        if (closed) {
+                            return -1;
+                        }
+                        long wait = readyAt - System.nanoTime();
+                        if (responseStart == responseEnd) {
+                            ReplayTransport.this.wait();
+                        } else if (wait > 0) {
+                            TimeUnit.NANOSECONDS.timedWait(ReplayTransport.this, wait);
+                        } else {
+                            int n = Math.min(len, responseEnd - responseStart);
+                            System.arraycopy(response, responseStart, b, off, n);
+                            responseStart += n;
+                            return n;
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+            }
+        }
+
+        @Override
+        public int available() {
+            synchronized (ReplayTransport.this) {
+                return readyAt - System.nanoTime() > 0 ? 0 : responseEnd - responseStart;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            ReplayTransport.this.close();
+        }
+    }
+}
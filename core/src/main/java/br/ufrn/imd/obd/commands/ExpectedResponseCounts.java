@@ -0,0 +1,172 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package br.ufrn.imd.obd.commands;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Number of responses expected for each OBD request of a session.
+ * <p>
+ * When an OBD request ends with a response count (e.g. "01 0C 1"), the ELM327
+ * (v1.3 or later) returns as soon as that many responses arrive, instead of
+ * waiting for the whole AT ST timeout to see if other ECUs will answer.
+ * <p>
+ * The count of each request is learned from its valid responses, raised
+ * whenever more responses arrive, so the same instance must be shared only by
+ * commands talking to the same vehicle. Requests whose number of responses
+ * depends on the data, such as the trouble codes (Modes 03, 07 and 0A) and
+ * the vehicle information (Mode 09), never get a count.
+ */
+public class ExpectedResponseCounts {
+
+    /**
+     * Highest count accepted by the ELM327 (a single hex digit).
+     */
+    private static final int MAX_COUNT = 0xF;
+
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    /**
+     * Modes whose number of responses grows with the stored codes or the
+     * length of the information.
+     */
+    private static final String[] VARIABLE_MODES = {"03", "07", "09", "0A"};
+
+    private final Map<String, Integer> counts = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the learned response count of a request.
+     *
+     * @param command the request, such as "01 0C".
+     * @return the number of responses, or 0 if still unknown.
+     */
+    public int getCount(String command) {
+        Integer count = counts.get(command);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Returns the suffix to append to a request, such as " 1".
+     *
+     * @param command the request, such as "01 0C".
+     * @return the suffix, or an empty String for AT commands, requests with a
+     * variable number of responses or unknown counts.
+     */
+    public String getSuffix(String command) {
+        int count = isCounted(command) ? getCount(command) : 0;
+        return count > 0 ? " " + HEX_DIGITS[count] : "";
+    }
+
+    /**
+     * Learns the response count of a request from its raw response, raising
+     * the known count if more responses arrived. Error responses (like
+     * "NO DATA") and the echo of the request are ignored.
+     *
+     * @param command  the request, such as "01 0C".
+     * @param response the raw response, with its line breaks.
+     */
+    public void learn(String command, CharSequence response) {
+        if (!isCounted(command)) {
+            return;
+        }
+
+        int count = Math.min(countResponses(response, skipEcho(command, response)), MAX_COUNT);
+        if (count > getCount(command)) {
+            counts.put(command, count);
+        }
+    }
+
+    /**
+     * Forgets all learned counts, e.g. when the adapter connects to another vehicle.
+     */
+    public void reset() {
+        counts.clear();
+    }
+
+    private static boolean isCounted(String command) {
+        if (command == null || command.isEmpty() || command.startsWith("AT")) {
+            return false;
+        }
+        for (String mode : VARIABLE_MODES) {
+            if (command.startsWith(mode)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns where a response starts after the echo of its request, sent
+     * when the adapter echo is on ("AT E1"): a first line repeating the
+     * request, possibly followed by its response count.
+     *
+     * @return the index of the line break after the echo, or 0 if there is none.
+     */
+    static int skipEcho(String command, CharSequence response) {
+        int length = response.length();
+        int i = 0;
+        while (i < length && (response.charAt(i) == '\r' || response.charAt(i) == '\n')) {
+            i++;
+        }
+        int at = 0;
+        for (; i < length; i++) {
+            char c = response.charAt(i);
+            if (c == '\r' || c == '\n') {
+                break;
+            }
+            if (c == ' ') {
+                continue;
+            }
+            while (at < command.length() && command.charAt(at) == ' ') {
+                at++;
+            }
+            if (at < command.length() ? Character.toUpperCase(c) != command.charAt(at++)
+                    : Character.digit(c, 16) < 0) {
+                return 0;
+            }
+        }
+        return at == command.length() ? i : 0;
+    }
+
+    /**
+     * Counts the lines that carry a CAN frame or a message, skipping the length
+     * header of multi-frame responses ("00E") and informative text.
+     */
+    static int countResponses(CharSequence response, int from) {
+        int count = 0;
+        int hexDigits = 0;
+        boolean hasColon = false;
+        boolean valid = true;
+
+        for (int i = from; i <= response.length(); i++) {
+            char c = i < response.length() ? response.charAt(i) : '\r';
+            if (c == '\r' || c == '\n') {
+                if (valid && hexDigits > 0 && (hasColon || hexDigits != 3)) {
+                    count++;
+                }
+                hexDigits = 0;
+                hasColon = false;
+                valid = true;
+            } else if (c == ':') {
+                hasColon = true;
+            } else if (Character.digit(c, 16) >= 0) {
+                hexDigits++;
+            } else if (c != ' ') {
+                valid = false;
+            }
+        }
+
+        return count;
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package br.ufrn.imd.obd.commands;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import br.ufrn.imd.obd.connection.ObdConnection;
+import br.ufrn.imd.obd.enums.ResponseStatus;
+
+/**
+ * Interface with the behaviours of OBD commands that run through an
+ * {@link ObdConnection} and report error messages through a {@link ResponseStatus}.
+ * <p>
+ * Kept apart from {@link IObdCommand} so its existing implementations still compile.
+ */
+public interface IObdConnectionCommand extends IObdCommand {
+    void run(ObdConnection connection) throws IOException, InterruptedException;
+
+    ResponseStatus tryRun(InputStream in, OutputStream out) throws IOException, InterruptedException;
+
+    ResponseStatus tryRun(ObdConnection connection) throws IOException, InterruptedException;
+}
@@ -0,0 +1,293 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package br.ufrn.imd.obd.commands;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import br.ufrn.imd.obd.connection.ResponseReader;
+import br.ufrn.imd.obd.enums.CommandsConstants;
+import br.ufrn.imd.obd.enums.ResponseStatus;
+import br.ufrn.imd.obd.utils.FrameReassembler;
+
+/**
+ * A single Mode 01 request carrying up to six PIDs (e.g. "01 0C 0D 05"), as
+ * accepted by ISO 15765-4 (CAN) ECUs.
+ * <p>
+ * The combined response is split into the message of each ECU, each message
+ * by PID, and each slice is handed to the matching {@link ObdCommand}, which
+ * then parses it as if it had sent the request itself. When several ECUs
+ * answer the same PID, the first answer is kept.
+ */
+class MultiPidRequest {
+
+    /**
+     * Maximum number of PIDs in one request allowed by ISO 15765-4.
+     */
+    static final int MAX_PIDS = 6;
+
+    private static final String MODE = "01";
+    private static final int RESPONSE_MODE = 0x41;
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    private final List<ObdCommand> commands = new ArrayList<>(MAX_PIDS);
+    private final int[] pids = new int[MAX_PIDS];
+    private long writeStartNanos;
+    private long writeEndNanos;
+    private long firstByteNanos;
+    private long promptNanos;
+    private InputStream readerSource = null;
+    private ResponseReader reader = null;
+
+    /**
+     * Tells if a command can be packed into a multi-PID request.
+     *
+     * @param command the command to check.
+     * @return true if the command is a Mode 01 request with a known response
+     * length, read with headers off, that doesn't override how it is run.
+     */
+    static boolean accepts(ObdCommand command) {
+        if (command instanceof PersistentCommand || command.getDescriptor() == null || command.isHeadersOn()
+                || command.overridesRunHooks() || !MODE.equals(command.getCommandMode())) {
+            return false;
+        }
+
+        int pid = parsePid(command);
+        return pid >= 0 && CommandsConstants.getMode01DataLength(pid) > 0;
+    }
+
+    private static int parsePid(ObdCommand command) {
+        try {
+            return Integer.parseInt(command.getCommandPID().trim(), 16);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Adds a command to this request.
+     *
+     * @param command a command accepted by {@link #accepts(ObdCommand)}.
+     */
+    void add(ObdCommand command) {
+        pids[commands.size()] = parsePid(command);
+        commands.add(command);
+    }
+
+    boolean isEmpty() {
+        return commands.isEmpty();
+    }
+
+    boolean isFull() {
+        return commands.size() == MAX_PIDS;
+    }
+
+    List<ObdCommand> getCommands() {
+        return commands;
+    }
+
+    void clear() {
+        commands.clear();
+    }
+
+    /**
+     * Builds the request string, such as "01 0C 0D 05".
+     *
+     * @return the request without the trailing carriage return.
+     */
+    String getRequest() {
+        StringBuilder sb = new StringBuilder(MODE);
+        for (ObdCommand command : commands) {
+            sb.append(' ').append(command.getCommandPID().trim());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Sends the request, reads the combined response and dispatches each PID
+     * slice to its command.
+     *
+     * @param in                a {@link java.io.InputStream} object.
+     * @param out               a {@link java.io.OutputStream} object.
+     * @param expectedResponses the expected response counts to use, or null.
+     * @param unanswered        receives the commands whose PID was missing from the response,
+     *                          or all of them if it was "NO DATA".
+     * @return {@link ResponseStatus#OK}, {@link ResponseStatus#UNSUPPORTED} if the
+     * ECUs refused the combined request, so the commands must be run one by one,
+     * or the error reported by the first command.
+     * @throws java.io.IOException            if any.
+     * @throws java.lang.InterruptedException if any.
+     */
+    ResponseStatus run(InputStream in, OutputStream out, ExpectedResponseCounts expectedResponses,
+                       List<ObdCommand> unanswered) throws IOException, InterruptedException {
+        String request = getRequest();
+        String suffix = expectedResponses != null ? expectedResponses.getSuffix(request) : "";
+        String response;
+        long start;
+        long end;
+
+        synchronized (in) {
+            start = System.currentTimeMillis();
+            writeStartNanos = System.nanoTime();
+            out.write((request + suffix + "\r").getBytes());
+            out.flush();
+            writeEndNanos = System.nanoTime();
+            if (in != readerSource) {
+                // looked up once per stream, not on every batch
+                reader = ResponseReader.wrap(in);
+                readerSource = in;
+            }
+            response = reader.readResponse().toString();
+            firstByteNanos = reader.getFirstByteNanos();
+            promptNanos = reader.getPromptNanos();
+            end = System.currentTimeMillis();
+        }
+
+        if (expectedResponses != null) {
+            expectedResponses.learn(request, response);
+        }
+
+        List<byte[]> messages = FrameReassembler.messages(response);
+        if (!hasAnswer(messages)) {
+            ResponseStatus status = ResponseStatus.classify(response);
+            if (status == ResponseStatus.NO_DATA) {
+                unanswered.addAll(commands);
+            } else if (status == ResponseStatus.OK) {
+                // such as a negative response to the combined request, which
+                // says nothing about each PID
+                status = ResponseStatus.UNSUPPORTED;
+            }
+            if (status != ResponseStatus.UNSUPPORTED) {
+                // let the first command report the error
+                ObdCommand first = commands.get(0);
+                first.rawData = response;
+                first.checkStatus();
+            }
+            return status;
+        }
+
+        dispatch(messages, start, end, unanswered);
+        return ResponseStatus.OK;
+    }
+
+    private void dispatch(List<byte[]> messages, long start, long end, List<ObdCommand> unanswered) {
+        List<ObdCommand> pending = new ArrayList<>(commands);
+        for (byte[] message : messages) {
+            if (!isAnswer(message)) {
+                continue;
+            }
+
+            int pos = 1;  // skip the service byte [41]
+            while (pos < message.length) {
+                int pid = message[pos] & 0xFF;
+                int length = CommandsConstants.getMode01DataLength(pid);
+                int next = pos + 1 + length;
+                if (length == 0 || next > message.length) {
+                    break;
+                }
+
+                ObdCommand command = find(pid, pending);
+                if (command != null) {
+                    pending.remove(command);
+                    command.setTransferTimes(writeStartNanos, writeEndNanos, firstByteNanos, promptNanos);
+                    command.applyResponse(toResponse(message, pos, next), start, end);
+                }
+                pos = next;
+            }
+        }
+
+        unanswered.addAll(pending);
+    }
+
+    /**
+     * Decodes a combined response read earlier, handing each PID slice to the
+     * command of that PID.
+     *
+     * @param response       the raw response.
+     * @param byPid          the commands indexed by PID; PIDs without one are skipped.
+     * @param timestampNanos when the response was received.
+     * @return {@link ResponseStatus#OK}, or the error of the response.
+     */
+    static ResponseStatus decode(String response, ObdCommand[] byPid, long timestampNanos) {
+        List<byte[]> messages = FrameReassembler.messages(response);
+        if (!hasAnswer(messages)) {
+            ResponseStatus status = ResponseStatus.classify(response);
+            return status.isError() ? status : ResponseStatus.UNKNOWN_ERROR;
+        }
+
+        long[] decoded = new long[4];
+        for (byte[] message : messages) {
+            if (!isAnswer(message)) {
+                continue;
+            }
+
+            int pos = 1;  // skip the service byte [41]
+            while (pos < message.length) {
+                int pid = message[pos] & 0xFF;
+                int length = CommandsConstants.getMode01DataLength(pid);
+                int next = pos + 1 + length;
+                if (length == 0 || next > message.length) {
+                    break;
+                }
+                long bit = 1L << (pid & 63);
+                if (byPid[pid] != null && (decoded[pid >>> 6] & bit) == 0) {
+                    decoded[pid >>> 6] |= bit;
+                    byPid[pid].decode(toResponse(message, pos, next), timestampNanos);
+                }
+                pos = next;
+            }
+        }
+        return ResponseStatus.OK;
+    }
+
+    private ObdCommand find(int pid, List<ObdCommand> candidates) {
+        for (int i = 0; i < commands.size(); i++) {
+            if (pids[i] == pid && candidates.contains(commands.get(i))) {
+                return commands.get(i);
+            }
+        }
+        return null;
+    }
+
+    private static boolean hasAnswer(List<byte[]> messages) {
+        for (byte[] message : messages) {
+            if (isAnswer(message)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isAnswer(byte[] message) {
+        return message.length > 0 && (message[0] & 0xFF) == RESPONSE_MODE;
+    }
+
+    /**
+     * Builds the response to a single PID, such as "410C1AF8", from a slice
+     * of a message.
+     */
+    private static String toResponse(byte[] message, int from, int to) {
+        char[] hex = new char[2 + 2 * (to - from)];
+        hex[0] = '4';
+        hex[1] = '1';
+        for (int i = from; i < to; i++) {
+            int b = message[i] & 0xFF;
+            hex[2 + 2 * (i - from)] = HEX_DIGITS[b >> 4];
+            hex[3 + 2 * (i - from)] = HEX_DIGITS[b & 0xF];
+        }
+        return new String(hex);
+    }
+}
@@ -0,0 +1,1153 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package br.ufrn.imd.obd.commands;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import br.ufrn.imd.obd.connection.ObdConnection;
+import br.ufrn.imd.obd.connection.ResponseReader;
+import br.ufrn.imd.obd.enums.AvailableCommand;
+import br.ufrn.imd.obd.enums.CommandDescriptor;
+import br.ufrn.imd.obd.enums.Phase;
+import br.ufrn.imd.obd.enums.ResponseStatus;
+import br.ufrn.imd.obd.exceptions.NonNumericResponseException;
+import br.ufrn.imd.obd.exceptions.ResponseException;
+import br.ufrn.imd.obd.utils.FrameReassembler;
+
+import static br.ufrn.imd.obd.utils.RegexUtils.BUS_INIT_PATTERN;
+import static br.ufrn.imd.obd.utils.RegexUtils.COLON_PATTERN;
+import static br.ufrn.imd.obd.utils.RegexUtils.WHITESPACE_PATTERN;
+import static br.ufrn.imd.obd.utils.RegexUtils.removeAll;
+
+/**
+ * Base OBD command.
+ */
+public abstract class ObdCommand implements IObdConnectionCommand {
+
+    private static final String SEARCHING = "SEARCHING";
+    private static final int NEGATIVE_RESPONSE = 0x7F;
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+    private static final int OVERRIDES_RUN = 1;
+    private static final int OVERRIDES_READ_RESULT = 2;
+
+    /**
+     * Which of the hooks called before {@link #tryRun(InputStream, OutputStream)}
+     * existed each command class overrides, looked up once per class.
+     */
+    private static final ConcurrentMap<Class<?>, Integer> OVERRIDES = new ConcurrentHashMap<>();
+
+    /**
+     * Value of each uppercase hexadecimal digit, or -1 for any other character.
+     */
+    private static final byte[] HEX_VALUES = new byte[128];
+
+    static {
+        Arrays.fill(HEX_VALUES, (byte) -1);
+        for (int i = 0; i < 10; i++) {
+            HEX_VALUES['0' + i] = (byte) i;
+        }
+        for (int i = 0; i < 6; i++) {
+            HEX_VALUES['A' + i] = (byte) (10 + i);
+        }
+    }
+
+    /**
+     * Read-only {@link List} view of the response bytes, kept for compatibility.
+     * Prefer {@link #byteAt(int)} and {@link #u16At(int)}, which don't box.
+     */
+    protected final List<Integer> buffer = new BufferView();
+    private int[] bytes = new int[8];
+    private int bytesLength = 0;
+    protected final AvailableCommand cmd;
+    private final CommandDescriptor descriptor;
+    protected boolean imperialUnits = false;
+    protected String rawData = null;
+    protected Long responseDelayInMs = null;
+    protected ExpectedResponseCounts expectedResponses = null;
+    private SampleSink sampleSink = null;
+    private InputStream readerSource = null;
+    private ResponseReader reader = null;
+    private boolean headersOn = false;
+    private String responseText = null;
+    private String ecu = null;
+    private final Map<String, String> ecuResults = new TreeMap<>();
+    private long writeStartNanos = 0;
+    private long writeEndNanos = 0;
+    private long firstByteNanos = 0;
+    private long promptNanos = 0;
+    private long parsedNanos = 0;
+    private ResponseStatus status = null;
+    private long start;
+    private long end;
+
+    /**
+     * Prevent empty instantiation
+     */
+    private ObdCommand() {
+        cmd = null;
+        descriptor = null;
+    }
+
+    /**
+     * Copy constructor.
+     *
+     * @param other the ObdCommand to be copied.
+     */
+    public ObdCommand(ObdCommand other) {
+        this(other.descriptor);
+    }
+
+    /**
+     * Default constructor to use
+     *
+     * @param command the command to send
+     */
+    public ObdCommand(AvailableCommand command) {
+        this(command != null ? CommandDescriptor.of(command) : null);
+    }
+
+    /**
+     * Constructor for commands whose request is only known at runtime.
+     *
+     * @param descriptor the request to send
+     */
+    public ObdCommand(CommandDescriptor descriptor) {
+        this.descriptor = descriptor;
+        this.cmd = descriptor != null ? descriptor.getType() : null;
+    }
+
+    /**
+     * Sends the OBD-II request and deals with the response.
+     * <p>
+     * This method CAN be overridden in fake commands.
+     *
+     * @param in  a {@link java.io.InputStream} object.
+     * @param out a {@link java.io.OutputStream} object.
+     * @throws java.io.IOException            if any.
+     * @throws java.lang.InterruptedException if any.
+     * @throws ResponseException              if the response is an error message.
+     */
+    public void run(InputStream in, OutputStream out) throws IOException, InterruptedException {
+        ResponseStatus result = tryRun(in, out);
+        if (result.isError()) {
+            throw result.toException(descriptor, rawData);
+        }
+    }
+
+    /**
+     * Sends the OBD-II request through a connection and deals with the response.
+     *
+     * @param connection the {@link ObdConnection} to the adapter.
+     * @throws java.io.IOException            if any.
+     * @throws java.lang.InterruptedException if any.
+     * @throws ResponseException              if the response is an error message.
+     */
+    @Override
+    public void run(ObdConnection connection) throws IOException, InterruptedException {
+        synchronized (connection.getLock()) {
+            try {
+                run(connection.getInputStream(), connection.getOutputStream());
+            } finally {
+                connection.getMetrics().record(this);
+            }
+        }
+    }
+
+    /**
+     * Sends the OBD-II request and deals with the response, reporting error
+     * messages (such as "NO DATA") through the returned status instead of
+     * throwing an exception.
+     * <p>
+     * This method CAN be overridden in fake commands.
+     *
+     * @param in  a {@link java.io.InputStream} object.
+     * @param out a {@link java.io.OutputStream} object.
+     * @return {@link ResponseStatus#OK} if the response was parsed, or the error found.
+     * @throws java.io.IOException            if any.
+     * @throws java.lang.InterruptedException if any.
+     */
+    @Override
+    public ResponseStatus tryRun(InputStream in, OutputStream out) throws IOException, InterruptedException {
+        // Only one command can write and read a data in one time on the same adapter.
+        synchronized (in) {
+            start = System.currentTimeMillis();
+            beginPhases();
+            sendCommand(out);
+            ResponseStatus result = readStatus(in);
+            end = System.currentTimeMillis();
+            return result;
+        }
+    }
+
+    /**
+     * Same as {@link #tryRun(InputStream, OutputStream)}, through a connection.
+     * If a subclass overrides {@link #run(InputStream, OutputStream)}, such as
+     * a fake command, it is run through that method.
+     *
+     * @param connection the {@link ObdConnection} to the adapter.
+     * @return {@link ResponseStatus#OK} if the response was parsed, or the error found.
+     * @throws java.io.IOException            if any.
+     * @throws java.lang.InterruptedException if any.
+     */
+    @Override
+    public ResponseStatus tryRun(ObdConnection connection) throws IOException, InterruptedException {
+        synchronized (connection.getLock()) {
+            try {
+                return runForStatus(connection.getInputStream(), connection.getOutputStream());
+            } finally {
+                connection.getMetrics().record(this);
+            }
+        }
+    }
+
+    /**
+     * Writes the request of this command without waiting for its response, for
+     * transports that don't block on the adapter streams. The response must then
+     * be handed to {@link #readResponse(InputStream)}.
+     *
+     * @param out the stream the request is written to.
+     * @throws java.io.IOException            if any.
+     * @throws java.lang.InterruptedException if any.
+     */
+    public void writeRequest(OutputStream out) throws IOException, InterruptedException {
+        start = System.currentTimeMillis();
+        beginPhases();
+        sendCommand(out);
+    }
+
+    /**
+     * Parses a response to a request written by {@link #writeRequest(OutputStream)}.
+     *
+     * @param in a stream holding the response, up to the '&gt;' prompt.
+     * @return {@link ResponseStatus#OK} if the response was parsed, or the error found.
+     * @throws java.io.IOException if any.
+     */
+    public ResponseStatus readResponse(InputStream in) throws IOException {
+        ResponseStatus result = readStatus(in);
+        end = System.currentTimeMillis();
+        return result;
+    }
+
+    /**
+     * Sends the OBD-II request.
+     * <p>
+     * This method may be overridden in subclasses, such as ObMultiCommand or
+     * TroubleCodesCommand.
+     *
+     * @param out The output stream.
+     * @throws java.io.IOException            if any.
+     * @throws java.lang.InterruptedException if any.
+     */
+    protected void sendCommand(OutputStream out) throws IOException, InterruptedException {
+        // write to OutputStream (i.e.: a BluetoothSocket) with an added Carriage return
+        String suffix = expectedResponses != null ? expectedResponses.getSuffix(descriptor.getCommand()) : "";
+        out.write((descriptor.getCommand() + suffix + "\r").getBytes());
+        out.flush();
+        writeEndNanos = System.nanoTime();
+        if (responseDelayInMs != null && responseDelayInMs > 0) {
+            Thread.sleep(responseDelayInMs);
+        }
+    }
+
+    /**
+     * Reads the OBD-II response.
+     * <p>
+     * Only called, instead of {@link #readResultStatus(InputStream)}, when a
+     * subclass overrides it. Its exceptions are then turned into the status
+     * returned by {@link #tryRun(InputStream, OutputStream)}.
+     *
+     * @param in a {@link java.io.InputStream} object.
+     * @throws java.io.IOException if any.
+     * @throws ResponseException   if the response is an error message.
+     * @deprecated use {@link #readResultStatus(InputStream)}, which reports error
+     * messages through the returned status.
+     */
+    @Deprecated
+    protected void readResult(InputStream in) throws IOException {
+        ResponseStatus result = readResultStatus(in);
+        if (result.isError()) {
+            throw result.toException(descriptor, rawData);
+        }
+    }
+
+    /**
+     * Runs this command for its status, through {@link #run(InputStream, OutputStream)}
+     * if a subclass overrides it, or else through {@link #tryRun(InputStream, OutputStream)}.
+     *
+     * @param in  a {@link java.io.InputStream} object.
+     * @param out a {@link java.io.OutputStream} object.
+     * @return {@link ResponseStatus#OK} if the response was parsed, or the error found.
+     * @throws java.io.IOException            if any.
+     * @throws java.lang.InterruptedException if any.
+     */
+    ResponseStatus runForStatus(InputStream in, OutputStream out) throws IOException, InterruptedException {
+        if ((overrides(getClass()) & OVERRIDES_RUN) == 0) {
+            return tryRun(in, out);
+        }
+        try {
+            run(in, out);
+            status = ResponseStatus.OK;
+        } catch (ResponseException e) {
+            status = ResponseStatus.of(e);
+        }
+        return status;
+    }
+
+    /**
+     * Reads the response through {@link #readResult(InputStream)} if a
+     * subclass overrides it, or else through {@link #readResultStatus(InputStream)}.
+     */
+    @SuppressWarnings("deprecation")
+    private ResponseStatus readStatus(InputStream in) throws IOException {
+        if ((overrides(getClass()) & OVERRIDES_READ_RESULT) == 0) {
+            return readResultStatus(in);
+        }
+        try {
+            readResult(in);
+            status = ResponseStatus.OK;
+        } catch (ResponseException e) {
+            status = ResponseStatus.of(e);
+        }
+        parsedNanos = System.nanoTime();
+        return status;
+    }
+
+    /**
+     * Tells if a subclass overrides {@link #run(InputStream, OutputStream)} or
+     * {@link #readResult(InputStream)}, so its response can't be parsed by
+     * another request, such as a multi-PID one.
+     */
+    boolean overridesRunHooks() {
+        return overrides(getClass()) != 0;
+    }
+
+    private static int overrides(Class<?> type) {
+        Integer flags = OVERRIDES.get(type);
+        if (flags == null) {
+            int found = 0;
+            for (Class<?> c = type; c != ObdCommand.class; c = c.getSuperclass()) {
+                if (declares(c, "run", InputStream.class, OutputStream.class)) {
+                    found |= OVERRIDES_RUN;
+                }
+                if (declares(c, "readResult", InputStream.class)) {
+                    found |= OVERRIDES_READ_RESULT;
+                }
+            }
+            flags = found;
+            OVERRIDES.put(type, flags);
+        }
+        return flags;
+    }
+
+    private static boolean declares(Class<?> type, String name, Class<?>... parameterTypes) {
+        try {
+            type.getDeclaredMethod(name, parameterTypes);
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Reads the OBD-II response and performs the calculations, unless it is an
+     * error message.
+     * <p>
+     * This method may be overridden in subclasses, such as ObdMultiCommand.
+     *
+     * @param in a {@link java.io.InputStream} object.
+     * @return the status of the response.
+     * @throws java.io.IOException if any.
+     */
+    protected ResponseStatus readResultStatus(InputStream in) throws IOException {
+        readRawData(in);
+        ResponseStatus result = parseResult();
+        parsedNanos = System.nanoTime();
+        return result;
+    }
+
+    /**
+     * Classifies the raw data and, if it isn't an error, fills the buffer and
+     * performs the calculations.
+     */
+    private ResponseStatus parseResult() {
+        ecuResults.clear();
+        status = ResponseStatus.classify(rawData);
+        if (status == ResponseStatus.OK) {
+            if (responseText != null) {
+                status = parseEcuResponses();
+                if (status != ResponseStatus.OK) {
+                    return status;
+                }
+            } else {
+                ecu = null;
+                fillBuffer();
+                performCalculations();
+            }
+            if (sampleSink != null) {
+                publishSample(sampleSink, promptNanos != 0 ? promptNanos : System.nanoTime());
+            }
+        }
+        return status;
+    }
+
+    /**
+     * Performs the calculations on the message of each ECU of a response read
+     * with headers on. The first ECU, such as the engine on 7E8, goes last,
+     * so this command holds its result.
+     */
+    private ResponseStatus parseEcuResponses() {
+        Map<String, byte[]> messages = FrameReassembler.byEcu(responseText);
+        String primary = null;
+        byte[] primaryMessage = null;
+        for (Map.Entry<String, byte[]> entry : messages.entrySet()) {
+            byte[] message = entry.getValue();
+            if (message.length == 0 || (message[0] & 0xFF) == NEGATIVE_RESPONSE) {
+                continue;
+            }
+            if (primary == null) {
+                primary = entry.getKey();
+                primaryMessage = message;
+            } else {
+                ecu = entry.getKey();
+                setMessage(message);
+                performCalculations();
+                ecuResults.put(entry.getKey(), getCalculatedResult());
+            }
+        }
+
+        if (primary == null) {
+            if (messages.isEmpty()) {
+                throw new NonNumericResponseException(rawData);
+            }
+            return ResponseStatus.UNSUPPORTED;
+        }
+        ecu = primary;
+        setMessage(primaryMessage);
+        performCalculations();
+        ecuResults.put(primary, getCalculatedResult());
+        return ResponseStatus.OK;
+    }
+
+    /**
+     * Makes the message of one ECU the response bytes and raw data.
+     */
+    private void setMessage(byte[] message) {
+        if (bytes.length < message.length) {
+            bytes = new int[Math.max(message.length, bytes.length * 2)];
+        }
+        char[] hex = new char[2 * message.length];
+        for (int i = 0; i < message.length; i++) {
+            int b = message[i] & 0xFF;
+            bytes[i] = b;
+            hex[2 * i] = HEX_DIGITS[b >> 4];
+            hex[2 * i + 1] = HEX_DIGITS[b & 0xF];
+        }
+        bytesLength = message.length;
+        rawData = new String(hex);
+    }
+
+    /**
+     * Reports the value just calculated to a sink. Commands with a numeric
+     * value override it; the default reports nothing.
+     *
+     * @param sink           the sink of this command.
+     * @param timestampNanos when the response was received, in {@link System#nanoTime()} time.
+     */
+    protected void publishSample(SampleSink sink, long timestampNanos) {
+        // no numeric value
+    }
+
+    /**
+     * <p>
+     * readRawData.</p>
+     *
+     * @param in a {@link java.io.InputStream} object.
+     * @throws java.io.IOException if any.
+     */
+    protected void readRawData(InputStream in) throws IOException {
+        CharSequence text = readResponseText(in);
+        responseText = headersOn ? text.toString() : null;
+        rawData = toRawData(text);
+    }
+
+    /**
+     * Turns the text of a response into the raw data parsed by this command.
+     * By default, all whitespace and "SEARCHING" messages are removed.
+     *
+     * @param response the response text, valid only during this call.
+     * @return the raw data.
+     */
+    protected String toRawData(CharSequence response) {
+        return compact(response);
+    }
+
+    /**
+     * Reads a response up to the '&gt;' prompt, recording when its first byte
+     * and the prompt arrived, and learning its response count.
+     *
+     * @param in a {@link java.io.InputStream} object.
+     * @return the response characters, valid until the next read of the stream.
+     * @throws java.io.IOException if any.
+     */
+    protected final CharSequence readResponseText(InputStream in) throws IOException {
+        if (in != readerSource) {
+            // looked up once per stream, not on every response
+            reader = ResponseReader.wrap(in);
+            readerSource = in;
+        }
+        CharSequence res = reader.readResponse();
+        firstByteNanos = reader.getFirstByteNanos();
+        promptNanos = reader.getPromptNanos();
+        learnResponseCount(res);
+        return res;
+    }
+
+    /**
+     * Removes all whitespace [ \t\n\x0B\f\r] and "SEARCHING" messages of a
+     * response in a single pass.
+     *
+     * @param res the raw response.
+     * @return the compacted response.
+     */
+    private static String compact(CharSequence res) {
+        StringBuilder sb = new StringBuilder(res.length());
+        for (int i = 0; i < res.length(); i++) {
+            char c = res.charAt(i);
+            if (c == 'S' && startsWith(res, i, SEARCHING)) {
+                i += SEARCHING.length() - 1;
+            } else if (!isWhitespace(c)) {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static boolean startsWith(CharSequence s, int offset, String prefix) {
+        if (offset + prefix.length() > s.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (s.charAt(offset + i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    /**
+     * Learns how many responses this command gets, if expected response counts are enabled.
+     *
+     * @param response the raw response, with its line breaks.
+     */
+    protected final void learnResponseCount(CharSequence response) {
+        if (expectedResponses != null && descriptor != null) {
+            expectedResponses.learn(descriptor.getCommand(), response);
+        }
+    }
+
+    /**
+     * Parses a response read earlier, such as one from a capture log, as if
+     * this command had just read it. Nothing is sent to the adapter.
+     *
+     * @param response       the response text, without the echo of the request.
+     * @param timestampNanos when the response was received, reported to the sample sink.
+     * @return the status of the response.
+     * @throws NonNumericResponseException if the response isn't an error nor hexadecimal.
+     */
+    public ResponseStatus decode(CharSequence response, long timestampNanos) {
+        writeStartNanos = 0;
+        writeEndNanos = 0;
+        firstByteNanos = 0;
+        promptNanos = timestampNanos;
+        responseText = headersOn ? response.toString() : null;
+        rawData = toRawData(response);
+        ResponseStatus result = parseResult();
+        parsedNanos = 0;
+        return result;
+    }
+
+    /**
+     * Parses a response that was obtained by another request, such as a multi-PID
+     * request sent by {@link ObdCommandGroup}, as if this command had read it.
+     *
+     * @param response the part of the response related to this command.
+     * @param start    the time the request was sent.
+     * @param end      the time the response was read.
+     * @return the status of the response.
+     */
+    ResponseStatus applyResponse(String response, long start, long end) {
+        this.start = start;
+        this.end = end;
+        responseText = null;
+        rawData = response;
+        ResponseStatus result = parseResult();
+        parsedNanos = System.nanoTime();
+        return result;
+    }
+
+    /**
+     * Sets the transfer phases of a request shared with other commands, before
+     * {@link #applyResponse(String, long, long)}.
+     */
+    void setTransferTimes(long writeStart, long writeEnd, long firstByte, long prompt) {
+        writeStartNanos = writeStart;
+        writeEndNanos = writeEnd;
+        firstByteNanos = firstByte;
+        promptNanos = prompt;
+        parsedNanos = 0;
+    }
+
+    private void beginPhases() {
+        writeStartNanos = System.nanoTime();
+        writeEndNanos = 0;
+        firstByteNanos = 0;
+        promptNanos = 0;
+        parsedNanos = 0;
+    }
+
+    /**
+     * Forgets the phases of the last run, for runs that didn't reach the adapter.
+     */
+    void clearPhases() {
+        writeStartNanos = 0;
+        parsedNanos = 0;
+    }
+
+    /**
+     * Classifies the current raw data, keeping the result as the status of this command.
+     *
+     * @return the status of the raw data.
+     */
+    ResponseStatus checkStatus() {
+        status = ResponseStatus.classify(rawData);
+        return status;
+    }
+
+    /**
+     * <p>fillBuffer.</p>
+     */
+    protected void fillBuffer() {
+        /*
+         * Imagine the following response 41 0c 00 0d.
+         *
+         * ELM sends strings!! So, ELM puts spaces between each "byte". And pay
+         * attention to the fact that I've put the word byte in quotes, because 41
+         * is actually TWO bytes (two chars) in the socket. So, we must do some more
+         * processing..
+         */
+        if (!isHex(rawData)) {
+            rawData = removeAll(WHITESPACE_PATTERN, rawData); // removes all [ \t\n\x0B\f\r]
+
+            /*
+             * Data may have echo or informative text like "INIT BUS..." or similar.
+             * The response ends with two carriage return characters. So we need to take
+             * everything from the last carriage return before those two (trimmed above).
+             */
+            rawData = removeAll(BUS_INIT_PATTERN, rawData);
+            rawData = removeAll(COLON_PATTERN, rawData);
+
+            if (!isHex(rawData)) {
+                throw new NonNumericResponseException(rawData);
+            }
+        }
+
+        decodeHex(rawData);
+    }
+
+    /**
+     * Decodes each pair of hexadecimal chars into the buffer, reusing its array.
+     *
+     * @param hex the response, without whitespace or separators.
+     */
+    private void decodeHex(String hex) {
+        int length = hex.length() / 2;
+        if (bytes.length < length) {
+            bytes = new int[Math.max(length, bytes.length * 2)];
+        }
+
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (hexValue(hex.charAt(2 * i)) << 4) | hexValue(hex.charAt(2 * i + 1));
+        }
+        bytesLength = length;
+    }
+
+    private static int hexValue(char c) {
+        return c < HEX_VALUES.length ? HEX_VALUES[c] : -1;
+    }
+
+    /**
+     * Tells if a response is made only of uppercase hexadecimal digits.
+     */
+    private static boolean isHex(String s) {
+        if (s.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (hexValue(s.charAt(i)) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * This method exists so that for each command, there must be a method that is
+     * called only once to perform calculations.
+     */
+    protected abstract void performCalculations();
+
+    /**
+     * <p>getResult.</p>
+     *
+     * @return the raw command response in string representation.
+     */
+    public String getResult() {
+        return rawData;
+    }
+
+    /**
+     * <p>getFormattedResult.</p>
+     *
+     * @return a formatted command response in string representation.
+     */
+    public abstract String getFormattedResult();
+
+    /**
+     * The unit of the result, as used in {@link #getFormattedResult()}
+     *
+     * @return a String representing a unit or "", never null
+     */
+    public String getResultUnit() {
+        return "";  // no unit by default
+    }
+
+    /**
+     * <p>getName.</p>
+     *
+     * @return the OBD command name.
+     */
+    public String getName() {
+        return descriptor.getName();
+    }
+
+    /**
+     * <p>Getter for the field <code>descriptor</code>.</p>
+     *
+     * @return the request sent by this command.
+     */
+    public final CommandDescriptor getDescriptor() {
+        return descriptor;
+    }
+
+    /**
+     * <p>getCommand.</p>
+     *
+     * @return the request sent to the adapter, such as "01 0C".
+     */
+    public final String getCommand() {
+        return descriptor.getCommand();
+    }
+
+    /**
+     * <p>getCommandPID.</p>
+     *
+     * @return a {@link java.lang.String} object.
+     */
+    public final String getCommandPID() {
+        return descriptor.getCommand().substring(3);
+    }
+
+    /**
+     * <p>getMap.</p>
+     *
+     * @return a {@link java.util.Map} object.
+     */
+    @Override
+    public Map<String, String> getMap() {
+        Map<String, String> retMap = new HashMap<>();
+        if (cmd != null) {
+            retMap.put(cmd.name(), getCalculatedResult());
+        }
+        return retMap;
+    }
+
+    /**
+     * Resend this command.
+     *
+     * @param out a {@link java.io.OutputStream} object.
+     * @throws java.io.IOException            if any.
+     * @throws java.lang.InterruptedException if any.
+     */
+    protected void resendCommand(OutputStream out) throws IOException, InterruptedException {
+        out.write("\r".getBytes());
+        out.flush();
+        if (responseDelayInMs != null && responseDelayInMs > 0) {
+            Thread.sleep(responseDelayInMs);
+        }
+    }
+
+    /**
+     * <p>getCalculatedResult.</p>
+     *
+     * @return the command response in string representation, without formatting.
+     */
+    public abstract String getCalculatedResult();
+
+    /**
+     * <p>Getter for the field <code>buffer</code>.</p>
+     *
+     * @return a read-only list view of the response bytes
+     */
+    protected List<Integer> getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * <p>getBufferLength.</p>
+     *
+     * @return the number of bytes in the response
+     */
+    protected final int getBufferLength() {
+        return bytesLength;
+    }
+
+    /**
+     * Returns an unsigned byte of the response.
+     *
+     * @param index the byte index, where 0 is the response mode (e.g. 0x41)
+     * @return a value between 0 and 255
+     */
+    protected final int byteAt(int index) {
+        if (index < 0 || index >= bytesLength) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + bytesLength);
+        }
+        return bytes[index];
+    }
+
+    /**
+     * Returns the unsigned 16-bit big-endian value at the given index, such as
+     * (A * 256) + B.
+     *
+     * @param index the index of the most significant byte
+     * @return a value between 0 and 65535
+     */
+    protected final int u16At(int index) {
+        return (byteAt(index) << 8) | byteAt(index + 1);
+    }
+
+    /**
+     * Returns the unsigned 32-bit big-endian value at the given index, such as
+     * (A * 2^24) + (B * 2^16) + (C * 2^8) + D.
+     *
+     * @param index the index of the most significant byte
+     * @return a value between 0 and 2^32 - 1
+     */
+    protected final long u32At(int index) {
+        return ((long) u16At(index) << 16) | u16At(index + 2);
+    }
+
+    /**
+     * Copies the response bytes, e.g. to cache them.
+     *
+     * @return a new array with the response bytes
+     */
+    int[] copyBuffer() {
+        return Arrays.copyOf(bytes, bytesLength);
+    }
+
+    /**
+     * Replaces the response bytes, e.g. with cached ones.
+     *
+     * @param values the new response bytes
+     */
+    void restoreBuffer(int[] values) {
+        if (bytes.length < values.length) {
+            bytes = new int[values.length];
+        }
+        System.arraycopy(values, 0, bytes, 0, values.length);
+        bytesLength = values.length;
+    }
+
+    /**
+     * List view over the response bytes.
+     */
+    private final class BufferView extends AbstractList<Integer> {
+        @Override
+        public Integer get(int index) {
+            return byteAt(index);
+        }
+
+        @Override
+        public int size() {
+            return bytesLength;
+        }
+    }
+
+    /**
+     * <p>isImperialUnits.</p>
+     *
+     * @return true if imperial units are used, or false otherwise
+     */
+    public boolean isImperialUnits() {
+        return imperialUnits;
+    }
+
+    /**
+     * Set to 'true' if you want to use imperial units, false otherwise. By
+     * default this value is set to 'false'.
+     *
+     * @param isImperial a boolean.
+     */
+    public void setImperialUnits(boolean isImperial) {
+        this.imperialUnits = isImperial;
+    }
+
+    /**
+     * Time the command waits before returning from #sendCommand()
+     *
+     * @return delay in ms (may be null)
+     */
+    public Long getResponseTimeDelay() {
+        return responseDelayInMs;
+    }
+
+    /**
+     * Time the command waits before returning from #sendCommand()
+     *
+     * @param responseDelayInMs a Long (can be null)
+     */
+    public void setResponseTimeDelay(Long responseDelayInMs) {
+        this.responseDelayInMs = responseDelayInMs;
+    }
+
+    /**
+     * <p>Getter for the field <code>expectedResponses</code>.</p>
+     *
+     * @return the expected response counts in use, or null if disabled.
+     */
+    public ExpectedResponseCounts getExpectedResponses() {
+        return expectedResponses;
+    }
+
+    /**
+     * Enables appending the expected response count to OBD requests (e.g. "01 0C 1"),
+     * so the ELM327 doesn't wait for its timeout after the last response. The
+     * counts are learned from the first responses and must be shared only by
+     * commands of the same vehicle. By default this value is null (disabled).
+     *
+     * @param expectedResponses an {@link ExpectedResponseCounts} (can be null)
+     */
+    public void setExpectedResponses(ExpectedResponseCounts expectedResponses) {
+        this.expectedResponses = expectedResponses;
+    }
+
+    /**
+     * <p>Getter for the field <code>sampleSink</code>.</p>
+     *
+     * @return the {@link SampleSink} of this command, or null.
+     */
+    public SampleSink getSampleSink() {
+        return sampleSink;
+    }
+
+    /**
+     * <p>isHeadersOn.</p>
+     *
+     * @return true if responses are parsed as read with headers on.
+     */
+    public boolean isHeadersOn() {
+        return headersOn;
+    }
+
+    /**
+     * Parses the responses as read with headers on ("AT H1", see
+     * {@link br.ufrn.imd.obd.commands.protocol.HeadersOnCommand}), so one
+     * request collects the answer of every ECU, available from
+     * {@link #getEcuResults()}. By default this value is false.
+     *
+     * @param headersOn true if the adapter sends headers.
+     */
+    public void setHeadersOn(boolean headersOn) {
+        this.headersOn = headersOn;
+    }
+
+    /**
+     * Returns the ECU whose message is being calculated, when
+     * {@link #isHeadersOn()}.
+     *
+     * @return an ECU address as in {@link #getEcuResults()}, or null with headers off.
+     */
+    protected String getEcu() {
+        return ecu;
+    }
+
+    /**
+     * Returns the result of each ECU that answered the last request, when
+     * {@link #isHeadersOn()}. The other getters report the first ECU.
+     *
+     * @return the calculated results keyed by ECU address, such as "7E8" and
+     * "7E9", in address order; empty with headers off.
+     */
+    public Map<String, String> getEcuResults() {
+        return Collections.unmodifiableMap(ecuResults);
+    }
+
+    /**
+     * Sets the sink that receives the value of each response, as primitives.
+     * By default this value is null (disabled).
+     *
+     * @param sampleSink a {@link SampleSink} (can be null)
+     */
+    public void setSampleSink(SampleSink sampleSink) {
+        this.sampleSink = sampleSink;
+    }
+
+    /**
+     * <p>Getter for the field <code>status</code>.</p>
+     *
+     * @return the status of the last response, or null if the command wasn't run yet.
+     */
+    public ResponseStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * Sets the status of the response, e.g. when it is restored from a cache.
+     *
+     * @param status a {@link ResponseStatus} object.
+     */
+    protected void setStatus(ResponseStatus status) {
+        this.status = status;
+    }
+
+    /**
+     * <p>Getter for the field <code>start</code>.</p>
+     *
+     * @return a long.
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * <p>Setter for the field <code>start</code>.</p>
+     *
+     * @param start a long.
+     */
+    public void setStart(long start) {
+        this.start = start;
+    }
+
+    /**
+     * <p>Getter for the field <code>end</code>.</p>
+     *
+     * @return a long.
+     */
+    public long getEnd() {
+        return end;
+    }
+
+    /**
+     * <p>Setter for the field <code>end</code>.</p>
+     *
+     * @param end a long.
+     */
+    public void setEnd(long end) {
+        this.end = end;
+    }
+
+    /**
+     * <p>Getter the elapsed time.</p>
+     *
+     * @return a long.
+     */
+    @Override
+    public long getElapsedTime() {
+        return end - start;
+    }
+
+    /**
+     * Returns how long a phase of the last run took, measured with
+     * {@link System#nanoTime()}.
+     *
+     * @param phase the phase.
+     * @return the duration in nanoseconds, or -1 if the phase didn't complete.
+     */
+    public long getPhaseNanos(Phase phase) {
+        switch (phase) {
+            case WRITE:
+                return elapsed(writeStartNanos, writeEndNanos);
+            case WAIT:
+                return elapsed(writeEndNanos, firstByteNanos);
+            case RECEIVE:
+                return elapsed(firstByteNanos, promptNanos);
+            case PARSE:
+                return elapsed(promptNanos, parsedNanos);
+            default:
+                return elapsed(writeStartNanos, parsedNanos);
+        }
+    }
+
+    private static long elapsed(long from, long to) {
+        return from == 0 || to == 0 || to - from < 0 ? -1 : to - from;
+    }
+
+    /**
+     * <p>getCommandMode.</p>
+     *
+     * @return a {@link java.lang.String} object.
+     */
+    public final String getCommandMode() {
+        String command = descriptor.getCommand();
+        return command.length() >= 2 ? command.substring(0, 2) : command;
+    }
+
+    @Override
+    public int hashCode() {
+        return descriptor != null ? descriptor.getCommand().hashCode() : 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        ObdCommand that = (ObdCommand) o;
+
+        return descriptor == that.descriptor || descriptor != null && descriptor.equals(that.descriptor);
+    }
+
+    @Override
+    public String toString() {
+        return getName() + " = " + getFormattedResult() + "\n";
+    }
+}
@@ -0,0 +1,433 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package br.ufrn.imd.obd.commands;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import br.ufrn.imd.obd.connection.ObdConnection;
+import br.ufrn.imd.obd.enums.ResponseStatus;
+import br.ufrn.imd.obd.exceptions.ResponseException;
+
+/**
+ * Container for multiple {@link ObdCommand} instances.
+ */
+public class ObdCommandGroup implements IObdConnectionCommand {
+    private final List<ObdCommand> commands;
+    private boolean batching = false;
+    private ExpectedResponseCounts expectedResponses = null;
+    private SampleSink sampleSink = null;
+    private boolean headersOn = false;
+    private final MultiPidRequest request = new MultiPidRequest();
+
+    /**
+     * Default constructor.
+     */
+    public ObdCommandGroup() {
+        this.commands = new ArrayList<>();
+    }
+
+    /**
+     * Add ObdCommand to list of ObdCommands.
+     *
+     * @param command a {@link ObdCommand} object.
+     */
+    public void add(ObdCommand command) {
+        if (expectedResponses != null) {
+            command.setExpectedResponses(expectedResponses);
+        }
+        if (sampleSink != null) {
+            command.setSampleSink(sampleSink);
+        }
+        if (headersOn) {
+            command.setHeadersOn(true);
+        }
+        this.commands.add(command);
+    }
+
+    /**
+     * Removes ObdCommand from the list of ObdCommands.
+     *
+     * @param command a {@link ObdCommand} object.
+     */
+    public void remove(ObdCommand command) {
+        this.commands.remove(command);
+    }
+
+    /**
+     * Iterate all commands, send them and read response.
+     * <p>
+     * Commands answered with "NO DATA" are removed from the group.
+     *
+     * @param in  a {@link java.io.InputStream} object.
+     * @param out a {@link java.io.OutputStream} object.
+     * @throws java.io.IOException            if any.
+     * @throws java.lang.InterruptedException if any.
+     * @throws ResponseException              if a command gets any other error message.
+     */
+    @Override
+    public void run(InputStream in, OutputStream out) throws IOException, InterruptedException {
+        ObdCommand failed = runUntilError(in, out, null);
+        if (failed != null) {
+            throw failed.getStatus().toException(failed.getDescriptor(), failed.getResult());
+        }
+    }
+
+    /**
+     * Iterate all commands, send them through a connection and read response.
+     * The connection is held for the whole group, so no other command is
+     * interleaved with the ones of this group.
+     *
+     * @param connection the {@link ObdConnection} to the adapter.
+     * @throws java.io.IOException            if any.
+     * @throws java.lang.InterruptedException if any.
+     * @throws ResponseException              if a command gets an error message other than "NO DATA".
+     */
+    @Override
+    public void run(ObdConnection connection) throws IOException, InterruptedException {
+        synchronized (connection.getLock()) {
+            ObdCommand failed = runUntilError(connection.getInputStream(), connection.getOutputStream(),
+                    connection);
+            if (failed != null) {
+                throw failed.getStatus().toException(failed.getDescriptor(), failed.getResult());
+            }
+        }
+    }
+
+    /**
+     * Iterate all commands, send them and read response, without throwing
+     * exceptions for error messages.
+     * <p>
+     * Commands answered with "NO DATA" are removed from the group, and the
+     * iteration stops at the first command that gets any other error message.
+     *
+     * @param in  a {@link java.io.InputStream} object.
+     * @param out a {@link java.io.OutputStream} object.
+     * @return {@link ResponseStatus#OK}, or the error that stopped the iteration.
+     * @throws java.io.IOException            if any.
+     * @throws java.lang.InterruptedException if any.
+     */
+    @Override
+    public ResponseStatus tryRun(InputStream in, OutputStream out) throws IOException, InterruptedException {
+        ObdCommand failed = runUntilError(in, out, null);
+        return failed != null ? failed.getStatus() : ResponseStatus.OK;
+    }
+
+    /**
+     * Same as {@link #tryRun(InputStream, OutputStream)}, through a connection.
+     *
+     * @param connection the {@link ObdConnection} to the adapter.
+     * @return {@link ResponseStatus#OK}, or the error that stopped the iteration.
+     * @throws java.io.IOException            if any.
+     * @throws java.lang.InterruptedException if any.
+     */
+    @Override
+    public ResponseStatus tryRun(ObdConnection connection) throws IOException, InterruptedException {
+        synchronized (connection.getLock()) {
+            ObdCommand failed = runUntilError(connection.getInputStream(), connection.getOutputStream(),
+                    connection);
+            return failed != null ? failed.getStatus() : ResponseStatus.OK;
+        }
+    }
+
+    /**
+     * Runs the commands, removing the ones answered with "NO DATA".
+     *
+     * @return the command that got another error message, or null.
+     */
+    private ObdCommand runUntilError(InputStream in, OutputStream out, ObdConnection connection)
+            throws IOException, InterruptedException {
+        if (batching) {
+            return runBatched(in, out, connection);
+        }
+
+        for (Iterator<ObdCommand> it = commands.iterator(); it.hasNext();) {
+            ObdCommand command = it.next();
+            ResponseStatus status = tryRun(command, in, out, connection);
+            if (status == ResponseStatus.NO_DATA) {
+                it.remove();
+            } else if (status.isError()) {
+                return command;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Packs the Mode 01 commands into multi-PID requests of up to six PIDs, and
+     * runs the remaining commands one by one.
+     */
+    private ObdCommand runBatched(InputStream in, OutputStream out, ObdConnection connection)
+            throws IOException, InterruptedException {
+        List<ObdCommand> unsupported = new ArrayList<>();
+        // reused, so it keeps its reader between runs; drop what a failed run left
+        request.clear();
+        ObdCommand failed = null;
+
+        for (ObdCommand command : new ArrayList<>(commands)) {
+            if (!MultiPidRequest.accepts(command)) {
+                ResponseStatus status = tryRun(command, in, out, connection);
+                if (status == ResponseStatus.NO_DATA) {
+                    unsupported.add(command);
+                } else if (status.isError()) {
+                    failed = command;
+                    break;
+                }
+                continue;
+            }
+
+            request.add(command);
+            if (request.isFull()) {
+                failed = runRequest(request, unsupported, in, out, connection);
+                if (failed != null) {
+                    break;
+                }
+            }
+        }
+
+        if (failed == null && !request.isEmpty()) {
+            failed = runRequest(request, unsupported, in, out, connection);
+        }
+        commands.removeAll(unsupported);
+        return failed;
+    }
+
+    private ObdCommand runRequest(MultiPidRequest request, List<ObdCommand> unsupported, InputStream in,
+                                  OutputStream out, ObdConnection connection)
+            throws IOException, InterruptedException {
+        try {
+            ResponseStatus status = request.run(in, out, expectedResponses, unsupported);
+            if (status == ResponseStatus.UNSUPPORTED) {
+                return runEach(request.getCommands(), unsupported, in, out, connection);
+            }
+            if (status == ResponseStatus.OK && connection != null) {
+                for (ObdCommand command : request.getCommands()) {
+                    if (!unsupported.contains(command)) {
+                        connection.getMetrics().record(command);
+                    }
+                }
+            }
+            return status.isError() && status != ResponseStatus.NO_DATA ? request.getCommands().get(0) : null;
+        } finally {
+            request.clear();
+        }
+    }
+
+    /**
+     * Runs the commands of a refused multi-PID request one by one.
+     */
+    private static ObdCommand runEach(List<ObdCommand> batch, List<ObdCommand> unsupported, InputStream in,
+                                      OutputStream out, ObdConnection connection)
+            throws IOException, InterruptedException {
+        for (ObdCommand command : batch) {
+            ResponseStatus status = tryRun(command, in, out, connection);
+            if (status == ResponseStatus.NO_DATA) {
+                unsupported.add(command);
+            } else if (status.isError()) {
+                return command;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Runs a command through the connection if there is one, so it uses the
+     * connection cache and is recorded in its metrics. Commands overriding
+     * {@link ObdCommand#run(InputStream, OutputStream)}, such as fake ones,
+     * are run through that method.
+     */
+    private static ResponseStatus tryRun(ObdCommand command, InputStream in, OutputStream out,
+                                         ObdConnection connection) throws IOException, InterruptedException {
+        return connection != null ? command.tryRun(connection) : command.runForStatus(in, out);
+    }
+
+    /**
+     * <p>isBatching.</p>
+     *
+     * @return true if Mode 01 commands are sent in multi-PID requests.
+     */
+    public boolean isBatching() {
+        return batching;
+    }
+
+    /**
+     * Set to 'true' to send Mode 01 commands in multi-PID requests (e.g. "01 0C 0D 05"),
+     * up to six PIDs per request. Only ISO 15765-4 (CAN) vehicles accept such
+     * requests, so this must be used with a CAN protocol and headers off. By
+     * default this value is set to 'false'.
+     *
+     * @param batching a boolean.
+     */
+    public void setBatching(boolean batching) {
+        this.batching = batching;
+    }
+
+    /**
+     * <p>Getter for the field <code>expectedResponses</code>.</p>
+     *
+     * @return the expected response counts in use, or null if disabled.
+     */
+    public ExpectedResponseCounts getExpectedResponses() {
+        return expectedResponses;
+    }
+
+    /**
+     * Enables appending the expected response count to the requests of all
+     * commands of this group, including the ones added later.
+     *
+     * @param expectedResponses an {@link ExpectedResponseCounts} (can be null)
+     * @see ObdCommand#setExpectedResponses(ExpectedResponseCounts)
+     */
+    public void setExpectedResponses(ExpectedResponseCounts expectedResponses) {
+        this.expectedResponses = expectedResponses;
+        for (ObdCommand command : commands) {
+            command.setExpectedResponses(expectedResponses);
+        }
+    }
+
+    /**
+     * <p>Getter for the field <code>sampleSink</code>.</p>
+     *
+     * @return the {@link SampleSink} shared by the commands, or null.
+     */
+    public SampleSink getSampleSink() {
+        return sampleSink;
+    }
+
+    /**
+     * Sets the sink that receives the value of each response of the commands
+     * of this group, including the ones added later.
+     *
+     * @param sampleSink a {@link SampleSink} (can be null)
+     */
+    public void setSampleSink(SampleSink sampleSink) {
+        this.sampleSink = sampleSink;
+        for (ObdCommand command : commands) {
+            command.setSampleSink(sampleSink);
+        }
+    }
+
+    /**
+     * <p>isHeadersOn.</p>
+     *
+     * @return true if the commands parse responses read with headers on.
+     */
+    public boolean isHeadersOn() {
+        return headersOn;
+    }
+
+    /**
+     * Makes the commands of this group, including the ones added later, parse
+     * responses read with headers on. Headers-on commands aren't batched.
+     *
+     * @param headersOn true if the adapter sends headers.
+     * @see ObdCommand#setHeadersOn(boolean)
+     */
+    public void setHeadersOn(boolean headersOn) {
+        this.headersOn = headersOn;
+        for (ObdCommand command : commands) {
+            command.setHeadersOn(headersOn);
+        }
+    }
+
+    @Override
+    public String getResult() {
+        StringBuilder res = new StringBuilder();
+        for (ObdCommand command : commands) {
+            res.append(command.getResult()).append(",");
+        }
+
+        return res.toString();
+    }
+
+    /**
+     * <p>getFormattedResult.</p>
+     *
+     * @return a {@link java.lang.String} object.
+     */
+    @Override
+    public String getFormattedResult() {
+        StringBuilder res = new StringBuilder();
+        for (ObdCommand command : commands) {
+            res.append(command.getFormattedResult()).append(",");
+        }
+
+        return res.toString();
+    }
+
+    @Override
+    public String getResultUnit() {
+        StringBuilder res = new StringBuilder();
+        for (ObdCommand command : commands) {
+            res.append(command.getResultUnit()).append(",");
+        }
+
+        return res.toString();
+    }
+
+    @Override
+    public String getName() {
+        StringBuilder res = new StringBuilder();
+        for (ObdCommand command : commands) {
+            res.append(command.getName()).append(",");
+        }
+
+        return res.toString();
+    }
+
+    @Override
+    public String getCommandPID() {
+        StringBuilder res = new StringBuilder();
+        for (ObdCommand command : commands) {
+            res.append(command.getCommandPID()).append(",");
+        }
+
+        return res.toString();
+    }
+
+    @Override
+    public Map<String, String> getMap() {
+        Map<String, String> retMap = new HashMap<>();
+        for (ObdCommand command : commands) {
+            Map<String, String> cmdMap = command.getMap();
+            for (Map.Entry<String, String> entry : cmdMap.entrySet()) {
+                retMap.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return retMap;
+    }
+
+    @Override
+    public long getElapsedTime() {
+        long elapsedTime = 0L;
+        for (ObdCommand command : commands) {
+            elapsedTime += command.getElapsedTime();
+        }
+        return elapsedTime;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (ObdCommand command : commands) {
+            sb.append(command.toString());
+        }
+        return sb.toString();
+    }
+}
@@ -15,6 +15,7 @@ package br.ufrn.imd.obd.commands;
 import java.util.Locale;
 
 import br.ufrn.imd.obd.enums.AvailableCommand;
+import br.ufrn.imd.obd.enums.Unit;
 
 /**
  * Abstract class for percentage commands.
@@ -46,7 +47,15 @@ public abstract class PercentageObdCommand extends ObdCommand {
     @Override
     protected void performCalculations() {
         // ignore first two bytes [hh hh] of the response
-        percentage = (buffer.get(2) * 100f) / 255f;
+        percentage = (byteAt(2) * 100f) / 255f;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void publishSample(SampleSink sink, long timestampNanos) {
+        sink.onSample(cmd, timestampNanos, percentage, Unit.PERCENT);
     }
 
     /**
@@ -0,0 +1,191 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package br.ufrn.imd.obd.commands;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import br.ufrn.imd.obd.cache.CachedResponse;
+import br.ufrn.imd.obd.cache.MemoryResponseCache;
+import br.ufrn.imd.obd.cache.ResponseCache;
+import br.ufrn.imd.obd.connection.ObdConnection;
+import br.ufrn.imd.obd.enums.AvailableCommand;
+import br.ufrn.imd.obd.enums.ResponseStatus;
+
+/**
+ * Base persistent OBD command.
+ * <p>
+ * Its response doesn't change while the vehicle is the same, so it is only
+ * requested once and then answered from a {@link ResponseCache}: the one of
+ * the {@link ObdConnection} it is run through, or the cache of the stream it
+ * is run on directly, so two adapters never share their responses.
+ */
+public abstract class PersistentCommand extends ObdCommand {
+    /**
+     * The caches of the streams commands are run on directly. They are held
+     * by the streams weakly, so each one goes away with its stream.
+     */
+    private static final Map<InputStream, ResponseCache> STREAM_CACHES = new WeakHashMap<>();
+
+    private InputStream cacheSource = null;
+    private ResponseCache streamCache = null;
+
+    /**
+     * <p>Constructor for PersistentCommand.</p>
+     *
+     * @param command a {@link java.lang.String} object.
+     */
+    public PersistentCommand(AvailableCommand command) {
+        super(command);
+    }
+
+    /**
+     * <p>Constructor for PersistentCommand.</p>
+     *
+     * @param other a {@link ObdCommand} object.
+     */
+    public PersistentCommand(ObdCommand other) {
+        super(other);
+    }
+
+    /**
+     * Clears the caches of the streams commands were run on directly. The
+     * caches of the connections aren't affected.
+     */
+    public static void reset() {
+        synchronized (STREAM_CACHES) {
+            for (ResponseCache cache : STREAM_CACHES.values()) {
+                cache.clear();
+            }
+        }
+    }
+
+    /**
+     * Returns the cache used by {@link #tryRun(InputStream, OutputStream)} on
+     * a stream, created on first use.
+     *
+     * @param in the adapter {@link java.io.InputStream}.
+     * @return the cache of the commands run directly on that stream.
+     */
+    public static ResponseCache getStreamCache(InputStream in) {
+        synchronized (STREAM_CACHES) {
+            ResponseCache cache = STREAM_CACHES.get(in);
+            if (cache == null) {
+                cache = new MemoryResponseCache();
+                STREAM_CACHES.put(in, cache);
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ResponseStatus tryRun(InputStream in, OutputStream out) throws IOException, InterruptedException {
+        if (in != cacheSource) {
+            // looked up once per stream, not on every run
+            streamCache = getStreamCache(in);
+            cacheSource = in;
+        }
+        return tryRun(in, out, streamCache);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void run(ObdConnection connection) throws IOException, InterruptedException {
+        ResponseStatus result = tryRun(connection);
+        if (result.isError()) {
+            throw result.toException(getDescriptor(), rawData);
+        }
+    }
+
+    /**
+     * Same as {@link #tryRun(InputStream, OutputStream)}, through a connection
+     * and its cache.
+     *
+     * @param connection the {@link ObdConnection} to the adapter.
+     * @return {@link ResponseStatus#OK} if the response was parsed, or the error found.
+     * @throws java.io.IOException            if any.
+     * @throws java.lang.InterruptedException if any.
+     */
+    @Override
+    public ResponseStatus tryRun(ObdConnection connection) throws IOException, InterruptedException {
+        synchronized (connection.getLock()) {
+            try {
+                return tryRun(connection.getInputStream(), connection.getOutputStream(), connection.getCache());
+            } finally {
+                connection.getMetrics().record(this);
+            }
+        }
+    }
+
+    private ResponseStatus tryRun(InputStream in, OutputStream out, ResponseCache cache)
+            throws IOException, InterruptedException {
+        if (loadFrom(cache)) {
+            return ResponseStatus.OK;
+        }
+        ResponseStatus result = super.tryRun(in, out);
+        if (result == ResponseStatus.OK) {
+            saveTo(cache);
+        }
+        return result;
+    }
+
+    /**
+     * Answers this command from a cache, for transports that run commands
+     * with {@link #writeRequest(OutputStream)} and {@link #readResponse(InputStream)}.
+     *
+     * @param cache the cache of the vehicle.
+     * @return true if the response was in the cache, and the command is done;
+     * always false with headers on, as the cache only holds the answer of the
+     * first ECU.
+     */
+    public boolean loadFrom(ResponseCache cache) {
+        if (isHeadersOn()) {
+            return false;
+        }
+        CachedResponse cached = cache.get(getKey());
+        if (cached == null) {
+            return false;
+        }
+        rawData = cached.getRawData();
+        restoreBuffer(cached.getBytes());
+        setStatus(ResponseStatus.OK);
+        clearPhases();
+        performCalculations();
+        return true;
+    }
+
+    /**
+     * Stores the response of the last run of this command in a cache, if it
+     * was parsed with headers off, as {@link #loadFrom(ResponseCache)} never
+     * answers headers-on commands.
+     *
+     * @param cache the cache of the vehicle.
+     */
+    public void saveTo(ResponseCache cache) {
+        if (getStatus() == ResponseStatus.OK && rawData != null && !isHeadersOn()) {
+            cache.put(getKey(), new CachedResponse(rawData, copyBuffer(), System.currentTimeMillis()));
+        }
+    }
+
+    private String getKey() {
+        return getClass().getSimpleName() + (getDescriptor() != null ? getCommand() : "");
+    }
+}
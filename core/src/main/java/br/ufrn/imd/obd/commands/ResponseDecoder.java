@@ -0,0 +1,190 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package br.ufrn.imd.obd.commands;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import br.ufrn.imd.obd.commands.fuel.FuelTrimCommand;
+import br.ufrn.imd.obd.enums.CommandsConstants;
+import br.ufrn.imd.obd.enums.FuelTrim;
+import br.ufrn.imd.obd.enums.ResponseStatus;
+
+/**
+ * Decodes responses read earlier, such as the ones of a capture log, with the
+ * command of each request, reporting the values to a {@link SampleSink}.
+ * <p>
+ * Every Mode 01 PID of {@link CommandsConstants#SUPPORTED_COMMANDS} is decoded,
+ * as well as the multi-PID requests sent by {@link ObdCommandGroup}; other
+ * commands can be added with {@link #register(ObdCommand)}. The commands keep
+ * the last response they decoded, so use one decoder per thread.
+ */
+public class ResponseDecoder {
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private final ObdCommand[] mode01 = new ObdCommand[0x100];
+    private final Map<String, ObdCommand> others = new HashMap<>();
+    private final int[] request = new int[MultiPidRequest.MAX_PIDS + 1];
+    private SampleSink sampleSink = null;
+
+    /**
+     * Creates a decoder of the Mode 01 PIDs known by this library.
+     */
+    public ResponseDecoder() {
+        for (Map.Entry<Integer, Class<? extends ObdCommand>> entry : CommandsConstants.SUPPORTED_COMMANDS.entrySet()) {
+            ObdCommand command = newInstance(entry.getValue());
+            if (command != null && command.getCommand().equals(request(0x01, entry.getKey()))) {
+                register(command);
+            }
+        }
+        for (FuelTrim bank : FuelTrim.values()) {
+            register(new FuelTrimCommand(bank));
+        }
+    }
+
+    private static ObdCommand newInstance(Class<? extends ObdCommand> type) {
+        try {
+            return type.getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            return null;  // needs parameters, registered explicitly
+        }
+    }
+
+    private static String request(int mode, int pid) {
+        return new String(new char[]{HEX[mode >> 4], HEX[mode & 0xF], ' ', HEX[pid >> 4], HEX[pid & 0xF]});
+    }
+
+    /**
+     * Decodes the responses to the request of a command with it, replacing
+     * the command registered for that request, if any.
+     *
+     * @param command a command used only by this decoder.
+     */
+    public void register(ObdCommand command) {
+        command.setSampleSink(sampleSink);
+        int n = parseRequest(command.getCommand());
+        if (n == 2 && request[0] == 0x01) {
+            mode01[request[1]] = command;
+        } else {
+            others.put(command.getCommand(), command);
+        }
+    }
+
+    /**
+     * Sets the sink receiving the decoded values.
+     *
+     * @param sampleSink a {@link SampleSink} (can be null)
+     */
+    public void setSampleSink(SampleSink sampleSink) {
+        this.sampleSink = sampleSink;
+        for (ObdCommand command : mode01) {
+            if (command != null) {
+                command.setSampleSink(sampleSink);
+            }
+        }
+        for (ObdCommand command : others.values()) {
+            command.setSampleSink(sampleSink);
+        }
+    }
+
+    /**
+     * <p>Getter for the field <code>sampleSink</code>.</p>
+     *
+     * @return the sink receiving the decoded values.
+     */
+    public SampleSink getSampleSink() {
+        return sampleSink;
+    }
+
+    /**
+     * Decodes a response with the command of its request.
+     *
+     * @param request        the request, such as "01 0C" or "01 0C 0D 1".
+     * @param response       the response, without the echo of the request.
+     * @param timestampNanos when the response was received, reported to the sink.
+     * @return the status of the response, or null if no command decodes the request.
+     * @throws br.ufrn.imd.obd.exceptions.NonNumericResponseException if the response is garbled.
+     */
+    public ResponseStatus decode(CharSequence request, CharSequence response, long timestampNanos) {
+        int n = parseRequest(request);
+        if (n < 2) {
+            return null;
+        }
+        if (this.request[0] == 0x01) {
+            if (n == 2) {
+                ObdCommand command = mode01[this.request[1]];
+                return command != null ? command.decode(response, timestampNanos) : null;
+            }
+            return MultiPidRequest.decode(response.toString(), mode01, timestampNanos);
+        }
+
+        StringBuilder key = new StringBuilder(3 * n);
+        for (int i = 0; i < n; i++) {
+            if (i > 0) {
+                key.append(' ');
+            }
+            key.append(HEX[this.request[i] >> 4]).append(HEX[this.request[i] & 0xF]);
+        }
+        ObdCommand command = others.get(key.toString());
+        return command != null ? command.decode(response, timestampNanos) : null;
+    }
+
+    /**
+     * Reads the bytes of a request into {@link #request}, leaving out the
+     * response count suffix.
+     *
+     * @return the number of bytes, or -1 if it isn't an OBD request.
+     */
+    private int parseRequest(CharSequence text) {
+        int n = 0;
+        int digits = 0;
+        int value = 0;
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            int digit = Character.digit(c, 16);
+            if (digit >= 0) {
+                value = value << 4 | digit;
+                if (++digits % 2 == 0) {
+                    if (n == request.length) {
+                        return -1;
+                    }
+                    request[n++] = value;
+                    value = 0;
+                }
+            } else if (c == ' ' || c == '\r' || c == '\n') {
+                if (digits % 2 != 0) {
+                    // only the last token may be odd: the response count
+                    if (digits != 1 || !isBlank(text, i)) {
+                        return -1;
+                    }
+                    break;
+                }
+                digits = 0;
+            } else {
+                return -1;
+            }
+        }
+        return n;
+    }
+
+    private static boolean isBlank(CharSequence s, int from) {
+        for (int i = from; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c != ' ' && c != '\r' && c != '\n') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package br.ufrn.imd.obd.commands;
+
+import br.ufrn.imd.obd.enums.AvailableCommand;
+import br.ufrn.imd.obd.enums.Unit;
+
+/**
+ * Receives the value of each response as primitives, right after the command
+ * performs its calculations, so readings can be logged or sent without
+ * creating any string or map.
+ * <p>
+ * Called on the thread that parses the response; implementations must return
+ * quickly. The value is in the unit system selected for the command, as in
+ * {@link ObdCommand#getCalculatedResult()}.
+ */
+public interface SampleSink {
+
+    /**
+     * Receives an integer value, such as an engine speed or a code count.
+     *
+     * @param command        the command that read the value.
+     * @param timestampNanos when the response was received, in {@link System#nanoTime()} time.
+     * @param value          the value.
+     * @param unit           the unit of the value.
+     */
+    void onSample(AvailableCommand command, long timestampNanos, long value, Unit unit);
+
+    /**
+     * Receives a real value, such as a temperature or a percentage.
+     *
+     * @param command        the command that read the value.
+     * @param timestampNanos when the response was received, in {@link System#nanoTime()} time.
+     * @param value          the value.
+     * @param unit           the unit of the value.
+     */
+    void onSample(AvailableCommand command, long timestampNanos, double value, Unit unit);
+}
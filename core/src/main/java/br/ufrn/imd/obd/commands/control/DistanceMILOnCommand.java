@@ -15,8 +15,10 @@ package br.ufrn.imd.obd.commands.control;
 import java.util.Locale;
 
 import br.ufrn.imd.obd.commands.ObdCommand;
+import br.ufrn.imd.obd.commands.SampleSink;
 import br.ufrn.imd.obd.commands.SystemOfUnits;
 import br.ufrn.imd.obd.enums.AvailableCommand;
+import br.ufrn.imd.obd.enums.Unit;
 
 /**
  * Distance traveled since Malfunction Indicator Light (MIL) was on.
@@ -47,7 +49,19 @@ public class DistanceMILOnCommand extends ObdCommand implements SystemOfUnits {
     @Override
     protected void performCalculations() {
         // ignore first two bytes [01 31] of the response
-        km = buffer.get(2) * 256 + buffer.get(3);
+        km = u16At(2);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void publishSample(SampleSink sink, long timestampNanos) {
+        if (imperialUnits) {
+            sink.onSample(cmd, timestampNanos, getImperialUnit(), Unit.MILES);
+        } else {
+            sink.onSample(cmd, timestampNanos, km, Unit.KILOMETERS);
+        }
     }
 
     /**
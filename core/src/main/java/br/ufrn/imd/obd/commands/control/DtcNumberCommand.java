@@ -13,7 +13,9 @@
 package br.ufrn.imd.obd.commands.control;
 
 import br.ufrn.imd.obd.commands.ObdCommand;
+import br.ufrn.imd.obd.commands.SampleSink;
 import br.ufrn.imd.obd.enums.AvailableCommand;
+import br.ufrn.imd.obd.enums.Unit;
 
 /**
  * This command will for now read MIL (check engine light) state and number of
@@ -50,11 +52,19 @@ public class DtcNumberCommand extends ObdCommand {
     @Override
     protected void performCalculations() {
         // ignore first two bytes [hh hh] of the response
-        final int mil = buffer.get(2);
+        final int mil = byteAt(2);
         milOn = (mil & 0x80) == 128;
         codeCount = mil & 0x7F;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void publishSample(SampleSink sink, long timestampNanos) {
+        sink.onSample(cmd, timestampNanos, codeCount, Unit.COUNT);
+    }
+
     /**
      * <p>getFormattedResult.</p>
      *
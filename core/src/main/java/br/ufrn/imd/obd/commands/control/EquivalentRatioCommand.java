@@ -13,7 +13,9 @@
 package br.ufrn.imd.obd.commands.control;
 
 import br.ufrn.imd.obd.commands.PercentageObdCommand;
+import br.ufrn.imd.obd.commands.SampleSink;
 import br.ufrn.imd.obd.enums.AvailableCommand;
+import br.ufrn.imd.obd.enums.Unit;
 
 /**
  * Fuel systems that use conventional oxygen sensor display the commanded open
@@ -50,9 +52,15 @@ public class EquivalentRatioCommand extends PercentageObdCommand {
     @Override
     protected void performCalculations() {
         // ignore first two bytes [hh hh] of the response
-        int a = buffer.get(2);
-        int b = buffer.get(3);
-        percentage = (a * 256 + b) / 32768f;
+        percentage = u16At(2) / 32768f;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void publishSample(SampleSink sink, long timestampNanos) {
+        sink.onSample(cmd, timestampNanos, percentage, Unit.RATIO);
     }
 
     /**
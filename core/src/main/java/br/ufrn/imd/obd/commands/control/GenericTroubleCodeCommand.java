@@ -0,0 +1,173 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package br.ufrn.imd.obd.commands.control;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+import br.ufrn.imd.obd.commands.ObdCommand;
+import br.ufrn.imd.obd.enums.AvailableCommand;
+import br.ufrn.imd.obd.utils.FrameReassembler;
+
+/**
+ * It is not needed no know how many DTC are stored. Because when no DTC are
+ * stored response will be NO DATA And where are more messages it will be stored
+ * in frames that have 7 bytes. In one frame are stored 3 DTC. If we find out
+ * DTC P0000 that mean no message are we can end.
+ */
+public abstract class GenericTroubleCodeCommand extends ObdCommand {
+
+    /**
+     * Constant <code>dtcLetters={'P', 'C', 'B', 'U'}</code>
+     */
+    protected static final char[] dtcLetters = { 'P', 'C', 'B', 'U' };
+    /**
+     * Constant <code>hexArray="0123456789ABCDEF".toCharArray()</code>
+     */
+    protected static final char[] hexArray = "0123456789ABCDEF".toCharArray();
+
+    private static final int LEGACY_MESSAGE_LENGTH = 7;
+
+    protected final Set<String> troubleCodes = new TreeSet<>();
+
+    /**
+     * <p>
+     * Constructor for TroubleCodesCommand.
+     * </p>
+     */
+    public GenericTroubleCodeCommand(AvailableCommand command) {
+        super(command);
+    }
+
+    /**
+     * Copy Constructor.
+     *
+     * @param other a {@link GenericTroubleCodeCommand} object.
+     */
+    public GenericTroubleCodeCommand(GenericTroubleCodeCommand other) {
+        super(other);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * On CAN (ISO 15765-4), each ECU answers with one message holding the
+     * number of codes and then the codes, split into frames when longer than
+     * seven bytes. On the other protocols, the codes come three per message of
+     * seven bytes, padded with zeros; with headers on, the messages of one ECU
+     * arrive joined.
+     */
+    @Override
+    protected void performCalculations() {
+        troubleCodes.clear();
+        int responseMode = 0x40 + Integer.parseInt(getCommandMode(), 16);
+        // with headers on, the address tells the bus; with headers off, each
+        // message of the older buses is a line of its own, of odd length,
+        // while a CAN message with its count byte always has an even length
+        String ecu = getEcu();
+        for (byte[] message : FrameReassembler.messages(getResult())) {
+            if (message.length == 0 || (message[0] & 0xFF) != responseMode) {
+                continue;
+            }
+
+            boolean legacy = ecu != null ? !FrameReassembler.isCan(ecu) : message.length % 2 == 1;
+            int step = legacy ? LEGACY_MESSAGE_LENGTH : message.length;
+            for (int at = 0; at < message.length; at += step) {
+                // skips the response mode, and on CAN the number of codes
+                for (int i = at + (legacy ? 1 : 2); i + 1 < Math.min(at + step, message.length); i += 2) {
+                    int code = (message[i] & 0xFF) << 8 | (message[i + 1] & 0xFF);
+                    if (code != 0) {  // P0000 is padding
+                        troubleCodes.add(toTroubleCode(code));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * No longer called: the codes of every protocol are now read from the
+     * messages rebuilt by {@link FrameReassembler}. Kept so that subclasses
+     * which implement it still compile.
+     *
+     * @param str the response, without spaces.
+     * @return the response unchanged.
+     * @deprecated the frame numbers are removed by {@link FrameReassembler}.
+     */
+    @Deprecated
+    protected String removeCarriageNumber(String str) {
+        return str;
+    }
+
+    private static String toTroubleCode(int code) {
+        char[] dtc = new char[5];
+        dtc[0] = dtcLetters[code >> 14];
+        dtc[1] = hexArray[(code >> 12) & 0x3];
+        dtc[2] = hexArray[(code >> 8) & 0xF];
+        dtc[3] = hexArray[(code >> 4) & 0xF];
+        dtc[4] = hexArray[code & 0xF];
+        return new String(dtc);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void fillBuffer() {
+        // Empty method
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The line breaks are kept, as they separate the messages of the older
+     * protocols.
+     */
+    @Override
+    protected String toRawData(CharSequence res) {
+        // skip ' ', keeping the line breaks between frames
+        StringBuilder sb = new StringBuilder(res.length());
+        for (int i = 0; i < res.length(); i++) {
+            char c = res.charAt(i);
+            if (c != ' ') {
+                sb.append(c);
+            }
+        }
+
+        return sb.toString().trim();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getFormattedResult() {
+        return getCalculatedResult();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getCalculatedResult() {
+        StringBuilder sb = new StringBuilder();
+        int count = 1;
+        for (String code : troubleCodes) {
+            sb.append(code);
+            if (count++ < troubleCodes.size()) {
+                sb.append(",");
+            }
+        }
+        return "[" + sb.toString() + "]";
+    }
+
+}
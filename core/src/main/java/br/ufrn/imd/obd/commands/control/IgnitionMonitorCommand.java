@@ -14,7 +14,9 @@ package br.ufrn.imd.obd.commands.control;
 
 
 import br.ufrn.imd.obd.commands.ObdCommand;
+import br.ufrn.imd.obd.commands.SampleSink;
 import br.ufrn.imd.obd.enums.AvailableCommand;
+import br.ufrn.imd.obd.enums.Unit;
 
 public class IgnitionMonitorCommand extends ObdCommand {
 
@@ -42,6 +44,14 @@ public class IgnitionMonitorCommand extends ObdCommand {
         ignitionOn = result.equalsIgnoreCase("ON");
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void publishSample(SampleSink sink, long timestampNanos) {
+        sink.onSample(cmd, timestampNanos, ignitionOn ? 1 : 0, Unit.NONE);
+    }
+
     @Override
     public String getFormattedResult() {
         return getResult();
@@ -16,7 +16,9 @@ package br.ufrn.imd.obd.commands.control;
 import java.util.Locale;
 
 import br.ufrn.imd.obd.commands.ObdCommand;
+import br.ufrn.imd.obd.commands.SampleSink;
 import br.ufrn.imd.obd.enums.AvailableCommand;
+import br.ufrn.imd.obd.enums.Unit;
 
 /**
  * <p>ModuleVoltageCommand class.</p>
@@ -48,9 +50,15 @@ public class ModuleVoltageCommand extends ObdCommand {
     @Override
     protected void performCalculations() {
         // ignore first two bytes [hh hh] of the response
-        int a = buffer.get(2);
-        int b = buffer.get(3);
-        voltage = (a * 256 + b) / 1000f;
+        voltage = u16At(2) / 1000f;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void publishSample(SampleSink sink, long timestampNanos) {
+        sink.onSample(cmd, timestampNanos, voltage, Unit.VOLTS);
     }
 
     /**
@@ -12,8 +12,6 @@
  */
 package br.ufrn.imd.obd.commands.control;
 
-import java.util.regex.Pattern;
-
 import br.ufrn.imd.obd.enums.AvailableCommand;
 
 /**
@@ -25,8 +23,6 @@ import br.ufrn.imd.obd.enums.AvailableCommand;
  */
 public class PendingTroubleCodesCommand extends GenericTroubleCodeCommand {
 
-    private static final Pattern CARRIAGE_NUMBER_PATTERN = Pattern.compile("^47|[\r\n]47|[\r\n]");
-
     /**
      * <p>Constructor for PendingTroubleCodesCommand.</p>
      */
@@ -43,9 +39,4 @@ public class PendingTroubleCodesCommand extends GenericTroubleCodeCommand {
         super(other);
     }
 
-    @Override
-    protected String removeCarriageNumber(String str) {
-        return CARRIAGE_NUMBER_PATTERN.matcher(str).replaceAll("");
-    }
-
 }
@@ -12,9 +12,6 @@
  */
 package br.ufrn.imd.obd.commands.control;
 
-
-import java.util.regex.Pattern;
-
 import br.ufrn.imd.obd.enums.AvailableCommand;
 
 /**
@@ -26,8 +23,6 @@ import br.ufrn.imd.obd.enums.AvailableCommand;
  */
 public class PermanentTroubleCodesCommand extends GenericTroubleCodeCommand {
 
-    private static final Pattern CARRIAGE_NUMBER_PATTERN = Pattern.compile("^4A|[\r\n]4A|[\r\n]");
-
     /**
      * <p>Constructor for PermanentTroubleCodesCommand.</p>
      */
@@ -44,9 +39,4 @@ public class PermanentTroubleCodesCommand extends GenericTroubleCodeCommand {
         super(other);
     }
 
-    @Override
-    protected String removeCarriageNumber(String str) {
-        return CARRIAGE_NUMBER_PATTERN.matcher(str).replaceAll("");
-    }
-
 }
@@ -14,7 +14,9 @@ package br.ufrn.imd.obd.commands.control;
 
 
 import br.ufrn.imd.obd.commands.ObdCommand;
+import br.ufrn.imd.obd.commands.SampleSink;
 import br.ufrn.imd.obd.enums.AvailableCommand;
+import br.ufrn.imd.obd.enums.Unit;
 
 /**
  * Time Traveled since codes cleared-up.
@@ -45,7 +47,15 @@ public class TimeSinceCCCommand extends ObdCommand {
     @Override
     protected void performCalculations() {
         // ignore first two bytes [01 4D] of the response
-        value = buffer.get(2) * 256 + buffer.get(3);
+        value = u16At(2);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void publishSample(SampleSink sink, long timestampNanos) {
+        sink.onSample(cmd, timestampNanos, value, Unit.MINUTES);
     }
 
     /**
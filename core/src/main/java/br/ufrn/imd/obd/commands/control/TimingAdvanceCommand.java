@@ -14,7 +14,9 @@ package br.ufrn.imd.obd.commands.control;
 
 
 import br.ufrn.imd.obd.commands.ObdCommand;
+import br.ufrn.imd.obd.commands.SampleSink;
 import br.ufrn.imd.obd.enums.AvailableCommand;
+import br.ufrn.imd.obd.enums.Unit;
 
 /**
  * Timing Advance
@@ -41,7 +43,15 @@ public class TimingAdvanceCommand extends ObdCommand {
 
     @Override
     protected void performCalculations() {
-        timingAdvance = buffer.get(2) / 2f - 64;
+        timingAdvance = byteAt(2) / 2f - 64;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void publishSample(SampleSink sink, long timestampNanos) {
+        sink.onSample(cmd, timestampNanos, timingAdvance, Unit.DEGREES);
     }
 
     @Override
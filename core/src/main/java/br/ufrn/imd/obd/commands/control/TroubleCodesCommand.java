@@ -12,8 +12,6 @@
  */
 package br.ufrn.imd.obd.commands.control;
 
-import java.util.regex.Pattern;
-
 import br.ufrn.imd.obd.enums.AvailableCommand;
 
 /**
@@ -24,8 +22,6 @@ import br.ufrn.imd.obd.enums.AvailableCommand;
  */
 public class TroubleCodesCommand extends GenericTroubleCodeCommand {
 
-    private static final Pattern CARRIAGE_NUMBER_PATTERN = Pattern.compile("^43|[\r\n]43|[\r\n]");
-
     /**
      * <p>
      * Constructor for TroubleCodesCommand.
@@ -44,9 +40,4 @@ public class TroubleCodesCommand extends GenericTroubleCodeCommand {
         super(other);
     }
 
-    @Override
-    protected String removeCarriageNumber(String str) {
-        return CARRIAGE_NUMBER_PATTERN.matcher(str).replaceAll("");
-    }
-
 }
@@ -0,0 +1,113 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package br.ufrn.imd.obd.commands.control;
+
+import br.ufrn.imd.obd.commands.PersistentCommand;
+import br.ufrn.imd.obd.enums.AvailableCommand;
+import br.ufrn.imd.obd.utils.FrameReassembler;
+
+/**
+ * Vehicle Identification Number (VIN).
+ */
+public class VinCommand extends PersistentCommand {
+    private static final int RESPONSE_MODE = 0x49;
+    private static final int VIN_PID = 0x02;
+    private static final int LEGACY_MESSAGE_LENGTH = 7;
+
+    private String vin = "";
+
+    /**
+     * Default constructor.
+     */
+    public VinCommand() {
+        super(AvailableCommand.VIN);
+    }
+
+    /**
+     * Copy constructor.
+     *
+     * @param other a {@link VinCommand} object.
+     */
+    public VinCommand(VinCommand other) {
+        super(other);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * On CAN (ISO 15765-4), the VIN comes in one multi-frame message: 49 02,
+     * the number of data items and the 17 characters. On the other protocols,
+     * it comes in five messages of seven bytes: 49 02, the message number and
+     * four characters, the first message padded with zeros.
+     */
+    @Override
+    protected void performCalculations() {
+        StringBuilder sb = new StringBuilder(17);
+        for (byte[] message : FrameReassembler.messages(getResult())) {
+            if (!isVinMessage(message, 0)) {
+                continue;
+            }
+
+            // the messages of the older protocols may have been joined
+            int step = message.length;
+            if (message.length % LEGACY_MESSAGE_LENGTH == 0) {
+                step = LEGACY_MESSAGE_LENGTH;
+                for (int at = 0; at < message.length; at += LEGACY_MESSAGE_LENGTH) {
+                    if (!isVinMessage(message, at)) {
+                        step = message.length;
+                        break;
+                    }
+                }
+            }
+
+            for (int at = 0; at < message.length; at += step) {
+                // skips the header, the count or message number and the padding
+                for (int i = at + 2; i < at + step; i++) {
+                    if ((message[i] & 0xFF) >= 0x20) {
+                        sb.append((char) (message[i] & 0xFF));
+                    }
+                }
+            }
+        }
+        vin = sb.toString();
+    }
+
+    private static boolean isVinMessage(byte[] message, int at) {
+        return message.length >= at + 2 && (message[at] & 0xFF) == RESPONSE_MODE && message[at + 1] == VIN_PID;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getFormattedResult() {
+        return getCalculatedResult();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getCalculatedResult() {
+        return vin;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void fillBuffer() {
+        // Empty method
+    }
+
+}
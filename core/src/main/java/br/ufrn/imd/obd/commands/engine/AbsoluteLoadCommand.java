@@ -43,9 +43,7 @@ public class AbsoluteLoadCommand extends PercentageObdCommand {
     @Override
     protected void performCalculations() {
         // ignore first two bytes [hh hh] of the response
-        int a = buffer.get(2);
-        int b = buffer.get(3);
-        percentage = (a * 256 + b) * 100f / 255;
+        percentage = u16At(2) * 100f / 255;
     }
 
     /**
@@ -16,7 +16,9 @@ package br.ufrn.imd.obd.commands.engine;
 import java.util.Locale;
 
 import br.ufrn.imd.obd.commands.ObdCommand;
+import br.ufrn.imd.obd.commands.SampleSink;
 import br.ufrn.imd.obd.enums.AvailableCommand;
+import br.ufrn.imd.obd.enums.Unit;
 
 /**
  * Mass Air Flow (MAF)
@@ -47,7 +49,15 @@ public class MassAirFlowCommand extends ObdCommand {
     @Override
     protected void performCalculations() {
         // ignore first two bytes [hh hh] of the response
-        maf = (buffer.get(2) * 256 + buffer.get(3)) / 100f;
+        maf = u16At(2) / 100f;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void publishSample(SampleSink sink, long timestampNanos) {
+        sink.onSample(cmd, timestampNanos, maf, Unit.GRAMS_PER_SECOND);
     }
 
     /**
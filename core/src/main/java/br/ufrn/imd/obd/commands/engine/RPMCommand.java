@@ -16,7 +16,9 @@ package br.ufrn.imd.obd.commands.engine;
 import java.util.Locale;
 
 import br.ufrn.imd.obd.commands.ObdCommand;
+import br.ufrn.imd.obd.commands.SampleSink;
 import br.ufrn.imd.obd.enums.AvailableCommand;
+import br.ufrn.imd.obd.enums.Unit;
 
 /**
  * Displays the current engine revolutions per minute (RPM).
@@ -47,7 +49,15 @@ public class RPMCommand extends ObdCommand {
     @Override
     protected void performCalculations() {
         // ignore first two bytes [41 0C] of the response((A*256)+B)/4
-        rpm = (buffer.get(2) * 256 + buffer.get(3)) / 4;
+        rpm = u16At(2) / 4;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void publishSample(SampleSink sink, long timestampNanos) {
+        sink.onSample(cmd, timestampNanos, rpm, Unit.RPM);
     }
 
     /**
@@ -16,7 +16,9 @@ package br.ufrn.imd.obd.commands.engine;
 import java.util.Locale;
 
 import br.ufrn.imd.obd.commands.ObdCommand;
+import br.ufrn.imd.obd.commands.SampleSink;
 import br.ufrn.imd.obd.enums.AvailableCommand;
+import br.ufrn.imd.obd.enums.Unit;
 
 /**
  * Engine runtime.
@@ -47,7 +49,15 @@ public class RuntimeCommand extends ObdCommand {
     @Override
     protected void performCalculations() {
         // ignore first two bytes [01 0C] of the response
-        value = buffer.get(2) * 256 + buffer.get(3);
+        value = u16At(2);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void publishSample(SampleSink sink, long timestampNanos) {
+        sink.onSample(cmd, timestampNanos, value, Unit.SECONDS);
     }
 
     /**
@@ -15,8 +15,10 @@ package br.ufrn.imd.obd.commands.engine;
 import java.util.Locale;
 
 import br.ufrn.imd.obd.commands.ObdCommand;
+import br.ufrn.imd.obd.commands.SampleSink;
 import br.ufrn.imd.obd.commands.SystemOfUnits;
 import br.ufrn.imd.obd.enums.AvailableCommand;
+import br.ufrn.imd.obd.enums.Unit;
 
 /**
  * Current speed.
@@ -47,7 +49,19 @@ public class SpeedCommand extends ObdCommand implements SystemOfUnits {
     @Override
     protected void performCalculations() {
         // Ignore first two bytes [hh hh] of the response.
-        metricSpeed = buffer.get(2);
+        metricSpeed = byteAt(2);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void publishSample(SampleSink sink, long timestampNanos) {
+        if (imperialUnits) {
+            sink.onSample(cmd, timestampNanos, getImperialUnit(), Unit.MILES_PER_HOUR);
+        } else {
+            sink.onSample(cmd, timestampNanos, metricSpeed, Unit.KILOMETERS_PER_HOUR);
+        }
     }
 
     /**
@@ -15,7 +15,9 @@ package br.ufrn.imd.obd.commands.fuel;
 import java.util.Locale;
 
 import br.ufrn.imd.obd.commands.ObdCommand;
+import br.ufrn.imd.obd.commands.SampleSink;
 import br.ufrn.imd.obd.enums.AvailableCommand;
+import br.ufrn.imd.obd.enums.Unit;
 
 /**
  * Fuel Consumption Rate per hour.
@@ -46,7 +48,15 @@ public class ConsumptionRateCommand extends ObdCommand {
     @Override
     protected void performCalculations() {
         // ignore first two bytes [hh hh] of the response
-        fuelRate = (buffer.get(2) * 256 + buffer.get(3)) * 0.05f;
+        fuelRate = u16At(2) * 0.05f;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void publishSample(SampleSink sink, long timestampNanos) {
+        sink.onSample(cmd, timestampNanos, fuelRate, Unit.LITERS_PER_HOUR);
     }
 
     /**
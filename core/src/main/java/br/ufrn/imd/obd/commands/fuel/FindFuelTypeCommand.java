@@ -13,8 +13,10 @@
 package br.ufrn.imd.obd.commands.fuel;
 
 import br.ufrn.imd.obd.commands.ObdCommand;
+import br.ufrn.imd.obd.commands.SampleSink;
 import br.ufrn.imd.obd.enums.AvailableCommand;
 import br.ufrn.imd.obd.enums.FuelType;
+import br.ufrn.imd.obd.enums.Unit;
 
 /**
  * This command is intended to determine the vehicle fuel type.
@@ -45,7 +47,15 @@ public class FindFuelTypeCommand extends ObdCommand {
     @Override
     protected void performCalculations() {
         // ignore first two bytes [hh hh] of the response
-        fuelType = buffer.get(2);
+        fuelType = byteAt(2);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void publishSample(SampleSink sink, long timestampNanos) {
+        sink.onSample(cmd, timestampNanos, fuelType, Unit.NONE);
     }
 
     /**
@@ -45,7 +45,7 @@ public class FuelTrimCommand extends PercentageObdCommand {
     @Override
     protected void performCalculations() {
         // ignore first two bytes [hh hh] of the response
-        percentage = (100f / 128) * buffer.get(2) - 100;
+        percentage = (100f / 128) * byteAt(2) - 100;
     }
 
     /**
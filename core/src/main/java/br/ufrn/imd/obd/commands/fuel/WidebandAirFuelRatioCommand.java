@@ -15,7 +15,9 @@ package br.ufrn.imd.obd.commands.fuel;
 import java.util.Locale;
 
 import br.ufrn.imd.obd.commands.ObdCommand;
+import br.ufrn.imd.obd.commands.SampleSink;
 import br.ufrn.imd.obd.enums.AvailableCommand;
+import br.ufrn.imd.obd.enums.Unit;
 
 /**
  * Wideband AFR
@@ -37,9 +39,15 @@ public class WidebandAirFuelRatioCommand extends ObdCommand {
     @Override
     protected void performCalculations() {
         // ignore first two bytes [01 44] of the response
-        float a = buffer.get(2);
-        float b = buffer.get(3);
-        wafr = (((a * 256) + b) / 32768) * 14.7f;//((A*256)+B)/32768
+        wafr = (u16At(2) / 32768f) * 14.7f;//((A*256)+B)/32768
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void publishSample(SampleSink sink, long timestampNanos) {
+        sink.onSample(cmd, timestampNanos, wafr, Unit.RATIO);
     }
 
     /**
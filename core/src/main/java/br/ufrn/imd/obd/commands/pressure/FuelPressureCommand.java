@@ -42,7 +42,7 @@ public class FuelPressureCommand extends PressureCommand {
      */
     @Override
     protected final int preparePressureValue() {
-        return buffer.get(2) * 3;
+        return byteAt(2) * 3;
     }
 
 }
@@ -42,9 +42,7 @@ public class FuelRailPressureCommand extends PressureCommand {
      */
     @Override
     protected final int preparePressureValue() {
-        int a = buffer.get(2);
-        int b = buffer.get(3);
-        return ((a * 256) + b) * 10;
+        return u16At(2) * 10;
     }
 
 }
@@ -16,8 +16,10 @@ package br.ufrn.imd.obd.commands.pressure;
 import java.util.Locale;
 
 import br.ufrn.imd.obd.commands.ObdCommand;
+import br.ufrn.imd.obd.commands.SampleSink;
 import br.ufrn.imd.obd.commands.SystemOfUnits;
 import br.ufrn.imd.obd.enums.AvailableCommand;
+import br.ufrn.imd.obd.enums.Unit;
 
 /**
  * Abstract pressure command.
@@ -54,7 +56,7 @@ public abstract class PressureCommand extends ObdCommand implements SystemOfUnit
      * @return a int.
      */
     protected int preparePressureValue() {
-        return buffer.get(2);
+        return byteAt(2);
     }
 
     /**
@@ -65,6 +67,18 @@ public abstract class PressureCommand extends ObdCommand implements SystemOfUnit
         pressure = preparePressureValue();
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void publishSample(SampleSink sink, long timestampNanos) {
+        if (imperialUnits) {
+            sink.onSample(cmd, timestampNanos, getImperialUnit(), Unit.PSI);
+        } else {
+            sink.onSample(cmd, timestampNanos, pressure, Unit.KILOPASCAL);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -0,0 +1,41 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package br.ufrn.imd.obd.commands.protocol;
+
+import br.ufrn.imd.obd.enums.AvailableCommand;
+
+/**
+ * Retrieve the available PIDs of any range, such as {@link AvailableCommand#PIDS_81_A0}
+ * or {@link AvailableCommand#VEHICLE_INFO_PIDS}.
+ */
+public class AvailablePidsCommand extends GenericAvailablePidsCommand {
+
+    /**
+     * Default constructor.
+     *
+     * @param command one of the "Available PIDs" commands.
+     */
+    public AvailablePidsCommand(AvailableCommand command) {
+        super(command, Integer.parseInt(command.getCommand().substring(3), 16));
+    }
+
+    /**
+     * Copy constructor.
+     *
+     * @param other a {@link AvailablePidsCommand} object.
+     */
+    public AvailablePidsCommand(AvailablePidsCommand other) {
+        super(other);
+    }
+
+}
@@ -13,8 +13,8 @@
 package br.ufrn.imd.obd.commands.protocol;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
 
 import br.ufrn.imd.obd.commands.ObdCommand;
 import br.ufrn.imd.obd.commands.PersistentCommand;
@@ -22,17 +22,23 @@ import br.ufrn.imd.obd.enums.AvailableCommand;
 import br.ufrn.imd.obd.enums.CommandsConstants;
 
 /**
- * Retrieve available PIDs ranging from 21 to 40.
+ * Retrieve which of the 32 PIDs after the requested one are supported.
+ * <p>
+ * Bit 31 of the answer is the first PID of the range and bit 0 the last one,
+ * which also tells whether the next range can be requested. When several ECUs
+ * answer, their answers are merged.
  */
 public abstract class GenericAvailablePidsCommand extends PersistentCommand {
 
     private List<Class<? extends ObdCommand>> supportedCommands = new ArrayList<>();
     private int padding = 0;
+    private int supportedMask = 0;
 
     /**
      * Default constructor.
      *
      * @param command a {@link String} object.
+     * @param pad     the PID of the request, which precedes the range.
      */
     public GenericAvailablePidsCommand(AvailableCommand command, int pad) {
         super(command);
@@ -55,8 +61,29 @@ public abstract class GenericAvailablePidsCommand extends PersistentCommand {
     @Override
     protected void performCalculations() {
         supportedCommands.clear();
-        String bits = getBinaryStringHex(getCalculatedResult());
-        fillAvailableCommands(bits, padding);
+        supportedMask = readMask();
+        if ("01".equals(getCommandMode())) {
+            fillAvailableCommands(supportedMask, padding);
+        }
+    }
+
+    /**
+     * Merges the bitmaps of every "41 pad xx xx xx xx" message in the buffer.
+     */
+    private int readMask() {
+        int reply = Integer.parseInt(getCommandMode(), 16) + 0x40;
+        int mask = 0;
+        int length = getBufferLength();
+        int i = 0;
+        while (i + 5 < length) {
+            if (byteAt(i) == reply && byteAt(i + 1) == padding) {
+                mask |= (int) u32At(i + 2);
+                i += 6;
+            } else {
+                i++;
+            }
+        }
+        return mask;
     }
 
     /**
@@ -76,39 +103,48 @@ public abstract class GenericAvailablePidsCommand extends PersistentCommand {
      */
     @Override
     public String getCalculatedResult() {
-        // First 4 characters are a copy of the command code, don't return those
-        return String.valueOf(rawData).substring(4);
+        return String.format(Locale.US, "%08X", supportedMask);
     }
 
-    private String getBinaryStringHex(String hexString) {
-        Long result = Long.parseLong(hexString, 16);
-        return Long.toBinaryString(result);
-    }
-
-    private void fillAvailableCommands(String bits, int pad) {
-        bits = fillBits(bits);
-
-        for (int i = 0; i < bits.length(); i++) {
+    private void fillAvailableCommands(int mask, int pad) {
+        // the last bit is the next range, not a command
+        for (int i = 0; i < 0x1F; i++) {
             int pid = i + pad + 1;
-            if (bits.charAt(i) == '1' && CommandsConstants.SUPPORTED_COMMANDS.containsKey(pid) && i != 0x1F) {
+            if ((mask & (0x80000000 >>> i)) != 0 && CommandsConstants.SUPPORTED_COMMANDS.containsKey(pid)) {
                 supportedCommands.add(CommandsConstants.SUPPORTED_COMMANDS.get(pid));
             }
         }
     }
 
-    private String fillBits(String str) {
-        int size = 32 - str.length();
-        if (size == 0) {
-            return str;
-        }
+    public final List<Class<? extends ObdCommand>> getSupportedCommands() {
+        return supportedCommands;
+    }
 
-        char[] repeat = new char[size];
-        Arrays.fill(repeat, '0');
-        return new String(repeat) + str;
+    /**
+     * <p>Getter for the field <code>supportedMask</code>.</p>
+     *
+     * @return the bitmap of the range, bit 31 being the PID after the request.
+     */
+    public final int getSupportedMask() {
+        return supportedMask;
     }
 
-    public final List<Class<? extends ObdCommand>> getSupportedCommands() {
-        return supportedCommands;
+    /**
+     * <p>Getter for the field <code>padding</code>.</p>
+     *
+     * @return the PID of the request, which precedes the range.
+     */
+    public final int getPadding() {
+        return padding;
+    }
+
+    /**
+     * Tells whether the request of the next range is supported.
+     *
+     * @return true if the last bit of the range is set.
+     */
+    public final boolean isNextRangeSupported() {
+        return (supportedMask & 1) != 0;
     }
 
 }
@@ -0,0 +1,48 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package br.ufrn.imd.obd.commands.protocol;
+
+import br.ufrn.imd.obd.enums.AvailableCommand;
+
+/**
+ * Turn-on headers, so each response line starts with the address of the ECU
+ * that sent it. Commands parse such responses with
+ * {@link br.ufrn.imd.obd.commands.ObdCommand#setHeadersOn(boolean)}.
+ */
+public class HeadersOnCommand extends ObdProtocolCommand {
+
+    /**
+     * <p>Constructor for HeadersOnCommand.</p>
+     */
+    public HeadersOnCommand() {
+        super(AvailableCommand.HEADERS_ON);
+    }
+
+    /**
+     * <p>Constructor for HeadersOnCommand.</p>
+     *
+     * @param other a {@link HeadersOnCommand} object.
+     */
+    public HeadersOnCommand(HeadersOnCommand other) {
+        super(other);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getFormattedResult() {
+        return getResult();
+    }
+
+}
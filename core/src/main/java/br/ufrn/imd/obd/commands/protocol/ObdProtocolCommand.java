@@ -14,6 +14,7 @@ package br.ufrn.imd.obd.commands.protocol;
 
 import br.ufrn.imd.obd.commands.ObdCommand;
 import br.ufrn.imd.obd.enums.AvailableCommand;
+import br.ufrn.imd.obd.enums.CommandDescriptor;
 
 /**
  * <p>Abstract ObdProtocolCommand class.</p>
@@ -29,13 +30,22 @@ public abstract class ObdProtocolCommand extends ObdCommand {
         super(command);
     }
 
+    /**
+     * Constructor for requests only known at runtime.
+     *
+     * @param descriptor the request to send
+     */
+    public ObdProtocolCommand(CommandDescriptor descriptor) {
+        super(descriptor);
+    }
+
     /**
      * Copy constructor.
      *
      * @param other the ObdCommand to copy.
      */
     public ObdProtocolCommand(ObdProtocolCommand other) {
-        this(other.cmd);
+        super(other);
     }
 
     /**
@@ -53,6 +63,16 @@ public abstract class ObdProtocolCommand extends ObdCommand {
         // settings commands don't return a value appropriate to place into the buffer, so do nothing
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Ignored, as the answers to settings come from the adapter itself.
+     */
+    @Override
+    public void setHeadersOn(boolean headersOn) {
+        // settings responses have no headers
+    }
+
     /**
      * {@inheritDoc}
      */
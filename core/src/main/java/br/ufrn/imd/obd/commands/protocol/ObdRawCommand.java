@@ -12,7 +12,7 @@
  */
 package br.ufrn.imd.obd.commands.protocol;
 
-import br.ufrn.imd.obd.enums.AvailableCommand;
+import br.ufrn.imd.obd.enums.CommandDescriptor;
 
 /**
  * This class allows for an unspecified command to be sent.
@@ -25,7 +25,16 @@ public class ObdRawCommand extends ObdProtocolCommand {
      * @param command a {@link java.lang.String} object.
      */
     public ObdRawCommand(String command) {
-        super(AvailableCommand.CustomCommand.rawCommand(command));
+        super(CommandDescriptor.raw(command));
+    }
+
+    /**
+     * <p>Constructor for ObdRawCommand.</p>
+     *
+     * @param other a {@link ObdRawCommand} object.
+     */
+    public ObdRawCommand(ObdRawCommand other) {
+        super(other);
     }
 
     /**
@@ -41,7 +50,7 @@ public class ObdRawCommand extends ObdProtocolCommand {
      */
     @Override
     public String getName() {
-        return getName() + getCommandPID();
+        return super.getName() + " " + getCommand();
     }
 
 }
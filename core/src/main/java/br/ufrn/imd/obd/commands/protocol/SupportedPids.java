@@ -0,0 +1,364 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package br.ufrn.imd.obd.commands.protocol;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import br.ufrn.imd.obd.cache.CachedResponse;
+import br.ufrn.imd.obd.cache.ResponseCache;
+import br.ufrn.imd.obd.commands.ObdCommand;
+import br.ufrn.imd.obd.commands.PersistentCommand;
+import br.ufrn.imd.obd.connection.ObdConnection;
+import br.ufrn.imd.obd.enums.AvailableCommand;
+import br.ufrn.imd.obd.enums.ResponseStatus;
+
+/**
+ * The Mode 01 and Mode 09 PIDs supported by a vehicle, kept as one bitmap of
+ * four 64-bit words per mode and ECU, so any lookup costs a shift and a mask.
+ * <p>
+ * {@link #discover(ObdConnection)} requests PID 00, then each following range
+ * (20, 40... E0) while the last bit of the previous one says it's supported,
+ * then PID 00 of Mode 09. Requests to unsupported PIDs can then be skipped
+ * instead of waiting for a "NO DATA" answer.
+ * <p>
+ * Discovery runs with headers on, so the answer of each ECU fills its own
+ * bitmap, keyed by its address (such as "7E8"), and turns them off again
+ * afterwards. Answers whose ECU isn't known, such as the ones of adapters
+ * that refuse "AT H1", are kept under {@link #ANY_ECU}.
+ * <p>
+ * The bitmaps are stored in the {@link ResponseCache} of the vehicle, so a
+ * vehicle already discovered is answered from it without any request. This
+ * class is thread-safe.
+ */
+public final class SupportedPids {
+
+    /**
+     * Key of the answers whose ECU isn't known.
+     */
+    public static final String ANY_ECU = "";
+
+    /**
+     * Key of the bitmaps in the {@link ResponseCache} of the vehicle.
+     */
+    static final String CACHE_KEY = "SupportedPids";
+
+    private static final AvailableCommand[] RANGES = {
+            AvailableCommand.PIDS_01_20,
+            AvailableCommand.PIDS_21_40,
+            AvailableCommand.PIDS_41_60,
+            AvailableCommand.PIDS_61_80,
+            AvailableCommand.PIDS_81_A0,
+            AvailableCommand.PIDS_A1_C0,
+            AvailableCommand.PIDS_C1_E0,
+            AvailableCommand.PIDS_E1_FF
+    };
+    private static final int WORDS_PER_MODE = 4;
+    private static final int WORDS = 2 * WORDS_PER_MODE;
+
+    private final Map<String, long[]> ecus = new LinkedHashMap<>();
+    private final long[] merged = new long[WORDS];
+
+    /**
+     * Creates an empty set, where nothing is supported.
+     */
+    public SupportedPids() {
+    }
+
+    /**
+     * Copy constructor.
+     *
+     * @param other a {@link SupportedPids} object.
+     */
+    public SupportedPids(SupportedPids other) {
+        synchronized (other) {
+            for (Map.Entry<String, long[]> entry : other.ecus.entrySet()) {
+                ecus.put(entry.getKey(), entry.getValue().clone());
+            }
+            System.arraycopy(other.merged, 0, merged, 0, WORDS);
+        }
+    }
+
+    /**
+     * Discovers the supported PIDs by running the requests on streams.
+     *
+     * @param in  a {@link java.io.InputStream} object.
+     * @param out a {@link java.io.OutputStream} object.
+     * @return the supported PIDs.
+     * @throws java.io.IOException            if any.
+     * @throws java.lang.InterruptedException if any.
+     */
+    public static SupportedPids discover(final InputStream in, final OutputStream out)
+            throws IOException, InterruptedException {
+        return discover(new Runner() {
+            @Override
+            ResponseStatus run(ObdCommand command) throws IOException, InterruptedException {
+                return command.tryRun(in, out);
+            }
+
+            @Override
+            ResponseCache getCache() {
+                return PersistentCommand.getStreamCache(in);
+            }
+        });
+    }
+
+    /**
+     * Discovers the supported PIDs by running the requests on a connection.
+     *
+     * @param connection the {@link ObdConnection} to the vehicle.
+     * @return the supported PIDs.
+     * @throws java.io.IOException            if any.
+     * @throws java.lang.InterruptedException if any.
+     */
+    public static SupportedPids discover(final ObdConnection connection) throws IOException, InterruptedException {
+        return discover(new Runner() {
+            @Override
+            ResponseStatus run(ObdCommand command) throws IOException, InterruptedException {
+                return command.tryRun(connection);
+            }
+
+            @Override
+            ResponseCache getCache() {
+                return connection.getCache();
+            }
+        });
+    }
+
+    private static SupportedPids discover(Runner runner) throws IOException, InterruptedException {
+        ResponseCache cache = runner.getCache();
+        CachedResponse cached = cache.get(CACHE_KEY);
+        if (cached != null) {
+            SupportedPids known = parse(cached.getRawData());
+            if (known != null) {
+                return known;
+            }
+        }
+
+        SupportedPids pids = new SupportedPids();
+        boolean headersOn = !runner.run(new HeadersOnCommand()).isError();
+        try {
+            for (AvailableCommand range : RANGES) {
+                AvailablePidsCommand command = new AvailablePidsCommand(range);
+                command.setHeadersOn(headersOn);
+                if (runner.run(command).isError() || !pids.setRanges(0x01, command)) {
+                    break;
+                }
+            }
+
+            AvailablePidsCommand info = new AvailablePidsCommand(AvailableCommand.VEHICLE_INFO_PIDS);
+            info.setHeadersOn(headersOn);
+            if (!runner.run(info).isError()) {
+                pids.setRanges(0x09, info);
+            }
+        } finally {
+            if (headersOn) {
+                runner.run(new HeadersOffCommand());
+            }
+        }
+        if (!pids.getEcus().isEmpty()) {
+            cache.put(CACHE_KEY, new CachedResponse(pids.format(), new int[0], System.currentTimeMillis()));
+        }
+        return pids;
+    }
+
+    /**
+     * Writes the bitmaps as "ECU=words" items separated by ';', each word
+     * being 16 hexadecimal digits.
+     */
+    synchronized String format() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, long[]> entry : ecus.entrySet()) {
+            if (sb.length() > 0) {
+                sb.append(';');
+            }
+            sb.append(entry.getKey()).append('=');
+            for (long word : entry.getValue()) {
+                String hex = Long.toHexString(word).toUpperCase();
+                for (int i = hex.length(); i < 16; i++) {
+                    sb.append('0');
+                }
+                sb.append(hex);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Reads the bitmaps written by {@link #format()}.
+     *
+     * @return the supported PIDs, or null if the text is malformed.
+     */
+    static SupportedPids parse(String text) {
+        SupportedPids pids = new SupportedPids();
+        for (String item : text.split(";")) {
+            int separator = item.indexOf('=');
+            if (separator < 0 || item.length() - separator - 1 != WORDS * 16) {
+                return null;
+            }
+            long[] words = new long[WORDS];
+            for (int i = 0; i < WORDS; i++) {
+                int from = separator + 1 + 16 * i;
+                try {
+                    // two halves, as parseLong rejects words with the top bit set
+                    long high = Long.parseLong(item.substring(from, from + 8), 16);
+                    long low = Long.parseLong(item.substring(from + 8, from + 16), 16);
+                    words[i] = high << 32 | low;
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+                pids.merged[i] |= words[i];
+            }
+            pids.ecus.put(item.substring(0, separator), words);
+        }
+        return pids;
+    }
+
+    /**
+     * Records the answer of each ECU to an "Available PIDs" request.
+     *
+     * @return true if any ECU supports the next range.
+     */
+    private boolean setRanges(int mode, AvailablePidsCommand command) {
+        Map<String, String> answers = command.getEcuResults();
+        if (answers.isEmpty()) {
+            setRange(ANY_ECU, mode, command.getPadding(), command.getSupportedMask());
+            return command.isNextRangeSupported();
+        }
+
+        boolean next = false;
+        for (Map.Entry<String, String> answer : answers.entrySet()) {
+            int mask = (int) Long.parseLong(answer.getValue(), 16);
+            setRange(answer.getKey(), mode, command.getPadding(), mask);
+            next |= (mask & 1) != 0;
+        }
+        return next;
+    }
+
+    /**
+     * Records the answer to an "Available PIDs" request: the requested PID and
+     * each PID whose bit is set.
+     *
+     * @param ecu  the address of the ECU that answered, or {@link #ANY_ECU}.
+     * @param mode 0x01 or 0x09.
+     * @param pid  the requested PID, a multiple of 0x20.
+     * @param mask the answer, bit 31 being the PID after the request.
+     */
+    public synchronized void setRange(String ecu, int mode, int pid, int mask) {
+        int slot = slot(mode);
+        if (slot < 0 || pid < 0 || pid > 0xFF || pid % 0x20 != 0) {
+            throw new IllegalArgumentException("Invalid range: mode " + mode + ", PID " + pid);
+        }
+
+        long[] words = ecus.get(ecu);
+        if (words == null) {
+            words = new long[WORDS];
+            ecus.put(ecu, words);
+        }
+        set(words, slot, pid);
+        set(merged, slot, pid);
+        for (int i = 0; i < 32; i++) {
+            if ((mask & (0x80000000 >>> i)) != 0 && pid + i + 1 <= 0xFF) {
+                set(words, slot, pid + i + 1);
+                set(merged, slot, pid + i + 1);
+            }
+        }
+    }
+
+    /**
+     * Tells whether any ECU supports a PID.
+     *
+     * @param mode the mode, such as 0x01.
+     * @param pid  the PID, such as 0x0C.
+     * @return false if no ECU supports it or the mode isn't discovered.
+     */
+    public synchronized boolean isSupported(int mode, int pid) {
+        return isSet(merged, slot(mode), pid);
+    }
+
+    /**
+     * Tells whether an ECU supports a PID.
+     *
+     * @param ecu  the address of the ECU, or {@link #ANY_ECU}.
+     * @param mode the mode, such as 0x01.
+     * @param pid  the PID, such as 0x0C.
+     * @return false if the ECU doesn't support it or the mode isn't discovered.
+     */
+    public synchronized boolean isSupported(String ecu, int mode, int pid) {
+        long[] words = ecus.get(ecu);
+        return words != null && isSet(words, slot(mode), pid);
+    }
+
+    /**
+     * Tells whether the request of a command may be answered. Requests other
+     * than Mode 01 and Mode 09 PIDs, such as AT commands, are always allowed.
+     *
+     * @param command the command.
+     * @return false if its PID is known to be unsupported.
+     */
+    public boolean isSupported(ObdCommand command) {
+        String request = command.getCommand();
+        int mode = request.length() >= 2 ? hex(request, 0) : -1;
+        if (slot(mode) < 0) {
+            return true;
+        }
+        int pid = request.length() >= 5 && request.charAt(2) == ' ' ? hex(request, 3) : -1;
+        return pid < 0 || isSupported(mode, pid);
+    }
+
+    /**
+     * <p>getEcus.</p>
+     *
+     * @return the ECUs that answered, in the order they answered.
+     */
+    public synchronized List<String> getEcus() {
+        return new ArrayList<>(ecus.keySet());
+    }
+
+    private static int slot(int mode) {
+        switch (mode) {
+            case 0x01:
+                return 0;
+            case 0x09:
+                return 1;
+            default:
+                return -1;
+        }
+    }
+
+    private static void set(long[] words, int slot, int pid) {
+        words[slot * WORDS_PER_MODE + (pid >>> 6)] |= 1L << (pid & 63);
+    }
+
+    private static boolean isSet(long[] words, int slot, int pid) {
+        return slot >= 0 && pid >= 0 && pid <= 0xFF
+                && (words[slot * WORDS_PER_MODE + (pid >>> 6)] & 1L << (pid & 63)) != 0;
+    }
+
+    private static int hex(String s, int from) {
+        int high = Character.digit(s.charAt(from), 16);
+        int low = Character.digit(s.charAt(from + 1), 16);
+        return high < 0 || low < 0 ? -1 : high << 4 | low;
+    }
+
+    private abstract static class Runner {
+        abstract ResponseStatus run(ObdCommand command) throws IOException, InterruptedException;
+
+        abstract ResponseCache getCache();
+    }
+}
@@ -12,7 +12,7 @@
  */
 package br.ufrn.imd.obd.commands.protocol;
 
-import br.ufrn.imd.obd.enums.AvailableCommand;
+import br.ufrn.imd.obd.enums.CommandDescriptor;
 
 /**
  * This will set the value of time in milliseconds (ms) that the OBD interface
@@ -27,7 +27,7 @@ public class TimeoutCommand extends ObdProtocolCommand {
      *                desired timeout in milliseconds (ms).
      */
     public TimeoutCommand(int timeout) {
-        super(AvailableCommand.CustomCommand.getTimeout(timeout));
+        super(CommandDescriptor.timeout(timeout));
     }
 
     /**
@@ -16,8 +16,10 @@ package br.ufrn.imd.obd.commands.temperature;
 import java.util.Locale;
 
 import br.ufrn.imd.obd.commands.ObdCommand;
+import br.ufrn.imd.obd.commands.SampleSink;
 import br.ufrn.imd.obd.commands.SystemOfUnits;
 import br.ufrn.imd.obd.enums.AvailableCommand;
+import br.ufrn.imd.obd.enums.Unit;
 
 /**
  * Abstract temperature command.
@@ -50,7 +52,19 @@ public abstract class TemperatureCommand extends ObdCommand implements SystemOfU
     @Override
     protected void performCalculations() {
         // ignore first two bytes [hh hh] of the response
-        temperature = buffer.get(2) - 40f;
+        temperature = byteAt(2) - 40f;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void publishSample(SampleSink sink, long timestampNanos) {
+        if (imperialUnits) {
+            sink.onSample(cmd, timestampNanos, getImperialUnit(), Unit.FAHRENHEIT);
+        } else {
+            sink.onSample(cmd, timestampNanos, temperature, Unit.CELSIUS);
+        }
     }
 
 
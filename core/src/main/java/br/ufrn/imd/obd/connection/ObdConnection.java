@@ -0,0 +1,152 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package br.ufrn.imd.obd.connection;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import br.ufrn.imd.obd.cache.MemoryResponseCache;
+import br.ufrn.imd.obd.cache.ResponseCache;
+import br.ufrn.imd.obd.metrics.LatencyMetrics;
+
+/**
+ * A session with one ELM327 adapter.
+ * <p>
+ * The connection owns the adapter streams, and commands run on it are
+ * serialized on its own lock, so commands sent to different adapters never wait
+ * for each other.
+ */
+public class ObdConnection implements Closeable {
+
+    private final InputStream rawIn;
+    private final ResponseReader in;
+    private final RequestWriter out;
+    private final LatencyMetrics metrics = new LatencyMetrics();
+    private volatile ResponseCache cache = new MemoryResponseCache();
+
+    /**
+     * Default constructor.
+     *
+     * @param in  the adapter {@link java.io.InputStream} (i.e.: from a BluetoothSocket).
+     * @param out the adapter {@link java.io.OutputStream}.
+     */
+    public ObdConnection(InputStream in, OutputStream out) {
+        if (in == null || out == null) {
+            throw new IllegalArgumentException("Streams must not be null");
+        }
+        this.rawIn = in;
+        // the same reader as the commands run directly on the stream, so no
+        // bytes read ahead by one are lost to the other
+        this.in = ResponseReader.wrap(in);
+        this.out = out instanceof RequestWriter ? (RequestWriter) out : new RequestWriter(out);
+    }
+
+    /**
+     * Returns the buffered stream the responses are read from. It is the
+     * reader {@link ResponseReader#wrap(InputStream)} returns for the adapter
+     * stream, so commands may also read through that stream, as long as they
+     * do it under {@link #getLock()}.
+     *
+     * @return the {@link ResponseReader} of this connection.
+     */
+    public ResponseReader getInputStream() {
+        return in;
+    }
+
+    /**
+     * <p>Getter for the field <code>out</code>.</p>
+     *
+     * @return the {@link RequestWriter} the requests are written to.
+     */
+    public RequestWriter getOutputStream() {
+        return out;
+    }
+
+    /**
+     * Returns the object that serializes the requests of this connection.
+     * <p>
+     * It is the monitor of the adapter input stream, the same one locked by
+     * {@link br.ufrn.imd.obd.commands.ObdCommand#run(InputStream, OutputStream)},
+     * so commands run through this connection and commands run directly on its
+     * streams never interleave, and they read through the same
+     * {@link ResponseReader}.
+     *
+     * @return the lock object.
+     */
+    public Object getLock() {
+        return rawIn;
+    }
+
+    /**
+     * Returns the time between the flush of the last request and the first
+     * byte of its response, which is the ECU response time as seen by the
+     * adapter (it doesn't include the adapter timeout after the last response).
+     *
+     * @return the latency in nanoseconds, or -1 if unknown.
+     */
+    public long getLastResponseLatencyNanos() {
+        long sent = out.getLastFlushNanos();
+        long received = in.getFirstByteNanos();
+        return sent != 0 && received - sent >= 0 ? received - sent : -1;
+    }
+
+    /**
+     * Returns the per-phase latencies of the commands run through this
+     * connection, as a whole and for each request.
+     *
+     * @return the {@link LatencyMetrics} of this connection.
+     */
+    public LatencyMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns the cache answering the {@link br.ufrn.imd.obd.commands.PersistentCommand}s
+     * run through this connection. Unless replaced, it is an empty
+     * {@link MemoryResponseCache} of its own.
+     *
+     * @return the {@link ResponseCache} of the vehicle.
+     */
+    public ResponseCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Replaces the cache of this connection, e.g. with the
+     * {@link br.ufrn.imd.obd.cache.FileResponseCache} of a known vehicle.
+     *
+     * @param cache the {@link ResponseCache} of the vehicle.
+     */
+    public void setCache(ResponseCache cache) {
+        if (cache == null) {
+            throw new IllegalArgumentException("Cache must not be null");
+        }
+        this.cache = cache;
+    }
+
+    /**
+     * Closes both streams.
+     *
+     * @throws java.io.IOException if any.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            in.close();
+        } finally {
+            out.close();
+        }
+    }
+}
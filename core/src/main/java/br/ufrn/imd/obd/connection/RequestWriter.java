@@ -0,0 +1,55 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package br.ufrn.imd.obd.connection;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Output stream of an {@link ObdConnection}, which records when the last
+ * request was flushed to the adapter.
+ */
+public class RequestWriter extends FilterOutputStream {
+
+    private volatile long lastFlushNanos = 0;
+
+    /**
+     * Default constructor.
+     *
+     * @param out the adapter {@link java.io.OutputStream}.
+     */
+    public RequestWriter(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+        lastFlushNanos = System.nanoTime();
+    }
+
+    /**
+     * <p>Getter for the field <code>lastFlushNanos</code>.</p>
+     *
+     * @return the {@link System#nanoTime()} of the last flush, or 0 if none.
+     */
+    public long getLastFlushNanos() {
+        return lastFlushNanos;
+    }
+}
@@ -0,0 +1,311 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package br.ufrn.imd.obd.connection;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Buffered reader of ELM327 responses.
+ * <p>
+ * The adapter stream is read in chunks into a reusable byte array, which is
+ * then scanned for the '&gt;' prompt. Bytes received after the prompt are kept
+ * for the next response, and the characters of each response are collected in
+ * a reusable buffer, so reading a response allocates nothing.
+ * <p>
+ * Read-ahead is only safe when the same reader is used for all responses of
+ * the stream, as {@link ObdConnection} does. For a plain stream,
+ * {@link #wrap(InputStream)} therefore always returns the same reader, kept
+ * as long as the stream is in use, so bytes read after a prompt are never
+ * lost between commands.
+ * <p>
+ * This class is not thread-safe; it is meant to be used under the lock of its
+ * {@link ObdConnection}.
+ */
+public class ResponseReader extends FilterInputStream {
+
+    /**
+     * Character the ELM327 sends when it is ready for a new request.
+     */
+    public static final char PROMPT = '>';
+
+    private static final int DEFAULT_BUFFER_SIZE = 512;
+    private static final int STRIPES = 16;
+
+    /**
+     * The readers of the plain streams passed to {@link #wrap(InputStream)},
+     * spread by stream over stripes with their own lock, so looking up the
+     * reader of one adapter seldom waits for another. The readers hold their
+     * stream weakly, so the entries go away with the streams.
+     */
+    private static final Stripe[] SHARED = new Stripe[STRIPES];
+
+    static {
+        for (int i = 0; i < STRIPES; i++) {
+            SHARED[i] = new Stripe();
+        }
+    }
+
+    private final byte[] buf;
+    private final StringBuilder response = new StringBuilder(DEFAULT_BUFFER_SIZE);
+    private int pos = 0;
+    private int limit = 0;
+    private volatile long firstByteNanos = 0;
+    private volatile long promptNanos = 0;
+    private long presetFirstByteNanos = 0;
+    private long presetPromptNanos = 0;
+
+    /**
+     * Default constructor.
+     *
+     * @param in the adapter {@link java.io.InputStream}.
+     */
+    public ResponseReader(InputStream in) {
+        this(in, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * <p>Constructor for ResponseReader.</p>
+     *
+     * @param in   the adapter {@link java.io.InputStream}.
+     * @param size the size of the read buffer.
+     */
+    public ResponseReader(InputStream in, int size) {
+        super(in);
+        if (size <= 0) {
+            throw new IllegalArgumentException("Buffer size must be positive");
+        }
+        this.buf = new byte[size];
+    }
+
+    /**
+     * Returns the given stream if it is already a {@link ResponseReader}, or
+     * the reader shared by all the callers of this method with that stream
+     * otherwise. The shared reader must only be used under the lock of the
+     * stream, as {@link br.ufrn.imd.obd.commands.ObdCommand} does, which
+     * also keeps it between runs on the same stream.
+     *
+     * @param in a {@link java.io.InputStream} object.
+     * @return a {@link ResponseReader} reading from the stream.
+     */
+    public static ResponseReader wrap(InputStream in) {
+        if (in instanceof ResponseReader) {
+            return (ResponseReader) in;
+        }
+        int hash = System.identityHashCode(in);
+        Stripe stripe = SHARED[(hash ^ hash >>> 16) & (STRIPES - 1)];
+        synchronized (stripe) {
+            ResponseReader reader = stripe.readers.get(in);
+            if (reader == null) {
+                reader = new ResponseReader(new WeakSource(in));
+                stripe.readers.put(in, reader);
+            }
+            return reader;
+        }
+    }
+
+    /**
+     * Reads a response up to the '&gt;' prompt, or up to the end of the stream.
+     * <p>
+     * The returned sequence doesn't include the prompt and is only valid until
+     * the next call, as its buffer is reused.
+     *
+     * @return the response characters.
+     * @throws java.io.IOException if any.
+     */
+    public CharSequence readResponse() throws IOException {
+        response.setLength(0);
+        try {
+            if (pos == limit && fill() < 0) {
+                firstByteNanos = 0;
+                return response;
+            }
+            firstByteNanos = System.nanoTime();
+
+            while (true) {
+                if (pos == limit && fill() < 0) {
+                    return response;
+                }
+
+                while (pos < limit) {
+                    char c = (char) (buf[pos++] & 0xFF);
+                    if (c == PROMPT) {
+                        return response;
+                    }
+                    response.append(c);
+                }
+            }
+        } finally {
+            promptNanos = System.nanoTime();
+            if (presetPromptNanos != 0) {
+                firstByteNanos = presetFirstByteNanos;
+                promptNanos = presetPromptNanos;
+                presetFirstByteNanos = 0;
+                presetPromptNanos = 0;
+            }
+        }
+    }
+
+    /**
+     * Makes the next {@link #readResponse()} report the given arrival times
+     * instead of its own, for transports that receive a whole response before
+     * handing it to the reader.
+     *
+     * @param firstByteNanos the {@link System#nanoTime()} of the first response byte.
+     * @param promptNanos    the {@link System#nanoTime()} of the prompt.
+     */
+    public void presetArrivalTimes(long firstByteNanos, long promptNanos) {
+        this.presetFirstByteNanos = firstByteNanos;
+        this.presetPromptNanos = promptNanos;
+    }
+
+    /**
+     * <p>Getter for the field <code>firstByteNanos</code>.</p>
+     *
+     * @return the {@link System#nanoTime()} when the first byte of the last
+     * response was available, or 0 if none.
+     */
+    public long getFirstByteNanos() {
+        return firstByteNanos;
+    }
+
+    /**
+     * <p>Getter for the field <code>promptNanos</code>.</p>
+     *
+     * @return the {@link System#nanoTime()} when the last response was
+     * complete, or 0 if none.
+     */
+    public long getPromptNanos() {
+        return promptNanos;
+    }
+
+    private int fill() throws IOException {
+        pos = 0;
+        limit = 0;
+        int n = in.read(buf, 0, buf.length);
+        if (n > 0) {
+            limit = n;
+        }
+        return n;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (pos == limit && fill() <= 0) {
+            return -1;
+        }
+        return buf[pos++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (pos == limit) {
+            return in.read(b, off, len);
+        }
+
+        int n = Math.min(len, limit - pos);
+        System.arraycopy(buf, pos, b, off, n);
+        pos += n;
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if (n <= 0) {
+            return 0;
+        }
+        if (pos == limit) {
+            return in.skip(n);
+        }
+
+        int skipped = (int) Math.min(n, limit - pos);
+        pos += skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (limit - pos) + in.available();
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+        // mark is not supported
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+
+    private static final class Stripe {
+        private final Map<InputStream, ResponseReader> readers = new WeakHashMap<>();
+    }
+
+    /**
+     * Reads from a stream without keeping it reachable, so a shared reader
+     * doesn't keep its key in {@link #SHARED}.
+     */
+    private static final class WeakSource extends InputStream {
+        private final WeakReference<InputStream> stream;
+
+        WeakSource(InputStream stream) {
+            this.stream = new WeakReference<>(stream);
+        }
+
+        private InputStream stream() throws IOException {
+            InputStream in = stream.get();
+            if (in == null) {
+                throw new IOException("Stream closed");
+            }
+            return in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return stream().read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return stream().read(b, off, len);
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            return stream().skip(n);
+        }
+
+        @Override
+        public int available() throws IOException {
+            return stream().available();
+        }
+
+        @Override
+        public void close() throws IOException {
+            stream().close();
+        }
+    }
+}
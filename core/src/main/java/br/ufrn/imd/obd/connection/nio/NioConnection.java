@@ -0,0 +1,490 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package br.ufrn.imd.obd.connection.nio;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import br.ufrn.imd.obd.cache.MemoryResponseCache;
+import br.ufrn.imd.obd.cache.ResponseCache;
+import br.ufrn.imd.obd.commands.ObdCommand;
+import br.ufrn.imd.obd.commands.PersistentCommand;
+import br.ufrn.imd.obd.connection.ResponseReader;
+import br.ufrn.imd.obd.enums.ResponseStatus;
+import br.ufrn.imd.obd.metrics.LatencyMetrics;
+
+/**
+ * A Wi-Fi ELM327 adapter served by a {@link NioTransport}.
+ * <p>
+ * Submitted commands are queued and sent one at a time, as the adapter only
+ * accepts a new request after its '&gt;' prompt. Requests are written and
+ * responses collected by the selector thread; the command code itself runs on
+ * the parser executor, so a command is never touched by two threads at once.
+ * <p>
+ * After a timeout, the next request waits for the prompt of the timed out
+ * one, discarding its late answer; if no prompt comes within
+ * {@link #DEFAULT_TIMEOUT_MS} (or the timeout, if longer), the connection is
+ * closed.
+ */
+public class NioConnection implements Closeable {
+
+    /**
+     * Default time to wait for the '&gt;' prompt after a request is sent.
+     */
+    public static final long DEFAULT_TIMEOUT_MS = 5000;
+
+    private static final int IDLE = 0;
+    private static final int PREPARING = 1;
+    private static final int WAITING = 2;
+    private static final int PARSING = 3;
+    private static final int DRAINING = 4;
+
+    private final NioTransport.SelectorLoop loop;
+    private final SocketChannel channel;
+    private final Executor parsers;
+    private final Queue<PendingCommand> queue = new ConcurrentLinkedQueue<>();
+
+    // selector thread state
+    private SelectionKey key = null;
+    private boolean connected = false;
+    private boolean closed = false;
+    private int state = IDLE;
+    private PendingCommand current = null;
+    private ByteBuffer pendingWrite = null;
+    private long deadline = 0;
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(512);
+
+    // handed from the selector thread to the parser with the state changes
+    private final RequestBuffer request = new RequestBuffer();
+    private byte[] response = new byte[512];
+    private int responseLength = 0;
+    private final ResponseBytes responseBytes = new ResponseBytes();
+    private final ResponseReader reader = new ResponseReader(responseBytes);
+
+    private volatile long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_TIMEOUT_MS);
+    private volatile long lastResponseLatencyNanos = -1;
+    private long firstByteNanos = 0;
+    private long promptNanos = 0;
+    private final LatencyMetrics metrics = new LatencyMetrics();
+    private volatile ResponseCache cache = new MemoryResponseCache();
+
+    NioConnection(NioTransport.SelectorLoop loop, SocketChannel channel, Executor parsers) {
+        this.loop = loop;
+        this.channel = channel;
+        this.parsers = parsers;
+    }
+
+    /**
+     * Queues a command to be run on this adapter.
+     *
+     * @param command the command to run.
+     * @return the {@link PendingCommand} completed when the response is parsed.
+     */
+    public PendingCommand submit(ObdCommand command) {
+        return submit(command, null);
+    }
+
+    /**
+     * Queues a command to be run on this adapter.
+     *
+     * @param command  the command to run.
+     * @param listener notified on a parser thread when the command is done (can be null).
+     * @return the {@link PendingCommand} completed when the response is parsed,
+     * or already failed if the transport is closed.
+     */
+    public PendingCommand submit(ObdCommand command, Listener listener) {
+        PendingCommand pending = new PendingCommand(command, listener);
+        queue.add(pending);
+        if (!loop.execute(startNext)) {
+            queue.remove(pending);
+            pending.fail(new IOException("Transport closed"));
+        }
+        return pending;
+    }
+
+    /**
+     * Sets how long to wait for a response before failing its command with a
+     * {@link java.net.SocketTimeoutException}.
+     *
+     * @param timeout the timeout.
+     * @param unit    the unit of the timeout.
+     */
+    public void setTimeout(long timeout, TimeUnit unit) {
+        this.timeoutNanos = unit.toNanos(timeout);
+    }
+
+    /**
+     * Returns the time the adapter took to answer the last request.
+     *
+     * @return the time between the request being sent and the first response
+     * byte, in nanoseconds, or -1 if unknown.
+     */
+    public long getLastResponseLatencyNanos() {
+        return lastResponseLatencyNanos;
+    }
+
+    /**
+     * Returns the per-phase latencies of the commands run through this
+     * connection. The write phase only covers writing the request to a
+     * buffer; handing it to the socket counts as waiting.
+     *
+     * @return the {@link LatencyMetrics} of this connection.
+     */
+    public LatencyMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns the cache answering the {@link PersistentCommand}s submitted to
+     * this connection, without a request to the adapter.
+     *
+     * @return the {@link ResponseCache} of the vehicle.
+     */
+    public ResponseCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Replaces the cache of this connection, e.g. with the
+     * {@link br.ufrn.imd.obd.cache.FileResponseCache} of a known vehicle.
+     *
+     * @param cache the {@link ResponseCache} of the vehicle.
+     */
+    public void setCache(ResponseCache cache) {
+        if (cache == null) {
+            throw new IllegalArgumentException("Cache must not be null");
+        }
+        this.cache = cache;
+    }
+
+    /**
+     * <p>Getter for the field <code>queue</code> size.</p>
+     *
+     * @return how many commands wait for their turn.
+     */
+    public int getQueuedCount() {
+        return queue.size();
+    }
+
+    /**
+     * Closes the socket. Pending commands fail with an {@link java.io.IOException}.
+     */
+    @Override
+    public void close() {
+        loop.execute(new Runnable() {
+            @Override
+            public void run() {
+                onError(new IOException("Connection closed"));
+            }
+        });
+    }
+
+    SocketChannel getChannel() {
+        return channel;
+    }
+
+    void onRegistered(SelectionKey key, boolean connected) {
+        this.key = key;
+        this.connected = connected;
+        startNext.run();
+    }
+
+    void onConnectable() throws IOException {
+        if (channel.finishConnect()) {
+            connected = true;
+            key.interestOps(SelectionKey.OP_READ);
+            startNext.run();
+        }
+    }
+
+    void onWritable() throws IOException {
+        if (pendingWrite == null) {
+            key.interestOps(SelectionKey.OP_READ);
+            return;
+        }
+        channel.write(pendingWrite);
+        if (!pendingWrite.hasRemaining()) {
+            pendingWrite = null;
+            deadline = System.nanoTime() + timeoutNanos;
+            key.interestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    void onReadable() throws IOException {
+        readBuffer.clear();
+        int n = channel.read(readBuffer);
+        if (n < 0) {
+            throw new EOFException("Adapter closed the connection");
+        }
+        if (state == DRAINING) {
+            drain(n);
+            return;
+        }
+        if (state != WAITING || pendingWrite != null) {
+            return;  // nothing was asked; the adapter echoes or chatters
+        }
+        if (responseLength == 0 && n > 0) {
+            firstByteNanos = System.nanoTime();
+            lastResponseLatencyNanos = firstByteNanos - (deadline - timeoutNanos);
+        }
+
+        byte[] data = readBuffer.array();
+        for (int i = 0; i < n; i++) {
+            byte b = data[i];
+            if (responseLength == response.length) {
+                response = Arrays.copyOf(response, response.length * 2);
+            }
+            response[responseLength++] = b;
+            if (b == ResponseReader.PROMPT) {
+                // anything after the prompt isn't an answer to this request
+                promptNanos = System.nanoTime();
+                state = PARSING;
+                parsers.execute(parse);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Discards the late answer of a timed out request, up to its prompt, so
+     * it isn't taken as the answer of the next one.
+     */
+    private void drain(int n) {
+        byte[] data = readBuffer.array();
+        for (int i = 0; i < n; i++) {
+            if (data[i] == ResponseReader.PROMPT) {
+                state = IDLE;
+                startNext.run();
+                return;
+            }
+        }
+    }
+
+    void checkTimeout(long now) {
+        if (state == WAITING && pendingWrite == null && now - deadline > 0) {
+            PendingCommand timedOut = current;
+            reset();
+            // the adapter may still answer, or print "STOPPED", before its prompt
+            state = DRAINING;
+            deadline = now + Math.max(timeoutNanos, TimeUnit.MILLISECONDS.toNanos(DEFAULT_TIMEOUT_MS));
+            timedOut.fail(new SocketTimeoutException("No response to " + timedOut.getCommand().getName()));
+        } else if (state == DRAINING && now - deadline > 0) {
+            // without a prompt, no request can be told apart from the late answer
+            onError(new SocketTimeoutException("No prompt from the adapter"));
+        }
+    }
+
+    void onError(IOException cause) {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        loop.unregister(this);
+        if (key != null) {
+            key.cancel();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // already failing
+        }
+
+        // a command being prepared or parsed fails when it comes back
+        if (state == WAITING) {
+            current.fail(cause);
+            reset();
+        }
+        PendingCommand pending;
+        while ((pending = queue.poll()) != null) {
+            pending.fail(cause);
+        }
+    }
+
+    private void reset() {
+        state = IDLE;
+        current = null;
+        pendingWrite = null;
+        responseLength = 0;
+    }
+
+    private final Runnable startNext = new Runnable() {
+        @Override
+        public void run() {
+            if (closed) {
+                PendingCommand pending;
+                while ((pending = queue.poll()) != null) {
+                    pending.fail(new IOException("Connection closed"));
+                }
+                return;
+            }
+            if (!connected || state != IDLE) {
+                return;
+            }
+            PendingCommand next;
+            do {
+                next = queue.poll();
+            } while (next != null && next.isDone());
+            if (next == null) {
+                return;
+            }
+            current = next;
+            state = PREPARING;
+            parsers.execute(prepare);
+        }
+    };
+
+    /**
+     * Runs on a parser thread: lets the command write its request.
+     */
+    private final Runnable prepare = new Runnable() {
+        @Override
+        public void run() {
+            final PendingCommand pending = current;
+            try {
+                ObdCommand command = pending.getCommand();
+                if (command instanceof PersistentCommand && ((PersistentCommand) command).loadFrom(cache)) {
+                    finish(pending, ResponseStatus.OK, null);
+                    return;
+                }
+                request.reset();
+                pending.getCommand().writeRequest(request);
+                if (!loop.execute(send)) {
+                    pending.fail(new IOException("Transport closed"));
+                }
+            } catch (IOException | RuntimeException e) {
+                finish(pending, null, e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                finish(pending, null, e);
+            }
+        }
+    };
+
+    private final Runnable send = new Runnable() {
+        @Override
+        public void run() {
+            if (closed) {
+                current.fail(new IOException("Connection closed"));
+                reset();
+                return;
+            }
+            state = WAITING;
+            responseLength = 0;
+            pendingWrite = ByteBuffer.wrap(request.array(), 0, request.size());
+            deadline = System.nanoTime() + timeoutNanos;
+            key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+    };
+
+    /**
+     * Runs on a parser thread: hands the collected response to the command.
+     */
+    private final Runnable parse = new Runnable() {
+        @Override
+        public void run() {
+            PendingCommand pending = current;
+            try {
+                responseBytes.set(response, responseLength);
+                reader.presetArrivalTimes(firstByteNanos, promptNanos);
+                ObdCommand command = pending.getCommand();
+                ResponseStatus status = command.readResponse(reader);
+                metrics.record(command);
+                if (command instanceof PersistentCommand) {
+                    ((PersistentCommand) command).saveTo(cache);
+                }
+                finish(pending, status, null);
+            } catch (IOException | RuntimeException e) {
+                finish(pending, null, e);
+            }
+        }
+    };
+
+    private void finish(final PendingCommand pending, ResponseStatus status, Throwable failure) {
+        loop.execute(new Runnable() {
+            @Override
+            public void run() {
+                reset();
+                startNext.run();
+            }
+        });
+        if (failure != null) {
+            pending.fail(failure);
+        } else {
+            pending.complete(status);
+        }
+    }
+
+    /**
+     * Callback for commands run on a {@link NioConnection}. Methods are called
+     * on a parser thread and shouldn't block.
+     */
+    public interface Listener {
+
+        /**
+         * Called when the response of a command was parsed.
+         *
+         * @param command the command, holding the parsed values.
+         * @param status  {@link ResponseStatus#OK} or the error found in the response.
+         */
+        void onResponse(ObdCommand command, ResponseStatus status);
+
+        /**
+         * Called when a command couldn't be run, such as on timeouts.
+         *
+         * @param command the command.
+         * @param cause   the error.
+         */
+        void onFailure(ObdCommand command, Throwable cause);
+    }
+
+    /**
+     * Reusable buffer the requests are written to.
+     */
+    private static final class RequestBuffer extends ByteArrayOutputStream {
+        RequestBuffer() {
+            super(32);
+        }
+
+        byte[] array() {
+            return buf;
+        }
+    }
+
+    /**
+     * Reusable stream over the bytes of the last response.
+     */
+    private static final class ResponseBytes extends ByteArrayInputStream {
+        ResponseBytes() {
+            super(new byte[0]);
+        }
+
+        void set(byte[] bytes, int length) {
+            buf = bytes;
+            pos = 0;
+            count = length;
+            mark = 0;
+        }
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package br.ufrn.imd.obd.connection.nio;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non-blocking transport for Wi-Fi ELM327 adapters (usually TCP port 35000).
+ * <p>
+ * A few selector threads drive the request/'&gt;' prompt exchange of any number
+ * of adapters, and the responses are parsed by the regular {@link
+ * br.ufrn.imd.obd.commands.ObdCommand} code on a small pool of parser threads.
+ * No thread ever blocks waiting for an adapter.
+ */
+public class NioTransport implements Closeable {
+
+    /**
+     * Default TCP port of Wi-Fi ELM327 adapters.
+     */
+    public static final int DEFAULT_PORT = 35000;
+
+    private final SelectorLoop[] loops;
+    private final ExecutorService parsers;
+    private final boolean ownsParsers;
+    private final AtomicInteger nextLoop = new AtomicInteger();
+
+    /**
+     * Creates a transport with one selector thread and one parser thread per core.
+     *
+     * @throws java.io.IOException if a selector can't be opened.
+     */
+    public NioTransport() throws IOException {
+        this(1, Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors()), true);
+    }
+
+    /**
+     * <p>Constructor for NioTransport.</p>
+     *
+     * @param selectorThreads how many selector threads share the connections.
+     * @param parsers         the executor the responses are parsed on. It isn't
+     *                        shut down by {@link #close()}.
+     * @throws java.io.IOException if a selector can't be opened.
+     */
+    public NioTransport(int selectorThreads, ExecutorService parsers) throws IOException {
+        this(selectorThreads, parsers, false);
+    }
+
+    private NioTransport(int selectorThreads, ExecutorService parsers, boolean ownsParsers) throws IOException {
+        if (selectorThreads <= 0) {
+            throw new IllegalArgumentException("At least one selector thread is needed");
+        }
+        this.parsers = parsers;
+        this.ownsParsers = ownsParsers;
+        this.loops = new SelectorLoop[selectorThreads];
+        for (int i = 0; i < selectorThreads; i++) {
+            loops[i] = new SelectorLoop("obd-nio-" + i);
+        }
+    }
+
+    /**
+     * Starts connecting to an adapter. Commands may be submitted right away;
+     * they are sent once the connection is established.
+     *
+     * @param address the adapter address, such as 192.168.0.10:35000.
+     * @return the new {@link NioConnection}.
+     * @throws java.io.IOException if the channel can't be opened.
+     */
+    public NioConnection connect(InetSocketAddress address) throws IOException {
+        SocketChannel channel = SocketChannel.open();
+        try {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            boolean connected = channel.connect(address);
+            SelectorLoop loop = loops[Math.abs(nextLoop.getAndIncrement() % loops.length)];
+            NioConnection connection = new NioConnection(loop, channel, parsers);
+            if (!loop.register(connection, connected)) {
+                throw new IOException("Transport closed");
+            }
+            return connection;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Closes all connections and stops the selector threads.
+     *
+     * @throws java.io.IOException if any.
+     */
+    @Override
+    public void close() throws IOException {
+        for (SelectorLoop loop : loops) {
+            loop.close();
+        }
+        if (ownsParsers) {
+            parsers.shutdown();
+        }
+    }
+
+    /**
+     * A selector and the thread that runs it. All the state of its connections
+     * is only changed on this thread, through {@link #execute(Runnable)}.
+     */
+    static final class SelectorLoop implements Runnable {
+        private static final long MAX_SELECT_MS = 100;
+
+        private final Selector selector;
+        private final Thread thread;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final List<NioConnection> connections = new ArrayList<>();
+        private final Object taskLock = new Object();
+        private volatile boolean open = true;
+
+        SelectorLoop(String name) throws IOException {
+            selector = Selector.open();
+            thread = new Thread(this, name);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        /**
+         * Queues a task for the selector thread.
+         *
+         * @return false if the loop is closed, so the task will never run.
+         */
+        boolean execute(Runnable task) {
+            synchronized (taskLock) {
+                if (!open) {
+                    return false;
+                }
+                tasks.add(task);
+            }
+            if (Thread.currentThread() != thread) {
+                selector.wakeup();
+            }
+            return true;
+        }
+
+        boolean register(final NioConnection connection, final boolean connected) {
+            return execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (!open) {
+                        connection.onError(new IOException("Transport closed"));
+                        return;
+                    }
+                    try {
+                        int ops = connected ? SelectionKey.OP_READ : SelectionKey.OP_CONNECT;
+                        SelectionKey key = connection.getChannel().register(selector, ops, connection);
+                        connections.add(connection);
+                        connection.onRegistered(key, connected);
+                    } catch (IOException e) {
+                        connection.onError(e);
+                    }
+                }
+            });
+        }
+
+        void unregister(NioConnection connection) {
+            connections.remove(connection);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (open) {
+                    selector.select(MAX_SELECT_MS);
+                    runTasks();
+                    handleKeys();
+                    checkTimeouts();
+                }
+            } catch (IOException | ClosedSelectorException e) {
+                open = false;
+            } finally {
+                closeAll();
+            }
+        }
+
+        private void runTasks() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+        }
+
+        private void handleKeys() {
+            Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+            while (it.hasNext()) {
+                SelectionKey key = it.next();
+                it.remove();
+                NioConnection connection = (NioConnection) key.attachment();
+                try {
+                    if (key.isValid() && key.isConnectable()) {
+                        connection.onConnectable();
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        connection.onWritable();
+                    }
+                    if (key.isValid() && key.isReadable()) {
+                        connection.onReadable();
+                    }
+                } catch (IOException e) {
+                    connection.onError(e);
+                }
+            }
+        }
+
+        private void checkTimeouts() {
+            long now = System.nanoTime();
+            for (NioConnection connection : new ArrayList<>(connections)) {
+                connection.checkTimeout(now);
+            }
+        }
+
+        private void closeAll() {
+            synchronized (taskLock) {
+                open = false;
+            }
+            for (NioConnection connection : new ArrayList<>(connections)) {
+                connection.onError(new IOException("Transport closed"));
+            }
+            // no task is accepted any more, so every accepted one runs here,
+            // failing the commands of the closed connections
+            runTasks();
+            try {
+                selector.close();
+            } catch (IOException e) {
+                // nothing left to do
+            }
+        }
+
+        void close() {
+            open = false;
+            selector.wakeup();
+        }
+    }
+}
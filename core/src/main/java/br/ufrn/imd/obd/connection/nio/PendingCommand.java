@@ -0,0 +1,134 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package br.ufrn.imd.obd.connection.nio;
+
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import br.ufrn.imd.obd.commands.ObdCommand;
+import br.ufrn.imd.obd.enums.ResponseStatus;
+
+/**
+ * A command submitted to a {@link NioConnection}, completed with the status of
+ * its response once it has been parsed.
+ */
+public class PendingCommand implements Future<ResponseStatus> {
+
+    private final ObdCommand command;
+    private final NioConnection.Listener listener;
+    private final CountDownLatch done = new CountDownLatch(1);
+    private final AtomicBoolean completed = new AtomicBoolean(false);
+    private volatile ResponseStatus status = null;
+    private volatile Throwable failure = null;
+    private volatile boolean cancelled = false;
+
+    PendingCommand(ObdCommand command, NioConnection.Listener listener) {
+        this.command = command;
+        this.listener = listener;
+    }
+
+    /**
+     * <p>Getter for the field <code>command</code>.</p>
+     *
+     * @return the submitted command.
+     */
+    public ObdCommand getCommand() {
+        return command;
+    }
+
+    void complete(ResponseStatus result) {
+        if (!completed.compareAndSet(false, true)) {
+            return;
+        }
+        status = result;
+        done.countDown();
+        if (listener != null) {
+            listener.onResponse(command, result);
+        }
+    }
+
+    void fail(Throwable cause) {
+        if (!completed.compareAndSet(false, true)) {
+            return;
+        }
+        failure = cause;
+        done.countDown();
+        if (listener != null) {
+            listener.onFailure(command, cause);
+        }
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        if (!completed.compareAndSet(false, true)) {
+            return false;
+        }
+        cancelled = true;
+        failure = new CancellationException();
+        done.countDown();
+        if (listener != null) {
+            listener.onFailure(command, failure);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public boolean isDone() {
+        return done.getCount() == 0;
+    }
+
+    @Override
+    public ResponseStatus get() throws InterruptedException, ExecutionException {
+        done.await();
+        return result();
+    }
+
+    @Override
+    public ResponseStatus get(long timeout, TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        if (!done.await(timeout, unit)) {
+            throw new TimeoutException();
+        }
+        return result();
+    }
+
+    private ResponseStatus result() throws ExecutionException {
+        if (cancelled) {
+            throw new CancellationException();
+        }
+        if (failure != null) {
+            throw new ExecutionException(failure);
+        }
+        return status;
+    }
+
+    /**
+     * Tells if the command failed with an I/O error, such as a timeout.
+     *
+     * @return the I/O error, or null.
+     */
+    public IOException getIOException() {
+        return failure instanceof IOException ? (IOException) failure : null;
+    }
+}
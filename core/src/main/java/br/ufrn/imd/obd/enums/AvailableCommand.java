@@ -50,6 +50,12 @@ public enum AvailableCommand {
     PIDS_01_20("Available PIDs 01-20", "01 00"),
     PIDS_21_40("Available PIDs 21-40", "01 20"),
     PIDS_41_60("Available PIDs 41-60", "01 40"),
+    PIDS_61_80("Available PIDs 61-80", "01 60"),
+    PIDS_81_A0("Available PIDs 81-A0", "01 80"),
+    PIDS_A1_C0("Available PIDs A1-C0", "01 A0"),
+    PIDS_C1_E0("Available PIDs C1-E0", "01 C0"),
+    PIDS_E1_FF("Available PIDs E1-FF", "01 E0"),
+    VEHICLE_INFO_PIDS("Available Mode 09 PIDs", "09 00"),
     ABS_LOAD("Absolute load", "01 43"),
     ENGINE_OIL_TEMP("Engine oil temperature", "01 5C"),
     AIR_FUEL_RATIO("Air/Fuel Ratio", "01 44"),
@@ -67,6 +73,7 @@ public enum AvailableCommand {
     PROTOCOL_CLOSE("Protocol Close", "AT PC"),
     ECHO_OFF("Echo Off", "AT E0"),
     HEADERS_OFF("Headers disabled", "AT H0"),
+    HEADERS_ON("Headers enabled", "AT H1"),
     LINE_FEED_OFF("Line Feed Off", "AT L0"),
     SPACES_OFF("Spaces Off", "AT S0"),
     RESET_OBD("Reset OBD", "AT Z"),
@@ -86,7 +93,7 @@ public enum AvailableCommand {
     CUSTOM_COMMAND("Custom Command", "");
 
     private final String value;
-    private String command;
+    private final String command;
 
     /**
      * @param value Command description
@@ -119,20 +126,4 @@ public enum AvailableCommand {
         return this.value + " [" + this.command + "]";
     }
 
-    public static class CustomCommand {
-
-        private CustomCommand() {
-        }
-
-        public static AvailableCommand getTimeout(int timeout) {
-            SET_TIMEOUT.command = "AT ST " + Integer.toHexString(0xFF & timeout);
-            return SET_TIMEOUT;
-        }
-
-        public static AvailableCommand rawCommand(String command) {
-            CUSTOM_COMMAND.command = command;
-            return CUSTOM_COMMAND;
-        }
-    }
-
 }
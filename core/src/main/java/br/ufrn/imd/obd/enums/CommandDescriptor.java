@@ -0,0 +1,137 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package br.ufrn.imd.obd.enums;
+
+import java.util.Locale;
+
+/**
+ * Immutable description of the request sent by a command: its
+ * {@link AvailableCommand} type, a name and the request itself.
+ * <p>
+ * Commands built at runtime, such as a timeout or a raw request, get their own
+ * descriptor instead of changing the shared {@link AvailableCommand#SET_TIMEOUT}
+ * and {@link AvailableCommand#CUSTOM_COMMAND} constants, so they can be created
+ * concurrently by any number of sessions.
+ */
+public final class CommandDescriptor {
+
+    private static final CommandDescriptor[] DESCRIPTORS = new CommandDescriptor[AvailableCommand.values().length];
+
+    static {
+        for (AvailableCommand command : AvailableCommand.values()) {
+            DESCRIPTORS[command.ordinal()] = new CommandDescriptor(command, command.getValue(), command.getCommand());
+        }
+    }
+
+    private final AvailableCommand type;
+    private final String name;
+    private final String command;
+
+    /**
+     * <p>Constructor for CommandDescriptor.</p>
+     *
+     * @param type    the type of the command.
+     * @param name    the name of the command.
+     * @param command the request, such as "AT ST 32".
+     */
+    public CommandDescriptor(AvailableCommand type, String name, String command) {
+        if (type == null || name == null || command == null) {
+            throw new IllegalArgumentException("Descriptor fields must not be null");
+        }
+        this.type = type;
+        this.name = name;
+        this.command = command;
+    }
+
+    /**
+     * Returns the descriptor of a predefined command.
+     *
+     * @param command the command.
+     * @return its descriptor.
+     */
+    public static CommandDescriptor of(AvailableCommand command) {
+        return DESCRIPTORS[command.ordinal()];
+    }
+
+    /**
+     * Describes an "AT ST" request.
+     *
+     * @param timeout value between 0 and 255 that multiplied by 4 results in the
+     *                timeout in milliseconds (ms).
+     * @return the descriptor of the request.
+     */
+    public static CommandDescriptor timeout(int timeout) {
+        AvailableCommand type = AvailableCommand.SET_TIMEOUT;
+        return new CommandDescriptor(type, type.getValue(), String.format(Locale.US, "AT ST %02X", timeout & 0xFF));
+    }
+
+    /**
+     * Describes a request sent as is.
+     *
+     * @param command the request.
+     * @return the descriptor of the request.
+     */
+    public static CommandDescriptor raw(String command) {
+        AvailableCommand type = AvailableCommand.CUSTOM_COMMAND;
+        return new CommandDescriptor(type, type.getValue(), command);
+    }
+
+    /**
+     * <p>Getter for the field <code>type</code>.</p>
+     *
+     * @return the type of the command.
+     */
+    public AvailableCommand getType() {
+        return type;
+    }
+
+    /**
+     * <p>Getter for the field <code>name</code>.</p>
+     *
+     * @return the name of the command.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * <p>Getter for the field <code>command</code>.</p>
+     *
+     * @return the request, such as "AT ST 32".
+     */
+    public String getCommand() {
+        return command;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        CommandDescriptor that = (CommandDescriptor) o;
+        return type == that.type && name.equals(that.name) && command.equals(that.command);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * type.hashCode() + name.hashCode()) + command.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return name + " [" + command + "]";
+    }
+}
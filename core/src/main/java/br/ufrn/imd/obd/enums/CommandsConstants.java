@@ -44,6 +44,12 @@ import br.ufrn.imd.obd.commands.temperature.EngineCoolantTemperatureCommand;
 public class CommandsConstants {
     public static final Map<Integer, Class<? extends ObdCommand>> SUPPORTED_COMMANDS = new HashMap<>();
 
+    /**
+     * Number of data bytes (A, B, C...) returned for each Mode 01 PID, indexed by
+     * PID. Zero means the length is unknown or variable.
+     */
+    private static final int[] MODE_01_DATA_LENGTH = new int[0x61];
+
     static {
         // 01 to 20
         SUPPORTED_COMMANDS.put(0x01, DtcNumberCommand.class);
@@ -85,8 +91,36 @@ public class CommandsConstants {
         SUPPORTED_COMMANDS.put(0x52, EthanolLevelCommand.class);
         SUPPORTED_COMMANDS.put(0x5C, OilTempCommand.class);
         SUPPORTED_COMMANDS.put(0x5E, ConsumptionRateCommand.class);
+
+        setDataLength(4, 0x00, 0x01, 0x20, 0x40, 0x41, 0x4F, 0x50, 0x60);
+        setDataLength(4, 0x24, 0x25, 0x26, 0x27, 0x28, 0x29, 0x2A, 0x2B);
+        setDataLength(4, 0x34, 0x35, 0x36, 0x37, 0x38, 0x39, 0x3A, 0x3B);
+        setDataLength(2, 0x02, 0x03, 0x0C, 0x10, 0x1F, 0x21, 0x22, 0x23, 0x31, 0x32);
+        setDataLength(2, 0x14, 0x15, 0x16, 0x17, 0x18, 0x19, 0x1A, 0x1B);
+        setDataLength(2, 0x3C, 0x3D, 0x3E, 0x3F, 0x42, 0x43, 0x44, 0x4D, 0x4E);
+        setDataLength(2, 0x53, 0x54, 0x55, 0x56, 0x57, 0x58, 0x59, 0x5D, 0x5E);
+        setDataLength(1, 0x04, 0x05, 0x06, 0x07, 0x08, 0x09, 0x0A, 0x0B, 0x0D, 0x0E, 0x0F);
+        setDataLength(1, 0x11, 0x12, 0x13, 0x1C, 0x1D, 0x1E, 0x2C, 0x2D, 0x2E, 0x2F, 0x30, 0x33);
+        setDataLength(1, 0x45, 0x46, 0x47, 0x48, 0x49, 0x4A, 0x4B, 0x4C, 0x51, 0x52);
+        setDataLength(1, 0x5A, 0x5B, 0x5C, 0x5F);
     }
 
     private CommandsConstants() {
     }
+
+    private static void setDataLength(int length, int... pids) {
+        for (int pid : pids) {
+            MODE_01_DATA_LENGTH[pid] = length;
+        }
+    }
+
+    /**
+     * Returns how many data bytes follow the PID byte in a Mode 01 response.
+     *
+     * @param pid the Mode 01 PID.
+     * @return the number of data bytes, or 0 if unknown.
+     */
+    public static int getMode01DataLength(int pid) {
+        return pid >= 0 && pid < MODE_01_DATA_LENGTH.length ? MODE_01_DATA_LENGTH[pid] : 0;
+    }
 }
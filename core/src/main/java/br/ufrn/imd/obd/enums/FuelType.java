@@ -12,8 +12,6 @@
  */
 package br.ufrn.imd.obd.enums;
 
-import android.util.SparseArray;
-
 /**
  * MODE 1 PID 0x51 will return one of the following values to identify the fuel
  * type of the vehicle.
@@ -43,13 +41,13 @@ public enum FuelType {
     HYBRID_REGENERATIVE(0x16, "Hybrid Regenerative");
 
     /**
-     * Constant <code>map</code>
+     * Fuel types indexed by value.
      */
-    private static final SparseArray<FuelType> arr = new SparseArray<>();
+    private static final FuelType[] arr = new FuelType[HYBRID_REGENERATIVE.value + 1];
 
     static {
         for (FuelType error : FuelType.values()) {
-            arr.append(error.getValue(), error);
+            arr[error.getValue()] = error;
         }
     }
 
@@ -68,7 +66,7 @@ public enum FuelType {
      * @return a {@link FuelType} object.
      */
     public static FuelType fromValue(final int value) {
-        return arr.get(value);
+        return value >= 0 && value < arr.length ? arr[value] : null;
     }
 
     /**
@@ -0,0 +1,46 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package br.ufrn.imd.obd.enums;
+
+/**
+ * Phases of a command run, timed with {@link System#nanoTime()}.
+ */
+public enum Phase {
+
+    /**
+     * Writing and flushing the request.
+     */
+    WRITE,
+
+    /**
+     * From the flush of the request to the first response byte: the time the
+     * adapter and the ECU take to answer.
+     */
+    WAIT,
+
+    /**
+     * From the first response byte to the '&gt;' prompt, which includes the
+     * adapter timeout after the last ECU response.
+     */
+    RECEIVE,
+
+    /**
+     * From the prompt to the end of the calculations.
+     */
+    PARSE,
+
+    /**
+     * From the start of the write to the end of the calculations.
+     */
+    TOTAL
+}
@@ -0,0 +1,242 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package br.ufrn.imd.obd.enums;
+
+import br.ufrn.imd.obd.exceptions.BusInitException;
+import br.ufrn.imd.obd.exceptions.MisunderstoodCommandException;
+import br.ufrn.imd.obd.exceptions.NoDataException;
+import br.ufrn.imd.obd.exceptions.ResponseException;
+import br.ufrn.imd.obd.exceptions.StoppedException;
+import br.ufrn.imd.obd.exceptions.UnableToConnectException;
+import br.ufrn.imd.obd.exceptions.UnknownErrorException;
+import br.ufrn.imd.obd.exceptions.UnsupportedCommandException;
+
+/**
+ * Outcome of an ELM327 response, classified by the error message it carries.
+ * <p>
+ * The errors are declared in the order they are tested, so when a response
+ * carries more than one message (e.g. "BUS INIT... ERROR" also contains
+ * "ERROR") the first one wins.
+ */
+public enum ResponseStatus {
+    OK(null),
+    UNABLE_TO_CONNECT("UNABLETOCONNECT"),
+    BUS_INIT_ERROR("BUSINIT...ERROR"),
+    MISUNDERSTOOD("?"),
+    NO_DATA("NODATA"),
+    STOPPED("STOPPED"),
+    UNKNOWN_ERROR("ERROR"),
+    /**
+     * Negative response "7F 0[0-A] 1[1-2]" sent by the ECU.
+     */
+    UNSUPPORTED(null);
+
+    private static final ResponseStatus[] VALUES = values();
+
+    /**
+     * Message tested with "contains", ignoring whitespace and case.
+     */
+    private final String token;
+
+    ResponseStatus(String token) {
+        this.token = token;
+    }
+
+    /**
+     * Classifies a response in a single pass, without allocating.
+     *
+     * @param response the raw response.
+     * @return {@link #OK} if no error message was found.
+     */
+    public static ResponseStatus classify(CharSequence response) {
+        if (response == null) {
+            return OK;
+        }
+
+        int length = response.length();
+        int matched = UNSUPPORTED.ordinal();
+        int nonBlank = 0;
+        boolean onlyHex = true;
+
+        for (int i = 0; i < length; i++) {
+            char c = response.charAt(i);
+            if (isWhitespace(c)) {
+                continue;
+            }
+            nonBlank++;
+            if (Character.digit(c, 16) < 0) {
+                onlyHex = false;
+            }
+
+            // only the tokens that would win over the best match so far are tried
+            for (int t = UNABLE_TO_CONNECT.ordinal(); t < matched; t++) {
+                if (VALUES[t].token != null && matchesAt(response, i, VALUES[t].token)) {
+                    matched = t;
+                    break;
+                }
+            }
+            if (matched == UNABLE_TO_CONNECT.ordinal()) {
+                return UNABLE_TO_CONNECT;
+            }
+        }
+
+        if (matched < UNSUPPORTED.ordinal()) {
+            return VALUES[matched];
+        }
+        return onlyHex && nonBlank == 6 && isNegativeResponse(response) ? UNSUPPORTED : OK;
+    }
+
+    /**
+     * Tells if the token starts at the given index, ignoring whitespace and case.
+     */
+    private static boolean matchesAt(CharSequence s, int index, String token) {
+        int i = index;
+        for (int t = 0; t < token.length(); t++) {
+            while (i < s.length() && isWhitespace(s.charAt(i))) {
+                i++;
+            }
+            if (i == s.length() || Character.toUpperCase(s.charAt(i)) != token.charAt(t)) {
+                return false;
+            }
+            i++;
+        }
+        return true;
+    }
+
+    /**
+     * Matches the 6 non-blank chars against "7F0[0-A]1[1-2]".
+     */
+    private static boolean isNegativeResponse(CharSequence s) {
+        int n = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (isWhitespace(c)) {
+                continue;
+            }
+            c = Character.toUpperCase(c);
+            boolean ok;
+            switch (n) {
+                case 0:
+                    ok = c == '7';
+                    break;
+                case 1:
+                    ok = c == 'F';
+                    break;
+                case 2:
+                    ok = c == '0';
+                    break;
+                case 3:
+                    ok = c >= '0' && c <= 'A';
+                    break;
+                case 4:
+                    ok = c == '1';
+                    break;
+                default:
+                    ok = c == '1' || c == '2';
+                    break;
+            }
+            if (!ok) {
+                return false;
+            }
+            n++;
+        }
+        return true;
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    /**
+     * <p>isError.</p>
+     *
+     * @return true for any status other than {@link #OK}.
+     */
+    public boolean isError() {
+        return this != OK;
+    }
+
+    /**
+     * Returns the status matching an exception, the reverse of
+     * {@link #toException(CommandDescriptor, String)}.
+     *
+     * @param e an exception thrown for an error message.
+     * @return the matching status, or {@link #UNKNOWN_ERROR} for a plain {@link ResponseException}.
+     */
+    public static ResponseStatus of(ResponseException e) {
+        if (e instanceof UnableToConnectException) {
+            return UNABLE_TO_CONNECT;
+        } else if (e instanceof BusInitException) {
+            return BUS_INIT_ERROR;
+        } else if (e instanceof MisunderstoodCommandException) {
+            return MISUNDERSTOOD;
+        } else if (e instanceof NoDataException) {
+            return NO_DATA;
+        } else if (e instanceof StoppedException) {
+            return STOPPED;
+        } else if (e instanceof UnsupportedCommandException) {
+            return UNSUPPORTED;
+        }
+        return UNKNOWN_ERROR;
+    }
+
+    /**
+     * Creates the exception matching this status.
+     *
+     * @param command  the command that got the response.
+     * @param response the raw response.
+     * @return a new {@link ResponseException}, or null for {@link #OK}.
+     */
+    public ResponseException toException(AvailableCommand command, String response) {
+        return toException(command != null ? CommandDescriptor.of(command) : null, response);
+    }
+
+    /**
+     * Creates the exception matching this status.
+     *
+     * @param command  the request that got the response.
+     * @param response the raw response.
+     * @return a new {@link ResponseException}, or null for {@link #OK}.
+     */
+    public ResponseException toException(CommandDescriptor command, String response) {
+        ResponseException e;
+        switch (this) {
+            case UNABLE_TO_CONNECT:
+                e = new UnableToConnectException();
+                break;
+            case BUS_INIT_ERROR:
+                e = new BusInitException();
+                break;
+            case MISUNDERSTOOD:
+                e = new MisunderstoodCommandException();
+                break;
+            case NO_DATA:
+                e = new NoDataException();
+                break;
+            case STOPPED:
+                e = new StoppedException();
+                break;
+            case UNKNOWN_ERROR:
+                e = new UnknownErrorException();
+                break;
+            case UNSUPPORTED:
+                e = new UnsupportedCommandException();
+                break;
+            default:
+                return null;
+        }
+        e.setCommand(command);
+        e.setResponse(response);
+        return e;
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package br.ufrn.imd.obd.enums;
+
+/**
+ * Units of the values reported to a {@link br.ufrn.imd.obd.commands.SampleSink}.
+ */
+public enum Unit {
+
+    NONE(""),
+    COUNT(""),
+    RATIO(""),
+    PERCENT("%"),
+    RPM("RPM"),
+    CELSIUS("C"),
+    FAHRENHEIT("F"),
+    KILOPASCAL("kPa"),
+    PSI("psi"),
+    KILOMETERS_PER_HOUR("km/h"),
+    MILES_PER_HOUR("mph"),
+    KILOMETERS("km"),
+    MILES("m"),
+    SECONDS("s"),
+    MINUTES("min"),
+    VOLTS("V"),
+    DEGREES("°"),
+    GRAMS_PER_SECOND("g/s"),
+    LITERS_PER_HOUR("L/h");
+
+    private final String symbol;
+
+    Unit(final String symbol) {
+        this.symbol = symbol;
+    }
+
+    /**
+     * <p>Getter for the field <code>symbol</code>.</p>
+     *
+     * @return the symbol, as in {@link br.ufrn.imd.obd.commands.ObdCommand#getResultUnit()}.
+     */
+    public String getSymbol() {
+        return symbol;
+    }
+
+}
@@ -13,6 +13,7 @@
 package br.ufrn.imd.obd.exceptions;
 
 import br.ufrn.imd.obd.enums.AvailableCommand;
+import br.ufrn.imd.obd.enums.CommandDescriptor;
 
 /**
  * Generic message error
@@ -26,7 +27,7 @@ public class ResponseException extends RuntimeException {
     private final boolean matchRegex;
 
     private String response;
-    private AvailableCommand command;
+    private CommandDescriptor command;
 
     /**
      * <p>Constructor for ResponseException.</p>
@@ -67,15 +68,44 @@ public class ResponseException extends RuntimeException {
         }
     }
 
+    /**
+     * <p>Setter for the field <code>response</code>.</p>
+     *
+     * @param response a {@link String} object.
+     */
+    public void setResponse(String response) {
+        this.response = response;
+    }
+
     /**
      * <p>Setter for the field <code>command</code>.</p>
      *
      * @param command a {@link String} object.
      */
     public void setCommand(AvailableCommand command) {
+        this.command = command != null ? CommandDescriptor.of(command) : null;
+    }
+
+    /**
+     * <p>Setter for the field <code>command</code>.</p>
+     *
+     * @param command the request that got the response.
+     */
+    public void setCommand(CommandDescriptor command) {
         this.command = command;
     }
 
+    /**
+     * Response errors are expected conditions (e.g. "NO DATA" for unsupported
+     * PIDs), so the stack trace isn't captured.
+     *
+     * @return this exception.
+     */
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -0,0 +1,125 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package br.ufrn.imd.obd.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import br.ufrn.imd.obd.commands.ObdCommand;
+import br.ufrn.imd.obd.enums.Phase;
+
+/**
+ * Per-phase latencies of the commands run on a connection, for the connection
+ * as a whole and for each request (such as "01 0C").
+ * <p>
+ * Every run that got a response is recorded, error messages included: a PID
+ * answered with "NO DATA" costs the whole adapter timeout, which is just what
+ * {@link #getSlowestCommands(Phase, double, int)} is meant to reveal. Runs
+ * answered from a cache, or interrupted by an I/O error, aren't recorded.
+ */
+public class LatencyMetrics {
+
+    private final LatencyStats total = new LatencyStats();
+    private final ConcurrentMap<String, LatencyStats> byCommand = new ConcurrentHashMap<>();
+
+    /**
+     * Records the phases of the last run of a command.
+     *
+     * @param command a command that was just run.
+     */
+    public void record(ObdCommand command) {
+        if (command.getPhaseNanos(Phase.TOTAL) < 0) {
+            return;
+        }
+        total.record(command);
+        getOrCreate(command.getCommand()).record(command);
+    }
+
+    private LatencyStats getOrCreate(String key) {
+        LatencyStats stats = byCommand.get(key);
+        if (stats == null) {
+            LatencyStats created = new LatencyStats();
+            stats = byCommand.putIfAbsent(key, created);
+            if (stats == null) {
+                stats = created;
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * <p>getTotal.</p>
+     *
+     * @return the latencies of all commands.
+     */
+    public LatencyStats getTotal() {
+        return total;
+    }
+
+    /**
+     * Returns the latencies of one request.
+     *
+     * @param command the request, as in {@link ObdCommand#getCommand()}.
+     * @return its latencies, or null if it wasn't recorded.
+     */
+    public LatencyStats getStats(String command) {
+        return byCommand.get(command);
+    }
+
+    /**
+     * <p>getCommands.</p>
+     *
+     * @return the latencies of each recorded request.
+     */
+    public Map<String, LatencyStats> getCommands() {
+        return Collections.unmodifiableMap(byCommand);
+    }
+
+    /**
+     * Lists the requests with the highest latency for a phase.
+     *
+     * @param phase      the phase to compare, usually {@link Phase#WAIT} or {@link Phase#TOTAL}.
+     * @param percentile the percentile to compare, such as 99.
+     * @param limit      the maximum number of requests returned.
+     * @return the requests, slowest first.
+     */
+    public List<String> getSlowestCommands(final Phase phase, double percentile, int limit) {
+        final Map<String, Long> latencies = new HashMap<>();
+        for (Map.Entry<String, LatencyStats> entry : byCommand.entrySet()) {
+            latencies.put(entry.getKey(), entry.getValue().getPercentile(phase, percentile));
+        }
+
+        List<String> commands = new ArrayList<>(latencies.keySet());
+        Collections.sort(commands, new Comparator<String>() {
+            @Override
+            public int compare(String a, String b) {
+                return Long.compare(latencies.get(b), latencies.get(a));
+            }
+        });
+        return commands.subList(0, Math.min(limit, commands.size()));
+    }
+
+    /**
+     * Clears all latencies.
+     */
+    public void reset() {
+        total.reset();
+        byCommand.clear();
+    }
+}
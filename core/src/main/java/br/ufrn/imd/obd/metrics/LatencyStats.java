@@ -0,0 +1,98 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package br.ufrn.imd.obd.metrics;
+
+import br.ufrn.imd.obd.commands.ObdCommand;
+import br.ufrn.imd.obd.enums.Phase;
+
+/**
+ * One {@link LatencyHistogram} per {@link Phase} of the runs of a command, or
+ * of all commands of a connection.
+ */
+public class LatencyStats {
+
+    private static final Phase[] PHASES = Phase.values();
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[PHASES.length];
+
+    /**
+     * Default constructor.
+     */
+    public LatencyStats() {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Records the phases of the last run of a command.
+     *
+     * @param command a command that was just run.
+     */
+    public void record(ObdCommand command) {
+        for (Phase phase : PHASES) {
+            histograms[phase.ordinal()].record(command.getPhaseNanos(phase));
+        }
+    }
+
+    /**
+     * <p>getHistogram.</p>
+     *
+     * @param phase the phase.
+     * @return the histogram of the phase.
+     */
+    public LatencyHistogram getHistogram(Phase phase) {
+        return histograms[phase.ordinal()];
+    }
+
+    /**
+     * Returns a percentile of the latency of a phase.
+     *
+     * @param phase      the phase.
+     * @param percentile a value between 0 and 100.
+     * @return the latency in nanoseconds, or 0 if nothing was recorded.
+     */
+    public long getPercentile(Phase phase, double percentile) {
+        return getHistogram(phase).getPercentile(percentile);
+    }
+
+    /**
+     * <p>getCount.</p>
+     *
+     * @return the number of recorded runs.
+     */
+    public long getCount() {
+        return getHistogram(Phase.TOTAL).getCount();
+    }
+
+    /**
+     * Clears all histograms.
+     */
+    public void reset() {
+        for (LatencyHistogram histogram : histograms) {
+            histogram.reset();
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Phase phase : PHASES) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(phase).append(" {").append(histograms[phase.ordinal()]).append('}');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,406 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package br.ufrn.imd.obd.polling;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+import br.ufrn.imd.obd.commands.ObdCommand;
+import br.ufrn.imd.obd.commands.SampleSink;
+import br.ufrn.imd.obd.commands.protocol.SupportedPids;
+import br.ufrn.imd.obd.connection.ObdConnection;
+import br.ufrn.imd.obd.enums.ResponseStatus;
+
+/**
+ * Polls each command at its own target rate over a connection.
+ * <p>
+ * Commands are run earliest deadline first: each one is due one period after
+ * its previous due time, and when the bus can't keep up, the command that has
+ * been waiting the longest past its deadline goes next. A command that falls
+ * more than one period behind is rescheduled from now instead of bursting to
+ * catch up, so slow signals never starve fast ones.
+ * <p>
+ * Commands answered with "NO DATA" are removed, like in
+ * {@link br.ufrn.imd.obd.commands.ObdCommandGroup}, except when the
+ * {@link TimeoutTuner} had lowered the timeout and raises it back. Commands run
+ * only once are run again, one second later, until they get an answer. With
+ * {@link SupportedPids} set, commands the vehicle doesn't support aren't
+ * scheduled at all.
+ */
+public class PollingScheduler {
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final long ONE_SHOT_RETRY_NANOS = NANOS_PER_SECOND;
+
+    private final ObdConnection connection;
+    private final List<PolledCommand> polled = new ArrayList<>();
+    private final PriorityQueue<PolledCommand> queue = new PriorityQueue<>(11, new Comparator<PolledCommand>() {
+        @Override
+        public int compare(PolledCommand a, PolledCommand b) {
+            if (a.nextDue != b.nextDue) {
+                return a.nextDue < b.nextDue ? -1 : 1;
+            }
+            // on ties, the faster signal goes first
+            return a.periodNanos < b.periodNanos ? -1 : (a.periodNanos == b.periodNanos ? 0 : 1);
+        }
+    });
+
+    private volatile boolean running = false;
+    private volatile TimeoutTuner timeoutTuner = null;
+    private SampleSink sampleSink = null;
+    private SupportedPids supportedPids = null;
+
+    /**
+     * Default constructor.
+     *
+     * @param connection the {@link ObdConnection} the commands are run on.
+     */
+    public PollingScheduler(ObdConnection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * Adds a command polled at the given rate.
+     *
+     * @param command the command to poll.
+     * @param rateHz  the target rate in Hz (e.g. 10 for RPM, 0.2 for coolant
+     *                temperature), or 0 to run it only once.
+     * @return the {@link PolledCommand} holding its statistics, or null if the
+     * vehicle doesn't support it.
+     */
+    public synchronized PolledCommand add(ObdCommand command, double rateHz) {
+        if (rateHz < 0 || Double.isNaN(rateHz) || Double.isInfinite(rateHz)) {
+            throw new IllegalArgumentException("Invalid rate: " + rateHz);
+        }
+        if (supportedPids != null && !supportedPids.isSupported(command)) {
+            return null;
+        }
+
+        long period = rateHz == 0 ? 0 : Math.max(1L, (long) (NANOS_PER_SECOND / rateHz));
+        if (sampleSink != null) {
+            command.setSampleSink(sampleSink);
+        }
+        PolledCommand entry = new PolledCommand(command, rateHz, period, System.nanoTime());
+        polled.add(entry);
+        queue.add(entry);
+        return entry;
+    }
+
+    /**
+     * Adds a command that is run only once, such as the VIN.
+     *
+     * @param command the command to run.
+     * @return the {@link PolledCommand} holding its statistics, or null if the
+     * vehicle doesn't support it.
+     */
+    public PolledCommand addOnce(ObdCommand command) {
+        return add(command, 0);
+    }
+
+    /**
+     * Removes a command from the schedule.
+     *
+     * @param command the command to remove.
+     */
+    public synchronized void remove(ObdCommand command) {
+        for (PolledCommand entry : new ArrayList<>(polled)) {
+            if (entry.command == command) {
+                polled.remove(entry);
+                queue.remove(entry);
+            }
+        }
+    }
+
+    /**
+     * Waits until the next command is due, then runs it.
+     *
+     * @return the command that was run, or null if nothing is scheduled.
+     * @throws java.io.IOException            if any.
+     * @throws java.lang.InterruptedException if any.
+     */
+    public PolledCommand runNext() throws IOException, InterruptedException {
+        PolledCommand entry;
+        synchronized (this) {
+            entry = queue.poll();
+        }
+        if (entry == null) {
+            return null;
+        }
+
+        long wait = entry.nextDue - System.nanoTime();
+        if (wait > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                // not run yet, so it keeps its due time
+                synchronized (this) {
+                    if (polled.contains(entry)) {
+                        queue.add(entry);
+                    }
+                }
+                throw e;
+            }
+        }
+
+        long now = System.nanoTime();
+        ResponseStatus status = null;
+        boolean cutOff = false;
+        try {
+            status = entry.command.tryRun(connection);
+            entry.record(status, now);
+
+            TimeoutTuner tuner = timeoutTuner;
+            if (tuner != null) {
+                cutOff = tuner.record(entry.command);
+                tuner.tuneIfNeeded();
+            }
+        } finally {
+            // whatever happened after the request, only NO DATA drops the command,
+            // unless it came from a timeout the tuner had lowered
+            if (status == ResponseStatus.NO_DATA && !cutOff) {
+                synchronized (this) {
+                    polled.remove(entry);
+                }
+            } else {
+                reschedule(entry, status, now);
+            }
+        }
+        return entry;
+    }
+
+    private synchronized void reschedule(PolledCommand entry, ResponseStatus status, long now) {
+        if (!polled.contains(entry)) {
+            return;  // removed while running
+        }
+        if (entry.periodNanos == 0) {
+            // a one-shot command is done once answered, and retried until then
+            if (status != ResponseStatus.OK) {
+                entry.nextDue = now + ONE_SHOT_RETRY_NANOS;
+                queue.add(entry);
+            }
+            return;
+        }
+
+        long next = entry.nextDue + entry.periodNanos;
+        entry.nextDue = next < now - entry.periodNanos ? now : next;
+        queue.add(entry);
+    }
+
+    /**
+     * Polls the commands until {@link #stop()} is called, the thread is
+     * interrupted or nothing is left to run.
+     *
+     * @throws java.io.IOException            if any.
+     * @throws java.lang.InterruptedException if any.
+     */
+    public void run() throws IOException, InterruptedException {
+        running = true;
+        try {
+            while (running && runNext() != null) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+        } finally {
+            running = false;
+        }
+    }
+
+    /**
+     * Polls the commands for the given time.
+     *
+     * @param duration how long to poll.
+     * @param unit     the unit of the duration.
+     * @throws java.io.IOException            if any.
+     * @throws java.lang.InterruptedException if any.
+     */
+    public void run(long duration, TimeUnit unit) throws IOException, InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(duration);
+        running = true;
+        try {
+            while (running && System.nanoTime() < deadline) {
+                synchronized (this) {
+                    PolledCommand next = queue.peek();
+                    if (next == null || next.nextDue >= deadline) {
+                        break;
+                    }
+                }
+                runNext();
+            }
+        } finally {
+            running = false;
+        }
+    }
+
+    /**
+     * Sets a {@link TimeoutTuner} fed with the response times of the polled
+     * commands, which adjusts the adapter timeout between them.
+     *
+     * @param timeoutTuner a tuner for the same connection (can be null)
+     */
+    public void setTimeoutTuner(TimeoutTuner timeoutTuner) {
+        this.timeoutTuner = timeoutTuner;
+    }
+
+    /**
+     * Sets the sink that receives the value of each response of the polled
+     * commands, including the ones added later, such as a {@link ReadingPublisher}.
+     *
+     * @param sampleSink a {@link SampleSink} (can be null)
+     */
+    public synchronized void setSampleSink(SampleSink sampleSink) {
+        this.sampleSink = sampleSink;
+        for (PolledCommand entry : polled) {
+            entry.command.setSampleSink(sampleSink);
+        }
+    }
+
+    /**
+     * Sets the PIDs supported by the vehicle. Scheduled commands it doesn't
+     * support are removed, and later ones are ignored.
+     *
+     * @param supportedPids the result of {@link SupportedPids#discover(ObdConnection)} (can be null)
+     */
+    public synchronized void setSupportedPids(SupportedPids supportedPids) {
+        this.supportedPids = supportedPids;
+        if (supportedPids == null) {
+            return;
+        }
+        for (PolledCommand entry : new ArrayList<>(polled)) {
+            if (!supportedPids.isSupported(entry.command)) {
+                polled.remove(entry);
+                queue.remove(entry);
+            }
+        }
+    }
+
+    /**
+     * Makes {@link #run()} return after the command being run.
+     */
+    public void stop() {
+        running = false;
+    }
+
+    /**
+     * <p>getPolledCommands.</p>
+     *
+     * @return the scheduled commands and their statistics.
+     */
+    public synchronized List<PolledCommand> getPolledCommands() {
+        return Collections.unmodifiableList(new ArrayList<>(polled));
+    }
+
+    /**
+     * A command with its target rate and the rate it actually achieved.
+     */
+    public static class PolledCommand {
+        private final ObdCommand command;
+        private final double targetRate;
+        private final long periodNanos;
+        private long nextDue;
+        private volatile long firstRun = -1;
+        private volatile long lastRun = -1;
+        private volatile long samples = 0;
+        private volatile long errors = 0;
+        private volatile ResponseStatus lastStatus = null;
+
+        PolledCommand(ObdCommand command, double targetRate, long periodNanos, long nextDue) {
+            this.command = command;
+            this.targetRate = targetRate;
+            this.periodNanos = periodNanos;
+            this.nextDue = nextDue;
+        }
+
+        void record(ResponseStatus status, long now) {
+            if (firstRun < 0) {
+                firstRun = now;
+            }
+            lastRun = now;
+            lastStatus = status;
+            if (status == ResponseStatus.OK) {
+                samples++;
+            } else {
+                errors++;
+            }
+        }
+
+        /**
+         * <p>Getter for the field <code>command</code>.</p>
+         *
+         * @return the polled command.
+         */
+        public ObdCommand getCommand() {
+            return command;
+        }
+
+        /**
+         * <p>Getter for the field <code>targetRate</code>.</p>
+         *
+         * @return the target rate in Hz, or 0 for one-shot commands.
+         */
+        public double getTargetRate() {
+            return targetRate;
+        }
+
+        /**
+         * Returns the rate of successful responses between the first and the
+         * last run of the command.
+         *
+         * @return the achieved rate in Hz, or 0 if there are less than two runs.
+         */
+        public double getAchievedRate() {
+            long n = samples;
+            long elapsed = lastRun - firstRun;
+            return n < 2 || elapsed <= 0 ? 0 : (n - 1) * (double) NANOS_PER_SECOND / elapsed;
+        }
+
+        /**
+         * <p>Getter for the field <code>samples</code>.</p>
+         *
+         * @return the number of successful responses.
+         */
+        public long getSamples() {
+            return samples;
+        }
+
+        /**
+         * <p>Getter for the field <code>errors</code>.</p>
+         *
+         * @return the number of error responses.
+         */
+        public long getErrors() {
+            return errors;
+        }
+
+        /**
+         * <p>Getter for the field <code>lastStatus</code>.</p>
+         *
+         * @return the status of the last response, or null if not run yet.
+         */
+        public ResponseStatus getLastStatus() {
+            return lastStatus;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s: %.2f/%.2f Hz", command.getName(), getAchievedRate(),
+                    targetRate);
+        }
+    }
+}
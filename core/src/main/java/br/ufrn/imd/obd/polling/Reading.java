@@ -0,0 +1,109 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package br.ufrn.imd.obd.polling;
+
+import java.util.Locale;
+
+import br.ufrn.imd.obd.enums.AvailableCommand;
+import br.ufrn.imd.obd.enums.Unit;
+
+/**
+ * A value read by a command, as emitted by a {@link ReadingPublisher}.
+ */
+public final class Reading {
+
+    private final AvailableCommand command;
+    private final long timestampNanos;
+    private final double value;
+    private final boolean integral;
+    private final Unit unit;
+
+    /**
+     * Default constructor.
+     *
+     * @param command        the command that read the value.
+     * @param timestampNanos when the response was received, in {@link System#nanoTime()} time.
+     * @param value          the value.
+     * @param integral       whether the value is an integer, such as an engine speed.
+     * @param unit           the unit of the value.
+     */
+    public Reading(AvailableCommand command, long timestampNanos, double value, boolean integral, Unit unit) {
+        this.command = command;
+        this.timestampNanos = timestampNanos;
+        this.value = value;
+        this.integral = integral;
+        this.unit = unit;
+    }
+
+    /**
+     * <p>Getter for the field <code>command</code>.</p>
+     *
+     * @return the command that read the value.
+     */
+    public AvailableCommand getCommand() {
+        return command;
+    }
+
+    /**
+     * <p>Getter for the field <code>timestampNanos</code>.</p>
+     *
+     * @return when the response was received, in {@link System#nanoTime()} time.
+     */
+    public long getTimestampNanos() {
+        return timestampNanos;
+    }
+
+    /**
+     * <p>Getter for the field <code>value</code>.</p>
+     *
+     * @return the value.
+     */
+    public double getValue() {
+        return value;
+    }
+
+    /**
+     * <p>getLongValue.</p>
+     *
+     * @return the value, rounded to an integer.
+     */
+    public long getLongValue() {
+        return Math.round(value);
+    }
+
+    /**
+     * <p>isIntegral.</p>
+     *
+     * @return whether the value is an integer, such as an engine speed.
+     */
+    public boolean isIntegral() {
+        return integral;
+    }
+
+    /**
+     * <p>Getter for the field <code>unit</code>.</p>
+     *
+     * @return the unit of the value.
+     */
+    public Unit getUnit() {
+        return unit;
+    }
+
+    @Override
+    public String toString() {
+        String formatted = integral
+                ? String.valueOf(getLongValue())
+                : String.format(Locale.getDefault(), "%.2f", value);
+        return command + " " + formatted + unit.getSymbol();
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package br.ufrn.imd.obd.polling;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import br.ufrn.imd.obd.commands.SampleSink;
+import br.ufrn.imd.obd.enums.AvailableCommand;
+import br.ufrn.imd.obd.enums.Unit;
+
+/**
+ * Reactive Streams {@link Publisher} of the values read by a polling session.
+ * <p>
+ * It is the {@link SampleSink} of the polled commands, so readings are
+ * emitted as soon as each response is parsed, and consumers (UI, logging,
+ * upload) no longer run on the poll loop. Each subscriber receives readings
+ * only as requested; while it has no demand, only the latest reading of each
+ * command is kept for it, so a slow subscriber gets fresh values when it
+ * catches up instead of an ever growing backlog.
+ * <pre>
+ * ReadingPublisher readings = new ReadingPublisher();
+ * scheduler.setSampleSink(readings);
+ * readings.subscribe(subscriber);
+ * try {
+ *     scheduler.run();
+ *     readings.complete();
+ * } catch (IOException e) {
+ *     readings.fail(e);
+ * }
+ * </pre>
+ */
+public class ReadingPublisher implements Publisher<Reading>, SampleSink {
+
+    private final CopyOnWriteArrayList<ReadingSubscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final AtomicLong conflated = new AtomicLong();
+    private volatile boolean done = false;
+    private volatile Throwable error = null;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void subscribe(Subscriber<? super Reading> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("Subscriber must not be null");
+        }
+        ReadingSubscription subscription = new ReadingSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        // only offered readings after onSubscribe returns, so signals never overlap it
+        if (!subscription.cancelled) {
+            subscriptions.add(subscription);
+            subscription.drain();  // completes it if the session is already over
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onSample(AvailableCommand command, long timestampNanos, long value, Unit unit) {
+        publish(new Reading(command, timestampNanos, value, true, unit));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onSample(AvailableCommand command, long timestampNanos, double value, Unit unit) {
+        publish(new Reading(command, timestampNanos, value, false, unit));
+    }
+
+    /**
+     * Emits a reading to all subscribers.
+     *
+     * @param reading the reading.
+     */
+    public void publish(Reading reading) {
+        if (done) {
+            return;
+        }
+        for (ReadingSubscription subscription : subscriptions) {
+            subscription.offer(reading);
+        }
+    }
+
+    /**
+     * Ends the stream: subscribers get the readings still kept for them, as
+     * they request them, and then {@link Subscriber#onComplete()}.
+     */
+    public void complete() {
+        terminate(null);
+    }
+
+    /**
+     * Ends the stream with an error, such as the I/O error that stopped the
+     * polling session. Subscribers get the readings still kept for them, as
+     * they request them, and then {@link Subscriber#onError(Throwable)}.
+     *
+     * @param cause the error.
+     */
+    public void fail(Throwable cause) {
+        terminate(cause);
+    }
+
+    private void terminate(Throwable cause) {
+        if (done) {
+            return;
+        }
+        error = cause;
+        done = true;
+        for (ReadingSubscription subscription : subscriptions) {
+            subscription.drain();
+        }
+    }
+
+    /**
+     * <p>getSubscriberCount.</p>
+     *
+     * @return the number of active subscribers.
+     */
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    /**
+     * Returns how many readings were replaced by a newer reading of the same
+     * command before a subscriber requested them.
+     *
+     * @return the number of readings dropped, over all subscribers.
+     */
+    public long getConflatedCount() {
+        return conflated.get();
+    }
+
+    /**
+     * Readings kept for one subscriber, emitted as it requests them. Signals
+     * to the subscriber are serialized by {@link #drain()}, whichever thread
+     * calls it.
+     */
+    private final class ReadingSubscription implements Subscription {
+        private final Subscriber<? super Reading> subscriber;
+        private final Map<AvailableCommand, Reading> pending = new LinkedHashMap<>();
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private volatile boolean cancelled = false;
+        private volatile String invalidRequest = null;
+
+        ReadingSubscription(Subscriber<? super Reading> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        void offer(Reading reading) {
+            if (cancelled) {
+                return;
+            }
+            synchronized (pending) {
+                if (pending.put(reading.getCommand(), reading) != null) {
+                    conflated.incrementAndGet();
+                }
+            }
+            drain();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                invalidRequest = "Requested " + n + " readings, must be positive (rule 3.9)";
+            } else {
+                long current;
+                long next;
+                do {
+                    current = requested.get();
+                    if (current == Long.MAX_VALUE) {
+                        break;
+                    }
+                    next = current + n < 0 ? Long.MAX_VALUE : current + n;
+                } while (!requested.compareAndSet(current, next));
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+            synchronized (pending) {
+                pending.clear();
+            }
+        }
+
+        void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                emit();
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void emit() {
+            while (!cancelled) {
+                if (invalidRequest != null) {
+                    cancel();
+                    subscriber.onError(new IllegalArgumentException(invalidRequest));
+                    return;
+                }
+
+                Reading next = null;
+                boolean empty;
+                synchronized (pending) {
+                    if (requested.get() > 0 && !pending.isEmpty()) {
+                        Iterator<Reading> it = pending.values().iterator();
+                        next = it.next();
+                        it.remove();
+                    }
+                    empty = pending.isEmpty();
+                }
+
+                if (next != null) {
+                    if (requested.get() != Long.MAX_VALUE) {
+                        requested.decrementAndGet();
+                    }
+                    try {
+                        subscriber.onNext(next);
+                    } catch (RuntimeException e) {
+                        cancel();  // a failing subscriber must not stop the poll loop
+                        return;
+                    }
+                } else if (empty && done) {
+                    cancel();
+                    Throwable cause = error;
+                    if (cause != null) {
+                        subscriber.onError(cause);
+                    } else {
+                        subscriber.onComplete();
+                    }
+                    return;
+                } else {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,353 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package br.ufrn.imd.obd.polling;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import br.ufrn.imd.obd.commands.ObdCommand;
+import br.ufrn.imd.obd.commands.protocol.AdaptiveTimingCommand;
+import br.ufrn.imd.obd.commands.protocol.TimeoutCommand;
+import br.ufrn.imd.obd.connection.ObdConnection;
+import br.ufrn.imd.obd.enums.AdaptiveTiming;
+import br.ufrn.imd.obd.enums.Phase;
+import br.ufrn.imd.obd.enums.ResponseStatus;
+
+/**
+ * Keeps the ELM327 timeout (AT ST) just above the response time of the ECUs.
+ * <p>
+ * The response time of each successful OBD request run on the connection is
+ * recorded in a sliding window. Once enough samples are known, the timeout is
+ * set to the 99th percentile plus a safety margin, and the adaptive timing mode
+ * is chosen from the spread of the samples: AT 2 (aggressive) when responses
+ * are steady, AT 1 otherwise.
+ * <p>
+ * An ECU that answers later than a lowered timeout gets "NO DATA" instead, so
+ * a "NO DATA" seen while the timeout is below the adapter default is taken as
+ * a cut off answer: the default timeout and AT 1 are restored, the samples are
+ * measured again, and the timeout never goes back down to the value that cut
+ * the answer off.
+ * <p>
+ * The response time is measured up to the first byte received, so the adapter
+ * echo must be off ("AT E0", see
+ * {@link br.ufrn.imd.obd.commands.protocol.EchoOffCommand}); responses that
+ * start with the echo of their request are not recorded.
+ * <p>
+ * Typical usage, after each command run on the connection:
+ * <pre>
+ * command.tryRun(connection);
+ * tuner.record(command);
+ * tuner.tuneIfNeeded();
+ * </pre>
+ */
+public class TimeoutTuner {
+
+    /**
+     * The ELM327 timeout is set in steps of 4 ms.
+     */
+    private static final int TIMEOUT_STEP_MS = 4;
+    private static final int MAX_TIMEOUT_VALUE = 0xFF;
+    private static final int DEFAULT_WINDOW = 128;
+    /**
+     * The ELM327 default timeout (AT ST 32, 200 ms).
+     */
+    private static final int DEFAULT_TIMEOUT_VALUE = 0x32;
+
+    private final ObdConnection connection;
+    private final long[] window;
+    private int count = 0;
+    private int next = 0;
+    private int samplesSinceTune = 0;
+    private boolean measuring = true;
+    private boolean backOffPending = false;
+    private int floorValue = 1;
+
+    private int minSamples = 32;
+    private int retuneInterval = 64;
+    private int minTimeoutMs = 20;
+    private int maxTimeoutMs = MAX_TIMEOUT_VALUE * TIMEOUT_STEP_MS;
+    private double margin = 1.25;
+    private int guardMs = 8;
+
+    private int currentValue = -1;
+    private AdaptiveTiming currentMode = null;
+
+    /**
+     * Default constructor.
+     *
+     * @param connection the {@link ObdConnection} whose timeout is tuned.
+     */
+    public TimeoutTuner(ObdConnection connection) {
+        this(connection, DEFAULT_WINDOW);
+    }
+
+    /**
+     * <p>Constructor for TimeoutTuner.</p>
+     *
+     * @param connection the {@link ObdConnection} whose timeout is tuned.
+     * @param window     how many of the latest samples are considered.
+     */
+    public TimeoutTuner(ObdConnection connection, int window) {
+        if (window <= 0) {
+            throw new IllegalArgumentException("Window must be positive");
+        }
+        this.connection = connection;
+        this.window = new long[window];
+    }
+
+    /**
+     * Records the response time of a command just run on the connection. Only
+     * successful OBD requests are considered, as AT commands are answered by
+     * the adapter itself, and runs that didn't reach the adapter, such as a
+     * {@link br.ufrn.imd.obd.commands.PersistentCommand} answered from its
+     * cache, are skipped.
+     * <p>
+     * A "NO DATA" while the timeout is lowered makes the next
+     * {@link #tuneIfNeeded()} raise it back.
+     *
+     * @param command the command that was run.
+     * @return true if the command got "NO DATA" while the timeout was lowered,
+     * so the vehicle may have answered too late rather than not supporting it.
+     */
+    public boolean record(ObdCommand command) {
+        if ("AT".equals(command.getCommandMode()) || command.getPhaseNanos(Phase.TOTAL) < 0) {
+            return false;
+        }
+        if (command.getStatus() == ResponseStatus.NO_DATA) {
+            synchronized (this) {
+                if (backOffPending || currentValue >= 0 && currentValue < DEFAULT_TIMEOUT_VALUE) {
+                    backOffPending = true;
+                    return true;
+                }
+            }
+            return false;
+        }
+        if (command.getStatus() != ResponseStatus.OK || startsWithEcho(command)) {
+            return false;
+        }
+        long latency = connection.getLastResponseLatencyNanos();
+        if (latency >= 0) {
+            record(latency);
+        }
+        return false;
+    }
+
+    /**
+     * Tells if the raw data of a command starts with its request, as it does
+     * when the adapter echo is on.
+     */
+    private static boolean startsWithEcho(ObdCommand command) {
+        String request = command.getCommand();
+        String result = command.getResult();
+        if (result == null) {
+            return false;
+        }
+        int at = 0;
+        for (int i = 0; i < request.length(); i++) {
+            char c = request.charAt(i);
+            if (c == ' ') {
+                continue;
+            }
+            if (at == result.length() || result.charAt(at++) != c) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Records a response time.
+     *
+     * @param latencyNanos the time between a request and its first response byte.
+     */
+    public synchronized void record(long latencyNanos) {
+        window[next] = latencyNanos;
+        next = (next + 1) % window.length;
+        if (count < window.length) {
+            count++;
+        }
+        samplesSinceTune++;
+    }
+
+    /**
+     * Returns a percentile of the recorded response times.
+     *
+     * @param percentile a value between 0 and 100.
+     * @return the response time in nanoseconds, or -1 if nothing was recorded.
+     */
+    public synchronized long getPercentile(double percentile) {
+        if (count == 0) {
+            return -1;
+        }
+        long[] sorted = Arrays.copyOf(window, count);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100 * count) - 1;
+        return sorted[Math.max(0, Math.min(count - 1, index))];
+    }
+
+    /**
+     * Raises the timeout back after a cut off answer, or else tunes the adapter
+     * if enough samples were recorded since the last time.
+     *
+     * @return true if any setting was sent to the adapter.
+     * @throws java.io.IOException            if any.
+     * @throws java.lang.InterruptedException if any.
+     */
+    public boolean tuneIfNeeded() throws IOException, InterruptedException {
+        boolean backingOff;
+        synchronized (this) {
+            backingOff = backOffPending;
+            if (backingOff) {
+                // the lowered timeout cut an answer off, so it is never used again
+                floorValue = Math.max(floorValue, Math.min(currentValue + 1, DEFAULT_TIMEOUT_VALUE));
+                backOffPending = false;
+                measuring = true;
+                count = 0;
+                next = 0;
+                samplesSinceTune = 0;
+            } else {
+                boolean due = measuring ? count >= minSamples : samplesSinceTune >= retuneInterval;
+                if (!due) {
+                    return false;
+                }
+            }
+        }
+        return backingOff ? restoreDefaults() : tune();
+    }
+
+    /**
+     * Restores the default timeout and AT 1, for the samples to be measured again.
+     */
+    private boolean restoreDefaults() throws IOException, InterruptedException {
+        if (currentMode == AdaptiveTiming.ADAPTIVE_TIMING_AUTO_2) {
+            new AdaptiveTimingCommand(AdaptiveTiming.ADAPTIVE_TIMING_AUTO_1).run(connection);
+            currentMode = AdaptiveTiming.ADAPTIVE_TIMING_AUTO_1;
+        }
+        new TimeoutCommand(DEFAULT_TIMEOUT_VALUE).run(connection);
+        currentValue = DEFAULT_TIMEOUT_VALUE;
+        return true;
+    }
+
+    /**
+     * Sets the timeout and adaptive timing mode from the recorded samples.
+     * Settings equal to the current ones aren't sent again.
+     *
+     * @return true if any setting was sent to the adapter.
+     * @throws java.io.IOException            if any.
+     * @throws java.lang.InterruptedException if any.
+     */
+    public boolean tune() throws IOException, InterruptedException {
+        int value;
+        AdaptiveTiming mode;
+        synchronized (this) {
+            if (count < minSamples) {
+                return false;
+            }
+            samplesSinceTune = 0;
+            measuring = false;
+            value = getTimeoutValue();
+            mode = getAdaptiveTiming();
+        }
+
+        boolean changed = false;
+        if (mode != currentMode) {
+            new AdaptiveTimingCommand(mode).run(connection);
+            currentMode = mode;
+            changed = true;
+        }
+        if (value != currentValue) {
+            new TimeoutCommand(value).run(connection);
+            currentValue = value;
+            changed = true;
+        }
+        return changed;
+    }
+
+    /**
+     * Computes the AT ST value: the 99th percentile plus the margin, in steps of
+     * 4 ms, and above any value that cut an answer off.
+     *
+     * @return a value between 1 and 255.
+     */
+    public synchronized int getTimeoutValue() {
+        double p99 = TimeUnit.NANOSECONDS.toMicros(getPercentile(99)) / 1000.0;
+        double target = Math.max(minTimeoutMs, Math.min(maxTimeoutMs, p99 * margin + guardMs));
+        int value = (int) Math.ceil(target / TIMEOUT_STEP_MS);
+        return Math.max(floorValue, Math.min(MAX_TIMEOUT_VALUE, value));
+    }
+
+    /**
+     * Chooses the adaptive timing mode from the spread of the samples.
+     *
+     * @return AT 2 if the 99th percentile is within 50% of the median, AT 1 otherwise.
+     */
+    public synchronized AdaptiveTiming getAdaptiveTiming() {
+        long p50 = getPercentile(50);
+        long p99 = getPercentile(99);
+        return p99 <= p50 * 3 / 2 ? AdaptiveTiming.ADAPTIVE_TIMING_AUTO_2 : AdaptiveTiming.ADAPTIVE_TIMING_AUTO_1;
+    }
+
+    /**
+     * <p>Getter for the current timeout.</p>
+     *
+     * @return the last timeout sent in milliseconds, or -1 if not tuned yet.
+     */
+    public int getCurrentTimeoutMs() {
+        return currentValue < 0 ? -1 : currentValue * TIMEOUT_STEP_MS;
+    }
+
+    /**
+     * <p>Getter for the field <code>currentMode</code>.</p>
+     *
+     * @return the last adaptive timing mode sent, or null if not tuned yet.
+     */
+    public AdaptiveTiming getCurrentMode() {
+        return currentMode;
+    }
+
+    /**
+     * Sets how many samples are needed before the first tuning, and between
+     * two tunings. By default 32 and 64.
+     *
+     * @param minSamples     samples needed before the first tuning.
+     * @param retuneInterval samples needed between two tunings.
+     */
+    public synchronized void setSampling(int minSamples, int retuneInterval) {
+        this.minSamples = Math.max(1, minSamples);
+        this.retuneInterval = Math.max(1, retuneInterval);
+    }
+
+    /**
+     * Sets the range the timeout is kept in. By default 20 to 1020 ms.
+     *
+     * @param minTimeoutMs the lowest timeout in milliseconds.
+     * @param maxTimeoutMs the highest timeout in milliseconds.
+     */
+    public synchronized void setTimeoutRange(int minTimeoutMs, int maxTimeoutMs) {
+        this.minTimeoutMs = Math.max(TIMEOUT_STEP_MS, minTimeoutMs);
+        this.maxTimeoutMs = Math.min(MAX_TIMEOUT_VALUE * TIMEOUT_STEP_MS, Math.max(this.minTimeoutMs, maxTimeoutMs));
+    }
+
+    /**
+     * Sets the safety margin above the 99th percentile. By default 1.25 times
+     * the percentile plus 8 ms.
+     *
+     * @param factor  multiplier applied to the percentile, at least 1.
+     * @param guardMs milliseconds added after the multiplier.
+     */
+    public synchronized void setMargin(double factor, int guardMs) {
+        this.margin = Math.max(1, factor);
+        this.guardMs = Math.max(0, guardMs);
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package br.ufrn.imd.obd.simulator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/**
+ * Serves {@link Elm327Simulator}s on a local TCP port, the way Wi-Fi adapters
+ * do. Each client gets its own simulator, copied from the given one, so the
+ * adapter settings of a client don't affect the others.
+ */
+public class Elm327Server implements Closeable {
+
+    private final Elm327Simulator prototype;
+    private final ServerSocket serverSocket;
+
+    /**
+     * Default constructor.
+     *
+     * @param prototype the simulator copied for each client.
+     * @param port      the local port, or 0 for any free port.
+     * @throws java.io.IOException if the port can't be bound.
+     */
+    public Elm327Server(Elm327Simulator prototype, int port) throws IOException {
+        this.prototype = prototype;
+        this.serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                accept();
+            }
+        }, "elm327-server-" + getPort());
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * <p>getPort.</p>
+     *
+     * @return the local port clients connect to.
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Stops accepting clients. Clients already connected are served until they
+     * disconnect.
+     *
+     * @throws java.io.IOException if any.
+     */
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Elm327Simulator simulator = new Elm327Simulator(prototype);
+                pump(socket.getInputStream(), simulator.getOutputStream(), socket, simulator);
+                pump(simulator.getInputStream(), socket.getOutputStream(), socket, simulator);
+            } catch (IOException e) {
+                // closed
+            }
+        }
+    }
+
+    private static void pump(final InputStream in, final OutputStream out, final Socket socket,
+                             final Elm327Simulator simulator) {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                byte[] buf = new byte[512];
+                try {
+                    int n;
+                    while ((n = in.read(buf)) >= 0) {
+                        out.write(buf, 0, n);
+                        out.flush();
+                    }
+                } catch (IOException e) {
+                    // client gone
+                } finally {
+                    simulator.close();
+                    try {
+                        socket.close();
+                    } catch (IOException e) {
+                        // already closed
+                    }
+                }
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+    }
+}
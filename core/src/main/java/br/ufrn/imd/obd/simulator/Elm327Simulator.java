@@ -0,0 +1,755 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package br.ufrn.imd.obd.simulator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import br.ufrn.imd.obd.enums.AdaptiveTiming;
+import br.ufrn.imd.obd.enums.ObdProtocols;
+
+/**
+ * In-process ELM327 adapter answering from a {@link VehicleModel}.
+ * <p>
+ * The simulator implements the settings the library sends (E, L, S, H, ST, AT,
+ * SP, DP, DPN, among others), and answers OBD requests in modes 01, 03, 04,
+ * 07, 09 and 0A with the framing of the vehicle protocol: ISO-TP multi-frame
+ * responses on CAN, one line per message on the older buses.
+ * <p>
+ * Its streams behave like the adapter ones: a response becomes readable only
+ * after the bus latency of the vehicle protocol, plus the time the ELM327
+ * waits for further ECUs unless the request ends with a response count.
+ * Unanswered requests, and requests the vehicle answers later than the AT ST
+ * timeout, take the whole timeout before "NO DATA". Writing
+ * while a response is pending interrupts it with "STOPPED", like the adapter.
+ * <pre>
+ * Elm327Simulator elm = new Elm327Simulator(VehicleModel.idlingCar());
+ * new RPMCommand().run(elm.getInputStream(), elm.getOutputStream());
+ * </pre>
+ * {@link #respond(String)} gives the response text without any delay, and
+ * {@link Elm327Server} serves simulators over TCP, like Wi-Fi adapters.
+ */
+public class Elm327Simulator implements Closeable {
+
+    /**
+     * Version string answered to AT Z and AT I.
+     */
+    public static final String VERSION = "ELM327 v1.5";
+
+    private static final String PROTOCOL_PREFIX = "Select Protocol - ";
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+    private static final int DEFAULT_TIMEOUT = 0x32;
+    private static final int TIMEOUT_STEP_MS = 4;
+    private static final int CAN_FRAME_BYTES = 7;
+    private static final int SEARCH_FACTOR = 10;
+
+    private final VehicleModel model;
+    private final long[] latencyNanos = new long[ObdProtocols.values().length];
+
+    private boolean echo;
+    private boolean linefeeds;
+    private boolean spaces;
+    private boolean headers;
+    private int timeout;
+    private AdaptiveTiming adaptiveTiming;
+    private ObdProtocols protocol;
+    private ObdProtocols connected;
+    private String lastRequest;
+    private long lastDelayNanos = 0;
+
+    private final StringBuilder request = new StringBuilder();
+    private final Deque<Chunk> replies = new ArrayDeque<>();
+    private Chunk pending = null;
+    private boolean closed = false;
+    private final InputStream inputStream = new ResponseStream();
+    private final OutputStream outputStream = new RequestStream();
+
+    /**
+     * Default constructor. Latencies are typical of each bus.
+     *
+     * @param model the vehicle answering the requests.
+     */
+    public Elm327Simulator(VehicleModel model) {
+        this.model = model;
+        setLatency(ObdProtocols.SAE_J1850_PWM, 25, TimeUnit.MILLISECONDS);
+        setLatency(ObdProtocols.SAE_J1850_VPW, 30, TimeUnit.MILLISECONDS);
+        setLatency(ObdProtocols.ISO_9141_2, 50, TimeUnit.MILLISECONDS);
+        setLatency(ObdProtocols.ISO_14230_4_KWP, 50, TimeUnit.MILLISECONDS);
+        setLatency(ObdProtocols.ISO_14230_4_KWP_FAST, 40, TimeUnit.MILLISECONDS);
+        setLatency(ObdProtocols.ISO_15765_4_CAN, 8, TimeUnit.MILLISECONDS);
+        setLatency(ObdProtocols.ISO_15765_4_CAN_B, 8, TimeUnit.MILLISECONDS);
+        setLatency(ObdProtocols.ISO_15765_4_CAN_C, 12, TimeUnit.MILLISECONDS);
+        setLatency(ObdProtocols.ISO_15765_4_CAN_D, 12, TimeUnit.MILLISECONDS);
+        setLatency(ObdProtocols.SAE_J1939_CAN, 12, TimeUnit.MILLISECONDS);
+        reset();
+    }
+
+    /**
+     * Copy constructor. The new simulator shares the vehicle and has the same
+     * latencies, with the adapter settings back to their defaults.
+     *
+     * @param other a {@link Elm327Simulator} object.
+     */
+    public Elm327Simulator(Elm327Simulator other) {
+        this.model = other.model;
+        synchronized (other) {
+            System.arraycopy(other.latencyNanos, 0, latencyNanos, 0, latencyNanos.length);
+        }
+        reset();
+    }
+
+    /**
+     * Sets the time the vehicle takes to answer a request on a protocol.
+     *
+     * @param protocol the bus protocol.
+     * @param latency  the time between the request and the response.
+     * @param unit     the unit of the latency.
+     */
+    public synchronized void setLatency(ObdProtocols protocol, long latency, TimeUnit unit) {
+        latencyNanos[protocol.ordinal()] = unit.toNanos(latency);
+    }
+
+    /**
+     * Sets the same latency for all protocols. A latency of 0 makes responses
+     * readable right away, as long as they are answered.
+     *
+     * @param latency the time between a request and its response.
+     * @param unit    the unit of the latency.
+     */
+    public synchronized void setLatency(long latency, TimeUnit unit) {
+        for (ObdProtocols p : ObdProtocols.values()) {
+            setLatency(p, latency, unit);
+        }
+    }
+
+    /**
+     * <p>Getter for the field <code>model</code>.</p>
+     *
+     * @return the vehicle answering the requests.
+     */
+    public VehicleModel getModel() {
+        return model;
+    }
+
+    /**
+     * Returns the stream the responses are read from.
+     *
+     * @return the adapter {@link java.io.InputStream}.
+     */
+    public InputStream getInputStream() {
+        return inputStream;
+    }
+
+    /**
+     * Returns the stream the requests are written to.
+     *
+     * @return the adapter {@link java.io.OutputStream}.
+     */
+    public OutputStream getOutputStream() {
+        return outputStream;
+    }
+
+    /**
+     * Makes reads return the end of the stream and writes fail.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+
+    /**
+     * Answers a request as the adapter would, without any delay.
+     *
+     * @param line the request, without the trailing carriage return.
+     * @return the whole adapter output, echo and '&gt;' prompt included.
+     */
+    public synchronized String respond(String line) {
+        String eol = linefeeds ? "\r\n" : "\r";
+        StringBuilder sb = new StringBuilder();
+        if (echo) {
+            sb.append(line).append(eol);
+        }
+
+        String command = normalize(line);
+        if (command.isEmpty() && lastRequest != null) {
+            command = lastRequest;  // a bare carriage return repeats the last request
+        }
+
+        List<String> lines = new ArrayList<>();
+        lastDelayNanos = 0;
+        if (command.startsWith("AT")) {
+            atCommand(command.substring(2), lines);
+        } else {
+            obdRequest(command, lines);
+            lastRequest = command;
+        }
+
+        for (String l : lines) {
+            sb.append(l).append(eol);
+        }
+        return sb.append(eol).append('>').toString();
+    }
+
+    /**
+     * Returns how long the response of the last {@link #respond(String)} call
+     * takes on the adapter.
+     *
+     * @return the delay in nanoseconds.
+     */
+    public synchronized long getLastDelayNanos() {
+        return lastDelayNanos;
+    }
+
+    private void reset() {
+        echo = true;
+        linefeeds = true;
+        spaces = true;
+        headers = false;
+        timeout = DEFAULT_TIMEOUT;
+        adaptiveTiming = AdaptiveTiming.ADAPTIVE_TIMING_AUTO_1;
+        protocol = ObdProtocols.AUTO;
+        connected = null;
+        lastRequest = null;
+    }
+
+    private static String normalize(String line) {
+        StringBuilder sb = new StringBuilder(line.length());
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c > ' ') {
+                sb.append(Character.toUpperCase(c));
+            }
+        }
+        return sb.toString();
+    }
+
+    private void atCommand(String command, List<String> lines) {
+        switch (command) {
+            case "Z":
+            case "WS":
+                reset();
+                lines.add("");
+                lines.add(VERSION);
+                return;
+            case "D":
+                reset();
+                break;
+            case "I":
+                lines.add(VERSION);
+                return;
+            case "@1":
+                lines.add("OBDII to RS232 Interpreter");
+                return;
+            case "IGN":
+                lines.add("ON");
+                return;
+            case "RV":
+                lines.add("14.2V");
+                return;
+            case "E0":
+            case "E1":
+                echo = command.charAt(1) == '1';
+                break;
+            case "L0":
+            case "L1":
+                linefeeds = command.charAt(1) == '1';
+                break;
+            case "S0":
+            case "S1":
+                spaces = command.charAt(1) == '1';
+                break;
+            case "H0":
+            case "H1":
+                headers = command.charAt(1) == '1';
+                break;
+            case "AT0":
+            case "AT1":
+            case "AT2":
+                adaptiveTiming = AdaptiveTiming.values()[command.charAt(2) - '0'];
+                break;
+            case "PC":
+                connected = null;
+                break;
+            case "DP":
+                lines.add(describeProtocol());
+                return;
+            case "DPN":
+                lines.add(describeProtocolNumber());
+                return;
+            default:
+                if (!setParameter(command)) {
+                    lines.add("?");
+                    return;
+                }
+        }
+        lines.add("OK");
+    }
+
+    private boolean setParameter(String command) {
+        if (command.length() == 4 && command.startsWith("ST") && isHex(command, 2)) {
+            int value = Integer.parseInt(command.substring(2), 16);
+            timeout = value == 0 ? DEFAULT_TIMEOUT : value;
+            return true;
+        }
+        if (command.startsWith("SP") || command.startsWith("TP")) {
+            String value = command.substring(2);
+            if (value.length() == 2 && value.charAt(0) == 'A') {
+                value = value.substring(1);  // automatic, trying this one first
+            }
+            int number = value.length() == 1 ? Character.digit(value.charAt(0), 16) : -1;
+            if (number < 0 || number >= ObdProtocols.values().length) {
+                return false;
+            }
+            protocol = ObdProtocols.values()[number];
+            connected = null;
+            return true;
+        }
+        return false;
+    }
+
+    private String describeProtocol() {
+        ObdProtocols p = connected != null ? connected : protocol;
+        String name = p == ObdProtocols.AUTO ? "" : p.getValue().getValue().replace(PROTOCOL_PREFIX, "");
+        if (protocol != ObdProtocols.AUTO) {
+            return name;
+        }
+        return connected == null ? "AUTO" : "AUTO, " + name;
+    }
+
+    private String describeProtocolNumber() {
+        ObdProtocols p = connected != null ? connected : protocol;
+        String number = String.valueOf(HEX[p.ordinal()]);
+        return protocol == ObdProtocols.AUTO && connected != null ? "A" + number : number;
+    }
+
+    private long timeoutNanos() {
+        return TimeUnit.MILLISECONDS.toNanos((long) timeout * TIMEOUT_STEP_MS);
+    }
+
+    private void obdRequest(String command, List<String> lines) {
+        if (command.length() < 2 || !isHex(command, 0)) {
+            lines.add("?");
+            return;
+        }
+
+        boolean counted = command.length() % 2 == 1;
+        if (counted) {
+            // a trailing digit tells how many responses to wait for
+            command = command.substring(0, command.length() - 1);
+        }
+        int[] data = new int[command.length() / 2];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = Integer.parseInt(command.substring(2 * i, 2 * i + 2), 16);
+        }
+
+        ObdProtocols vehicle = model.getProtocol();
+        long latency = latencyNanos[vehicle.ordinal()];
+        if (connected == null) {
+            if (protocol != ObdProtocols.AUTO && protocol != vehicle) {
+                lines.add("UNABLE TO CONNECT");
+                lastDelayNanos = timeoutNanos();
+                return;
+            }
+            if (protocol == ObdProtocols.AUTO) {
+                lines.add("SEARCHING...");
+                lastDelayNanos += SEARCH_FACTOR * latency;
+            }
+            connected = vehicle;
+        }
+
+        if (latency - timeoutNanos() > 0) {
+            // the vehicle answers after the adapter gave up
+            lines.add("NO DATA");
+            lastDelayNanos += timeoutNanos();
+            return;
+        }
+
+        boolean can = isCan(connected);
+        List<VehicleModel> ecus = model.getModules();
+        ecus.add(0, model);
+        int answered = lines.size();
+        for (int ecu = 0; ecu < ecus.size(); ecu++) {
+            for (int[] message : answer(ecus.get(ecu), data, can)) {
+                if (can) {
+                    formatCan(message, ecu, lines);
+                } else {
+                    lines.add(formatLegacy(message, ecu));
+                }
+            }
+        }
+        if (lines.size() == answered) {
+            lines.add("NO DATA");
+            lastDelayNanos += timeoutNanos();
+            return;
+        }
+        lastDelayNanos += latency + (counted ? 0 : idleWait(latency));
+    }
+
+    /**
+     * Time the adapter waits for more ECUs after the last response.
+     */
+    private long idleWait(long latency) {
+        switch (adaptiveTiming) {
+            case ADAPTIVE_TIMING_OFF:
+                return timeoutNanos();
+            case ADAPTIVE_TIMING_AUTO_2:
+                return Math.min(timeoutNanos(), latency);
+            default:
+                return Math.min(timeoutNanos(), 2 * latency);
+        }
+    }
+
+    private List<int[]> answer(VehicleModel ecu, int[] data, boolean can) {
+        List<int[]> messages = new ArrayList<>();
+        int mode = data[0];
+        switch (mode) {
+            case 0x01:
+                answerCurrentData(ecu, data, can, messages);
+                break;
+            case 0x03:
+            case 0x07:
+            case 0x0A:
+                answerTroubleCodes(ecu, mode, can, messages);
+                break;
+            case 0x04:
+                ecu.clearTroubleCodes();
+                messages.add(new int[]{0x44});
+                break;
+            case 0x09:
+                answerVehicleInformation(ecu, data, can, messages);
+                break;
+            default:
+                break;
+        }
+        return messages;
+    }
+
+    private void answerCurrentData(VehicleModel ecu, int[] data, boolean can, List<int[]> messages) {
+        // only CAN ECUs answer several PIDs at once
+        int last = can ? Math.min(data.length, 7) : Math.min(data.length, 2);
+        List<Integer> reply = new ArrayList<>();
+        reply.add(0x41);
+        for (int i = 1; i < last; i++) {
+            int[] bytes = ecu.getPid(data[i]);
+            if (bytes != null) {
+                reply.add(data[i]);
+                for (int b : bytes) {
+                    reply.add(b);
+                }
+            }
+        }
+        if (reply.size() > 1) {
+            messages.add(toArray(reply));
+        }
+    }
+
+    private void answerTroubleCodes(VehicleModel ecu, int mode, boolean can, List<int[]> messages) {
+        List<String> codes = ecu.getTroubleCodes(mode);
+        if (can) {
+            int[] reply = new int[2 + 2 * codes.size()];
+            reply[0] = mode + 0x40;
+            reply[1] = codes.size();
+            for (int i = 0; i < codes.size(); i++) {
+                encodeTroubleCode(codes.get(i), reply, 2 + 2 * i);
+            }
+            messages.add(reply);
+            return;
+        }
+
+        // three codes per message, padded with zeros
+        int i = 0;
+        do {
+            int[] reply = new int[7];
+            reply[0] = mode + 0x40;
+            for (int j = 0; j < 3 && i < codes.size(); j++, i++) {
+                encodeTroubleCode(codes.get(i), reply, 1 + 2 * j);
+            }
+            messages.add(reply);
+        } while (i < codes.size());
+    }
+
+    private static void encodeTroubleCode(String code, int[] dest, int offset) {
+        int value = "PCBU".indexOf(code.charAt(0)) << 14 | Integer.parseInt(code.substring(1), 16);
+        dest[offset] = value >> 8;
+        dest[offset + 1] = value & 0xFF;
+    }
+
+    private void answerVehicleInformation(VehicleModel ecu, int[] data, boolean can, List<int[]> messages) {
+        String vin = ecu.getVin();
+        if (data.length < 2 || vin.isEmpty()) {
+            return;
+        }
+        if (data[1] == 0x00) {
+            messages.add(new int[]{0x49, 0x00, 0x40, 0x00, 0x00, 0x00});  // PID 02
+        } else if (data[1] == 0x02) {
+            byte[] chars = vin.getBytes(StandardCharsets.US_ASCII);
+            if (can) {
+                int[] reply = new int[3 + chars.length];
+                reply[0] = 0x49;
+                reply[1] = 0x02;
+                reply[2] = 0x01;
+                for (int i = 0; i < chars.length; i++) {
+                    reply[3 + i] = chars[i];
+                }
+                messages.add(reply);
+                return;
+            }
+
+            // five messages of four bytes, the first one padded with zeros
+            int padding = 20 - chars.length;
+            for (int n = 0; n < 5; n++) {
+                int[] reply = {0x49, 0x02, n + 1, 0, 0, 0, 0};
+                for (int j = 0; j < 4; j++) {
+                    int k = 4 * n + j - padding;
+                    reply[3 + j] = k >= 0 && k < chars.length ? chars[k] : 0;
+                }
+                messages.add(reply);
+            }
+        }
+    }
+
+    private void formatCan(int[] message, int ecu, List<String> lines) {
+        if (message.length <= CAN_FRAME_BYTES) {
+            StringBuilder sb = new StringBuilder();
+            if (headers) {
+                appendByte(sb.append(canHeader(ecu)), message.length);
+            }
+            lines.add(appendBytes(sb, message, 0, message.length).toString());
+            return;
+        }
+
+        if (!headers) {
+            lines.add(String.format("%03X", message.length));
+        }
+        int index = 0;
+        for (int offset = 0; offset < message.length; index++) {
+            int end = Math.min(message.length, offset + (index == 0 ? CAN_FRAME_BYTES - 1 : CAN_FRAME_BYTES));
+            StringBuilder sb = new StringBuilder();
+            if (headers) {
+                sb.append(canHeader(ecu));
+                if (index == 0) {
+                    appendByte(sb, 0x10 | message.length >> 8);
+                    appendByte(sb, message.length & 0xFF);
+                } else {
+                    appendByte(sb, 0x20 | index & 0xF);
+                }
+            } else {
+                sb.append(HEX[index & 0xF]).append(spaces ? ": " : ":");
+            }
+            lines.add(appendBytes(sb, message, offset, end).toString());
+            offset = end;
+        }
+    }
+
+    private String formatLegacy(int[] message, int ecu) {
+        StringBuilder sb = new StringBuilder();
+        if (!headers) {
+            return appendBytes(sb, message, 0, message.length).toString();
+        }
+
+        int[] header;
+        if (connected == ObdProtocols.SAE_J1850_PWM) {
+            header = new int[]{0x41, 0x6B, 0x10 + 8 * ecu};
+        } else if (connected == ObdProtocols.ISO_14230_4_KWP || connected == ObdProtocols.ISO_14230_4_KWP_FAST) {
+            header = new int[]{0x80 | message.length, 0xF1, 0x10 + 8 * ecu};
+        } else {
+            header = new int[]{0x48, 0x6B, 0x10 + 8 * ecu};
+        }
+        int checksum = 0;
+        for (int b : header) {
+            checksum += b;
+        }
+        for (int b : message) {
+            checksum += b;
+        }
+        appendBytes(sb, header, 0, header.length);
+        appendBytes(sb, message, 0, message.length);
+        appendByte(sb, checksum & 0xFF);
+        return sb.toString();
+    }
+
+    private String canHeader(int ecu) {
+        if (connected == ObdProtocols.ISO_15765_4_CAN || connected == ObdProtocols.ISO_15765_4_CAN_C) {
+            return Integer.toHexString(0x7E8 + ecu).toUpperCase(Locale.US);
+        }
+        String source = String.format(Locale.US, "%02X", 0x10 + 8 * ecu);
+        return spaces ? "18 DA F1 " + source : "18DAF1" + source;
+    }
+
+    private StringBuilder appendBytes(StringBuilder sb, int[] bytes, int from, int to) {
+        for (int i = from; i < to; i++) {
+            appendByte(sb, bytes[i]);
+        }
+        return sb;
+    }
+
+    private void appendByte(StringBuilder sb, int b) {
+        if (spaces && sb.length() > 0 && sb.charAt(sb.length() - 1) != ' ') {
+            sb.append(' ');
+        }
+        sb.append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+    }
+
+    private static boolean isCan(ObdProtocols p) {
+        return p.ordinal() >= ObdProtocols.ISO_15765_4_CAN.ordinal();
+    }
+
+    private static boolean isHex(String s, int from) {
+        for (int i = from; i < s.length(); i++) {
+            if (Character.digit(s.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+
+    private void received(int b) throws IOException {
+        if (closed) {
+            throw new IOException("Simulator closed");
+        }
+        long now = System.nanoTime();
+        if (pending != null && pending.readyAt - now > 0) {
+            // any character interrupts the adapter while it waits for the vehicle
+            replies.remove(pending);
+            pending = null;
+            String eol = linefeeds ? "\r\n" : "\r";
+            replies.add(new Chunk("STOPPED" + eol + eol + ">", now));
+            notifyAll();
+            return;
+        }
+
+        if (b == '\r') {
+            String reply = respond(request.toString());
+            request.setLength(0);
+            pending = new Chunk(reply, now + lastDelayNanos);
+            replies.add(pending);
+            notifyAll();
+        } else if (b != '\n') {
+            request.append((char) b);
+        }
+    }
+
+    /**
+     * A response and the time it becomes readable.
+     */
+    private static final class Chunk {
+        private final byte[] data;
+        private final long readyAt;
+        private int pos = 0;
+
+        Chunk(String text, long readyAt) {
+            this.data = text.getBytes(StandardCharsets.US_ASCII);
+            this.readyAt = readyAt;
+        }
+    }
+
+    private final class RequestStream extends OutputStream {
+        @Override
+        public void write(int b) throws IOException {
+            synchronized (Elm327Simulator.this) {
+                received(b & 0xFF);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            synchronized (Elm327Simulator.this) {
+                for (int i = off; i < off + len; i++) {
+                    received(b[i] & 0xFF);
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            Elm327Simulator.this.close();
+        }
+    }
+
+    private final class ResponseStream extends InputStream {
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            synchronized (Elm327Simulator.this) {
+                try {
+                    while (true) {
+                        if (closed) {
+                            return -1;
+                        }
+                        Chunk head = replies.peek();
+                        long wait = head == null ? 0 : head.readyAt - System.nanoTime();
+                        if (head == null) {
+                            Elm327Simulator.this.wait();
+                        } else if (wait > 0) {
+                            TimeUnit.NANOSECONDS.timedWait(Elm327Simulator.this, wait);
+                        } else {
+                            int n = Math.min(len, head.data.length - head.pos);
+                            System.arraycopy(head.data, head.pos, b, off, n);
+                            head.pos += n;
+                            if (head.pos == head.data.length) {
+                                replies.poll();
+                                if (head == pending) {
+                                    pending = null;
+                                }
+                            }
+                            return n;
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+            }
+        }
+
+        @Override
+        public int available() {
+            synchronized (Elm327Simulator.this) {
+                Chunk head = replies.peek();
+                return head == null || head.readyAt - System.nanoTime() > 0 ? 0 : head.data.length - head.pos;
+            }
+        }
+
+        @Override
+        public void close() {
+            Elm327Simulator.this.close();
+        }
+    }
+}
@@ -0,0 +1,285 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package br.ufrn.imd.obd.simulator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import br.ufrn.imd.obd.enums.ObdProtocols;
+
+/**
+ * The vehicle answering the requests of an {@link Elm327Simulator}: its bus
+ * protocol, the raw data bytes of its Mode 01 PIDs, its trouble codes and its
+ * VIN.
+ * <p>
+ * Values are stored as the ECU would send them, so any reply can be set with
+ * {@link #setPid(int, int...)}. The support bitmaps (PIDs 00, 20, 40...) are
+ * derived from the PIDs that are set. This class is thread-safe, so the model
+ * can be changed while simulators answer from it.
+ * <p>
+ * The model is the engine ECU; other ECUs of the vehicle, such as the
+ * transmission, are added with {@link #addModule(VehicleModel)} and answer
+ * the same requests.
+ */
+public class VehicleModel {
+
+    private static final int PID_COUNT = 0x100;
+
+    private final int[][] pids = new int[PID_COUNT][];
+    private final List<String> troubleCodes = new ArrayList<>();
+    private final List<String> pendingTroubleCodes = new ArrayList<>();
+    private final List<String> permanentTroubleCodes = new ArrayList<>();
+    private ObdProtocols protocol = ObdProtocols.ISO_15765_4_CAN;
+    private String vin = "";
+    private final List<VehicleModel> modules = new ArrayList<>();
+
+    /**
+     * Creates a model of an idling car on ISO 15765-4 CAN (11 bit, 500 kbaud),
+     * with a VIN and one stored trouble code.
+     *
+     * @return a new {@link VehicleModel}.
+     */
+    public static VehicleModel idlingCar() {
+        VehicleModel model = new VehicleModel();
+        model.setPid(0x01, 0x81, 0x07, 0x65, 0x00);  // MIL on, 1 code
+        model.setPid(0x04, 0x3C);                    // 23.5 % load
+        model.setPid(0x05, 0x7B);                    // 83 C coolant
+        model.setPid(0x06, 0x80);
+        model.setPid(0x07, 0x82);
+        model.setPid(0x0B, 0x21);                    // 33 kPa
+        model.setPid(0x0C, 0x0C, 0x80);              // 800 RPM
+        model.setPid(0x0D, 0x00);                    // stopped
+        model.setPid(0x0E, 0x8C);                    // 6 degrees
+        model.setPid(0x0F, 0x41);                    // 25 C intake
+        model.setPid(0x10, 0x01, 0x5E);              // 3.5 g/s
+        model.setPid(0x11, 0x24);                    // 14 % throttle
+        model.setPid(0x1F, 0x02, 0x58);              // 600 s
+        model.setPid(0x21, 0x00, 0x0A);
+        model.setPid(0x2F, 0x99);                    // 60 % fuel
+        model.setPid(0x31, 0x10, 0x00);
+        model.setPid(0x33, 0x65);                    // 101 kPa
+        model.setPid(0x42, 0x37, 0x5A);              // 14.17 V
+        model.setPid(0x46, 0x3C);                    // 20 C ambient
+        model.setPid(0x51, 0x01);                    // gasoline
+        model.setPid(0x5C, 0x7D);                    // 85 C oil
+        model.setVin("1HGBH41JXMN109186");
+        model.addTroubleCode("P0133");
+        return model;
+    }
+
+    /**
+     * Sets the data bytes of a Mode 01 PID, making it supported.
+     *
+     * @param pid   the PID, between 0x01 and 0xFF, not a multiple of 0x20.
+     * @param bytes the data bytes, after the "41 pid" header.
+     */
+    public synchronized void setPid(int pid, int... bytes) {
+        if (pid <= 0 || pid >= PID_COUNT || pid % 0x20 == 0) {
+            throw new IllegalArgumentException("Invalid PID: " + Integer.toHexString(pid));
+        }
+        pids[pid] = bytes.clone();
+    }
+
+    /**
+     * Makes a Mode 01 PID unsupported.
+     *
+     * @param pid the PID.
+     */
+    public synchronized void removePid(int pid) {
+        pids[pid & 0xFF] = null;
+    }
+
+    /**
+     * Returns the reply of a Mode 01 PID, computing the support bitmaps.
+     *
+     * @param pid the PID.
+     * @return the data bytes, or null if the PID isn't supported.
+     */
+    public synchronized int[] getPid(int pid) {
+        pid &= 0xFF;
+        if (pid % 0x20 != 0) {
+            return pids[pid] == null ? null : pids[pid].clone();
+        }
+
+        // PIDs 00, 20, 40... tell which of the next 32 PIDs are supported
+        boolean any = pid == 0;
+        int bitmap = 0;
+        for (int i = 1; i <= 0x20 && pid + i < PID_COUNT; i++) {
+            if (isSupported(pid + i)) {
+                bitmap |= 1 << (32 - i);
+                any = true;
+            }
+        }
+        if (!any) {
+            return null;
+        }
+        return new int[]{bitmap >>> 24, (bitmap >>> 16) & 0xFF, (bitmap >>> 8) & 0xFF, bitmap & 0xFF};
+    }
+
+    private boolean isSupported(int pid) {
+        if (pid % 0x20 != 0) {
+            return pids[pid] != null;
+        }
+        for (int i = pid + 1; i < PID_COUNT; i++) {
+            if (pids[i] != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sets the engine speed (PID 0C).
+     *
+     * @param rpm the speed in RPM.
+     */
+    public void setRpm(int rpm) {
+        int value = Math.max(0, Math.min(0xFFFF, rpm * 4));
+        setPid(0x0C, value >> 8, value & 0xFF);
+    }
+
+    /**
+     * Sets the vehicle speed (PID 0D).
+     *
+     * @param kmh the speed in km/h.
+     */
+    public void setSpeed(int kmh) {
+        setPid(0x0D, Math.max(0, Math.min(0xFF, kmh)));
+    }
+
+    /**
+     * Sets the engine coolant temperature (PID 05).
+     *
+     * @param celsius the temperature in degrees Celsius.
+     */
+    public void setCoolantTemperature(int celsius) {
+        setPid(0x05, Math.max(0, Math.min(0xFF, celsius + 40)));
+    }
+
+    /**
+     * Adds a stored trouble code, answered in Mode 03.
+     *
+     * @param code a code such as "P0133".
+     */
+    public synchronized void addTroubleCode(String code) {
+        troubleCodes.add(checkCode(code));
+    }
+
+    /**
+     * Adds a pending trouble code, answered in Mode 07.
+     *
+     * @param code a code such as "P0133".
+     */
+    public synchronized void addPendingTroubleCode(String code) {
+        pendingTroubleCodes.add(checkCode(code));
+    }
+
+    /**
+     * Adds a permanent trouble code, answered in Mode 0A.
+     *
+     * @param code a code such as "P0133".
+     */
+    public synchronized void addPermanentTroubleCode(String code) {
+        permanentTroubleCodes.add(checkCode(code));
+    }
+
+    /**
+     * Clears the stored and pending trouble codes, as Mode 04 does. Permanent
+     * codes are kept.
+     */
+    public synchronized void clearTroubleCodes() {
+        troubleCodes.clear();
+        pendingTroubleCodes.clear();
+    }
+
+    synchronized List<String> getTroubleCodes(int mode) {
+        switch (mode) {
+            case 0x03:
+                return new ArrayList<>(troubleCodes);
+            case 0x07:
+                return new ArrayList<>(pendingTroubleCodes);
+            case 0x0A:
+                return new ArrayList<>(permanentTroubleCodes);
+            default:
+                return Collections.emptyList();
+        }
+    }
+
+    private static String checkCode(String code) {
+        if (code == null || code.length() != 5 || "PCBU".indexOf(code.charAt(0)) < 0) {
+            throw new IllegalArgumentException("Invalid trouble code: " + code);
+        }
+        Integer.parseInt(code.substring(1), 16);
+        return code;
+    }
+
+    /**
+     * <p>Getter for the field <code>vin</code>.</p>
+     *
+     * @return the VIN, or an empty string if Mode 09 PID 02 isn't supported.
+     */
+    public synchronized String getVin() {
+        return vin;
+    }
+
+    /**
+     * <p>Setter for the field <code>vin</code>.</p>
+     *
+     * @param vin the 17 character VIN, or an empty string.
+     */
+    public synchronized void setVin(String vin) {
+        this.vin = vin == null ? "" : vin;
+    }
+
+    /**
+     * Adds another ECU, which answers after this one. On CAN it answers from
+     * 7E9 (or 18DAF118), the next one from 7EA, and so on; on the other
+     * protocols, from the source addresses 18, 20... Its protocol is ignored.
+     *
+     * @param module the {@link VehicleModel} of the ECU.
+     */
+    public synchronized void addModule(VehicleModel module) {
+        modules.add(module);
+    }
+
+    /**
+     * <p>Getter for the field <code>modules</code>.</p>
+     *
+     * @return the other ECUs, in answering order.
+     */
+    public synchronized List<VehicleModel> getModules() {
+        return new ArrayList<>(modules);
+    }
+
+    /**
+     * <p>Getter for the field <code>protocol</code>.</p>
+     *
+     * @return the protocol of the vehicle bus.
+     */
+    public synchronized ObdProtocols getProtocol() {
+        return protocol;
+    }
+
+    /**
+     * <p>Setter for the field <code>protocol</code>.</p>
+     *
+     * @param protocol the protocol of the vehicle bus, not {@link ObdProtocols#AUTO}.
+     */
+    public synchronized void setProtocol(ObdProtocols protocol) {
+        if (protocol == ObdProtocols.AUTO) {
+            throw new IllegalArgumentException("The vehicle needs an actual protocol");
+        }
+        this.protocol = protocol;
+    }
+}
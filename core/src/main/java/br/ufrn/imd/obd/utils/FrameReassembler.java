@@ -0,0 +1,353 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package br.ufrn.imd.obd.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Rebuilds the messages of a response from the frames printed by the adapter,
+ * in a single pass over the text and without regular expressions.
+ * <p>
+ * With headers on ("AT H1"), every line starts with the header of the ECU
+ * that sent it: "7E8" on 11-bit CAN, "18 DA F1 10" on 29-bit CAN, or three
+ * bytes ending with the ECU address (such as "48 6B 10") on the older buses,
+ * which also end the line with a checksum. On CAN, the ISO 15765-2 frames
+ * (single, first and consecutive) of each ECU are joined into its message.
+ * <p>
+ * With headers off, the adapter prints a multi-frame CAN message as its
+ * length followed by numbered frames, such as "014\r0: 49 02 01 31 44 34\r1:
+ * 47 50 30 30 52 35 35\r2: 42 31 32 33 34 35 36", and any other message as
+ * a line of data bytes.
+ */
+public final class FrameReassembler {
+
+    private static final int SINGLE_FRAME = 0x0;
+    private static final int FIRST_FRAME = 0x1;
+    private static final int CONSECUTIVE_FRAME = 0x2;
+
+    /**
+     * Prevent instantiation
+     */
+    private FrameReassembler() {
+    }
+
+    /**
+     * Splits a response read with headers on into the message of each ECU.
+     *
+     * @param response the response text, with its line breaks.
+     * @return the messages keyed by ECU ("7E8", "18DAF110" or "10"), in ECU
+     * order; lines that aren't frames, such as "SEARCHING...", are skipped.
+     */
+    public static Map<String, byte[]> byEcu(CharSequence response) {
+        Map<String, Message> messages = new TreeMap<>();
+        Line line = new Line();
+        int length = response.length();
+        int start = 0;
+        for (int i = 0; i <= length; i++) {
+            if (i == length || response.charAt(i) == '\r' || response.charAt(i) == '\n') {
+                if (line.parse(response, start, i)) {
+                    add(messages, line);
+                }
+                start = i + 1;
+            }
+        }
+
+        Map<String, byte[]> result = new TreeMap<>();
+        for (Map.Entry<String, Message> entry : messages.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().toBytes());
+        }
+        return result;
+    }
+
+    /**
+     * Tells if an ECU address returned by {@link #byEcu(CharSequence)} is on
+     * CAN, as "7E8" or "18DAF110" are, rather than on the older buses.
+     *
+     * @param ecu an ECU address.
+     * @return false for the one byte address of the older buses, such as "10".
+     */
+    public static boolean isCan(String ecu) {
+        return ecu.length() != 2;
+    }
+
+    /**
+     * Splits a response read with headers off into its messages. The numbered
+     * frames of a multi-frame CAN message are joined and the padding of its
+     * last frame is dropped; any other line is a message of its own. The
+     * frames may also be run together, as in "0140:4902013144341:...".
+     *
+     * @param response the response text.
+     * @return the messages in the order they were received; lines that aren't
+     * frames, such as "SEARCHING...", are skipped.
+     */
+    public static List<byte[]> messages(CharSequence response) {
+        List<byte[]> messages = new ArrayList<>();
+        int[] digits = new int[response.length()];
+        int[] colons = new int[response.length()];
+        Message current = null;
+        int declared = -1;
+
+        // nothing follows the prompt
+        int length = 0;
+        while (length < response.length() && response.charAt(length) != '>') {
+            length++;
+        }
+        int start = 0;
+        for (int end = 0; end <= length; end++) {
+            if (end < length && response.charAt(end) != '\r' && response.charAt(end) != '\n') {
+                continue;
+            }
+
+            // collect the digits of the line and where its frame numbers end
+            int n = 0;
+            int colonCount = 0;
+            for (int i = start; i < end; i++) {
+                char c = response.charAt(i);
+                int digit = Character.digit(c, 16);
+                if (digit >= 0) {
+                    digits[n++] = digit;
+                } else if (c == ':' && n > 0) {
+                    colons[colonCount++] = n;
+                } else if (c != ' ') {
+                    // a message such as "SEARCHING...": drop what came before it
+                    n = 0;
+                    colonCount = 0;
+                }
+            }
+            start = end + 1;
+            if (n == 0) {
+                continue;
+            }
+
+            if (colonCount == 0) {
+                if (n == 3) {
+                    declared = digits[0] << 8 | digits[1] << 4 | digits[2];
+                } else {
+                    current = finish(messages, current);
+                    Message single = new Message();
+                    appendDigits(single, digits, 0, n);
+                    finish(messages, single);
+                }
+                continue;
+            }
+
+            int from = 0;
+            for (int k = 0; k < colonCount; k++) {
+                int index = colons[k] - 1;
+                int before = index;
+                // frame numbers wrap from F to 0 within a long message
+                boolean first = digits[index] == 0
+                        && (current == null || current.isComplete() || declared >= 0);
+                if (first && before - from >= 3) {
+                    // the length of the new message precedes its first frame
+                    before -= 3;
+                    declared = digits[before] << 8 | digits[before + 1] << 4 | digits[before + 2];
+                }
+                if (current != null) {
+                    appendDigits(current, digits, from, before);
+                } else if (before > from) {
+                    Message single = new Message();
+                    appendDigits(single, digits, from, before);
+                    finish(messages, single);
+                }
+                if (first) {
+                    finish(messages, current);
+                    current = new Message();
+                    if (declared >= 0) {
+                        current.expect(declared);
+                    }
+                    declared = -1;
+                }
+                from = colons[k];
+            }
+            if (current == null) {
+                current = new Message();
+            }
+            appendDigits(current, digits, from, n);
+        }
+        finish(messages, current);
+        return messages;
+    }
+
+    private static Message finish(List<byte[]> messages, Message message) {
+        if (message != null && message.length > 0) {
+            messages.add(message.toBytes());
+        }
+        return null;
+    }
+
+    private static void appendDigits(Message message, int[] digits, int from, int to) {
+        for (int i = from; i + 1 < to; i += 2) {
+            message.add(digits[i] << 4 | digits[i + 1]);
+        }
+    }
+
+    private static void add(Map<String, Message> messages, Line line) {
+        String ecu = line.ecu();
+        Message message = messages.get(ecu);
+        if (message == null) {
+            message = new Message();
+            messages.put(ecu, message);
+        }
+
+        if (!line.can) {
+            message.append(line.bytes, line.dataStart, line.dataEnd);
+            return;
+        }
+        if (line.dataEnd <= line.dataStart) {
+            return;
+        }
+        int pci = line.bytes[line.dataStart];
+        switch (pci >> 4) {
+            case SINGLE_FRAME:
+                message.append(line.bytes, line.dataStart + 1, Math.min(line.dataEnd, line.dataStart + 1 + (pci & 0xF)));
+                break;
+            case FIRST_FRAME:
+                if (line.dataEnd - line.dataStart >= 2) {
+                    message.expect((pci & 0xF) << 8 | line.bytes[line.dataStart + 1]);
+                    message.append(line.bytes, line.dataStart + 2, line.dataEnd);
+                }
+                break;
+            case CONSECUTIVE_FRAME:
+                message.append(line.bytes, line.dataStart + 1, line.dataEnd);
+                break;
+            default:
+                // flow control frames carry no data
+                break;
+        }
+    }
+
+    /**
+     * The bytes of one line and where its header and data are.
+     */
+    private static final class Line {
+        private final char[] digits = new char[64];
+        private int[] bytes = new int[32];
+        private int digitCount;
+        private boolean can;
+        private int headerDigits;
+        private int dataStart;
+        private int dataEnd;
+
+        /**
+         * @return false if the line isn't a frame.
+         */
+        boolean parse(CharSequence s, int from, int to) {
+            digitCount = 0;
+            int firstToken = -1;
+            char[] d = digits;
+            for (int i = from; i < to; i++) {
+                char c = s.charAt(i);
+                if (c == ' ') {
+                    if (firstToken < 0 && digitCount > 0) {
+                        firstToken = digitCount;
+                    }
+                    continue;
+                }
+                if (Character.digit(c, 16) < 0) {
+                    return false;
+                }
+                if (digitCount == d.length) {
+                    return false;
+                }
+                d[digitCount++] = Character.toUpperCase(c);
+            }
+            if (firstToken < 0) {
+                firstToken = digitCount;
+            }
+
+            if (firstToken == 3 || firstToken == digitCount && digitCount % 2 == 1) {
+                can = true;
+                headerDigits = 3;
+            } else if (digitCount >= 8 && d[0] == '1' && d[1] == '8' && d[2] == 'D' && (d[3] == 'A' || d[3] == 'B')) {
+                can = true;
+                headerDigits = 8;
+            } else {
+                can = false;
+                headerDigits = 6;
+            }
+            if (digitCount < headerDigits + 2 || (digitCount - headerDigits) % 2 != 0) {
+                return false;
+            }
+
+            int n = (digitCount - headerDigits) / 2;
+            if (bytes.length < n) {
+                bytes = new int[n];
+            }
+            for (int i = 0; i < n; i++) {
+                int at = headerDigits + 2 * i;
+                bytes[i] = Character.digit(d[at], 16) << 4 | Character.digit(d[at + 1], 16);
+            }
+            dataStart = 0;
+            // the older buses end each line with a checksum
+            dataEnd = can ? n : n - 1;
+            return true;
+        }
+
+        String ecu() {
+            // the source address is the last header byte of the older buses
+            return can ? new String(digits, 0, headerDigits) : new String(digits, 4, 2);
+        }
+    }
+
+    /**
+     * The bytes received from one ECU.
+     */
+    private static final class Message {
+        private int[] data = new int[16];
+        private int length = 0;
+        private int expected = -1;
+
+        void expect(int total) {
+            expected = length + total;
+        }
+
+        boolean isComplete() {
+            return expected >= 0 && length >= expected;
+        }
+
+        void add(int b) {
+            if (isComplete()) {
+                return;
+            }
+            if (length == data.length) {
+                data = Arrays.copyOf(data, 2 * data.length);
+            }
+            data[length++] = b;
+        }
+
+        void append(int[] b, int from, int to) {
+            int end = expected >= 0 ? Math.min(to, from + expected - length) : to;
+            if (end <= from) {
+                return;
+            }
+            if (length + end - from > data.length) {
+                data = Arrays.copyOf(data, Math.max(length + end - from, 2 * data.length));
+            }
+            System.arraycopy(b, from, data, length, end - from);
+            length += end - from;
+        }
+
+        byte[] toBytes() {
+            byte[] out = new byte[length];
+            for (int i = 0; i < length; i++) {
+                out[i] = (byte) data[i];
+            }
+            return out;
+        }
+    }
+}
@@ -0,0 +1,332 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package br.ufrn.imd.obd.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Read-only index of trouble code descriptions, looked up without parsing it.
+ * <p>
+ * Each code is packed in 16 bits as the ECU reports it (2 bits for the letter,
+ * 2 bits for the first digit and 12 bits for the last three), and the index
+ * holds the sorted codes, an offset table and the UTF-8 descriptions:
+ * <pre>
+ * int magic, int count
+ * short code[count]              sorted, unsigned
+ * int offset[count + 1]          from the start of the descriptions
+ * byte descriptions[]
+ * </pre>
+ * A lookup is a binary search over the codes and the decoding of a single
+ * description. The index never moves the position of its buffer, so it can be
+ * shared by any number of threads, and a memory-mapped file is only paged in
+ * where it is read.
+ * <p>
+ * The index is generated from a JSON object of descriptions by code, kept
+ * out of the app resources in the data directory of the project:
+ * <pre>
+ * java br.ufrn.imd.obd.utils.TroubleCodeIndex data/trouble_codes.json src/main/res/raw/trouble_code_index.bin
+ * </pre>
+ */
+public class TroubleCodeIndex {
+
+    private static final int MAGIC = 0x44544331;  // "DTC1"
+    private static final int HEADER_LENGTH = 8;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String LETTERS = "PCBU";
+
+    private final ByteBuffer index;
+    private final int count;
+    private final int offsetsStart;
+    private final int descriptionsStart;
+
+    /**
+     * Wraps an index.
+     *
+     * @param index the index, from its first byte to its limit.
+     * @throws java.io.IOException if the buffer doesn't hold an index.
+     */
+    public TroubleCodeIndex(ByteBuffer index) throws IOException {
+        this.index = index.slice();
+        if (this.index.limit() < HEADER_LENGTH || this.index.getInt(0) != MAGIC) {
+            throw new IOException("Not a trouble code index");
+        }
+        this.count = this.index.getInt(4);
+        this.offsetsStart = HEADER_LENGTH + count * 2;
+        this.descriptionsStart = offsetsStart + (count + 1) * 4;
+        if (count < 0 || descriptionsStart > this.index.limit()
+                || descriptionsStart + this.index.getInt(offsetsStart + count * 4) > this.index.limit()) {
+            throw new IOException("Truncated trouble code index");
+        }
+    }
+
+    /**
+     * Maps an index file in memory.
+     *
+     * @param file the index file.
+     * @return the index.
+     * @throws java.io.IOException if the file can't be read or isn't an index.
+     */
+    public static TroubleCodeIndex open(File file) throws IOException {
+        try (FileInputStream in = new FileInputStream(file)) {
+            FileChannel channel = in.getChannel();
+            return new TroubleCodeIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Reads an index from a stream that can't be mapped, such as a compressed
+     * resource. The stream isn't closed.
+     *
+     * @param in the stream holding the index.
+     * @return the index.
+     * @throws java.io.IOException if the stream can't be read or isn't an index.
+     */
+    public static TroubleCodeIndex read(InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128 * 1024);
+        byte[] chunk = new byte[8192];
+        int n;
+        while ((n = in.read(chunk)) >= 0) {
+            bytes.write(chunk, 0, n);
+        }
+        return new TroubleCodeIndex(ByteBuffer.wrap(bytes.toByteArray()));
+    }
+
+    /**
+     * Packs a trouble code as the ECU reports it, e.g. "P0133" to 0x0133 and
+     * "U0100" to 0xC100.
+     *
+     * @param dtc the trouble code.
+     * @return the packed code, or -1 if it isn't a valid trouble code.
+     */
+    public static int pack(String dtc) {
+        if (dtc == null || dtc.length() != 5) {
+            return -1;
+        }
+        int letter = LETTERS.indexOf(Character.toUpperCase(dtc.charAt(0)));
+        int first = Character.digit(dtc.charAt(1), 16);
+        if (letter < 0 || first < 0 || first > 3) {
+            return -1;
+        }
+
+        int code = letter << 14 | first << 12;
+        for (int i = 2; i < 5; i++) {
+            int digit = Character.digit(dtc.charAt(i), 16);
+            if (digit < 0) {
+                return -1;
+            }
+            code |= digit << (4 * (4 - i));
+        }
+        return code;
+    }
+
+    /**
+     * <p>size.</p>
+     *
+     * @return the number of trouble codes described.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Returns the description of a trouble code.
+     *
+     * @param dtc the trouble code, such as "P0133".
+     * @return the description, or null if the code is unknown.
+     */
+    public String getDescription(String dtc) {
+        int code = pack(dtc);
+        return code < 0 ? null : getDescription(code);
+    }
+
+    /**
+     * Returns the description of a packed trouble code.
+     *
+     * @param code the two bytes of the trouble code, as reported by the ECU.
+     * @return the description, or null if the code is unknown.
+     */
+    public String getDescription(int code) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int value = index.getShort(HEADER_LENGTH + mid * 2) & 0xFFFF;
+            if (value < code) {
+                low = mid + 1;
+            } else if (value > code) {
+                high = mid - 1;
+            } else {
+                return decode(mid);
+            }
+        }
+        return null;
+    }
+
+    private String decode(int position) {
+        int start = index.getInt(offsetsStart + position * 4);
+        int end = index.getInt(offsetsStart + (position + 1) * 4);
+        byte[] utf8 = new byte[end - start];
+        ByteBuffer description = index.duplicate();
+        description.position(descriptionsStart + start);
+        description.get(utf8);
+        return new String(utf8, UTF_8);
+    }
+
+    /**
+     * Writes the index of a set of descriptions.
+     *
+     * @param descriptions the descriptions by trouble code.
+     * @param out          the stream the index is written to (not closed).
+     * @throws java.io.IOException if the stream can't be written.
+     * @throws IllegalArgumentException if a key isn't a valid trouble code.
+     */
+    public static void write(Map<String, String> descriptions, OutputStream out) throws IOException {
+        TreeMap<Integer, byte[]> sorted = new TreeMap<>();
+        for (Map.Entry<String, String> entry : descriptions.entrySet()) {
+            int code = pack(entry.getKey());
+            if (code < 0) {
+                throw new IllegalArgumentException("Invalid trouble code: " + entry.getKey());
+            }
+            sorted.put(code, entry.getValue().getBytes(UTF_8));
+        }
+
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(sorted.size());
+        for (int code : sorted.keySet()) {
+            data.writeShort(code);
+        }
+        int offset = 0;
+        data.writeInt(offset);
+        for (byte[] description : sorted.values()) {
+            offset += description.length;
+            data.writeInt(offset);
+        }
+        for (byte[] description : sorted.values()) {
+            data.write(description);
+        }
+        data.flush();
+    }
+
+    /**
+     * Generates an index from a JSON object of descriptions by trouble code.
+     *
+     * @param args the JSON file and the index file.
+     * @throws java.io.IOException if a file can't be read or written.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: TroubleCodeIndex <descriptions.json> <index.bin>");
+            System.exit(2);
+        }
+        byte[] json;
+        try (FileInputStream in = new FileInputStream(args[0])) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] chunk = new byte[8192];
+            int n;
+            while ((n = in.read(chunk)) >= 0) {
+                bytes.write(chunk, 0, n);
+            }
+            json = bytes.toByteArray();
+        }
+        try (FileOutputStream out = new FileOutputStream(args[1])) {
+            write(new JsonStrings(new String(json, UTF_8)).readObject(), out);
+        }
+    }
+
+    /**
+     * Reader of a flat JSON object whose values are all strings, which is all
+     * the descriptions file holds.
+     */
+    private static final class JsonStrings {
+        private final String json;
+        private int pos = 0;
+
+        JsonStrings(String json) {
+            this.json = json;
+        }
+
+        Map<String, String> readObject() throws IOException {
+            Map<String, String> values = new TreeMap<>();
+            expect('{');
+            if (peek() == '}') {
+                pos++;
+                return values;
+            }
+            do {
+                String key = readString();
+                expect(':');
+                values.put(key, readString());
+            } while (next() == ',');
+            pos--;
+            expect('}');
+            return values;
+        }
+
+        private String readString() throws IOException {
+            expect('"');
+            StringBuilder sb = new StringBuilder();
+            while (pos < json.length()) {
+                char c = json.charAt(pos++);
+                if (c == '"') {
+                    return sb.toString();
+                } else if (c != '\\') {
+                    sb.append(c);
+                } else if (pos < json.length()) {
+                    char escaped = json.charAt(pos++);
+                    int simple = "\"\\/bfnrt".indexOf(escaped);
+                    if (simple >= 0) {
+                        sb.append("\"\\/\b\f\n\r\t".charAt(simple));
+                    } else if (escaped == 'u' && pos + 4 <= json.length()) {
+                        sb.append((char) Integer.parseInt(json.substring(pos, pos + 4), 16));
+                        pos += 4;
+                    } else {
+                        throw new IOException("Invalid escape at " + pos);
+                    }
+                }
+            }
+            throw new IOException("Unterminated string");
+        }
+
+        private void expect(char c) throws IOException {
+            if (next() != c) {
+                throw new IOException("Expected '" + c + "' at " + pos);
+            }
+        }
+
+        private char next() {
+            char c = peek();
+            pos++;
+            return c;
+        }
+
+        private char peek() {
+            while (pos < json.length() && Character.isWhitespace(json.charAt(pos))) {
+                pos++;
+            }
+            return pos < json.length() ? json.charAt(pos) : 0;
+        }
+    }
+}
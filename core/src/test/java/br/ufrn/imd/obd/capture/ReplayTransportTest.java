@@ -0,0 +1,159 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package br.ufrn.imd.obd.capture;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.TimeUnit;
+
+import br.ufrn.imd.obd.commands.ObdCommandGroup;
+import br.ufrn.imd.obd.commands.control.VinCommand;
+import br.ufrn.imd.obd.commands.engine.RPMCommand;
+import br.ufrn.imd.obd.commands.engine.SpeedCommand;
+import br.ufrn.imd.obd.commands.protocol.EchoOffCommand;
+import br.ufrn.imd.obd.commands.temperature.EngineCoolantTemperatureCommand;
+import br.ufrn.imd.obd.connection.ObdConnection;
+import br.ufrn.imd.obd.enums.ResponseStatus;
+import br.ufrn.imd.obd.simulator.Elm327Simulator;
+import br.ufrn.imd.obd.simulator.VehicleModel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Replays a session captured from a simulated vehicle.
+ */
+public class ReplayTransportTest {
+
+    private static final int ROUNDS = 5;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+    private String captured;
+
+    @Before
+    public void setUp() throws Exception {
+        file = new File(folder.getRoot(), "session.log");
+        VehicleModel vehicle = VehicleModel.idlingCar();
+        Elm327Simulator elm = new Elm327Simulator(vehicle);
+        elm.setLatency(0, TimeUnit.MILLISECONDS);
+        CaptureLog log = new CaptureLog(file);
+        try {
+            ObdConnection connection = new ObdConnection(log.capture(elm.getInputStream()),
+                    log.capture(elm.getOutputStream()));
+            StringBuilder results = new StringBuilder();
+            for (int i = 0; i < ROUNDS; i++) {
+                vehicle.setRpm(800 + 100 * i);
+                results.append(session(connection));
+            }
+            captured = results.toString();
+        } finally {
+            log.close();
+        }
+    }
+
+    @Test
+    public void replaysCapturedResponses() throws Exception {
+        ReplayTransport replay = new ReplayTransport(file);
+        try {
+            ObdConnection connection = new ObdConnection(replay.getInputStream(), replay.getOutputStream());
+            StringBuilder results = new StringBuilder();
+            for (int i = 0; i < ROUNDS; i++) {
+                results.append(session(connection));
+            }
+            assertEquals(captured, results.toString());
+            assertEquals(0, replay.getMismatchCount());
+        } finally {
+            replay.close();
+        }
+    }
+
+    @Test
+    public void answersUnknownRequests() throws Exception {
+        ReplayTransport replay = new ReplayTransport(file);
+        try {
+            ObdConnection connection = new ObdConnection(replay.getInputStream(), replay.getOutputStream());
+            assertEquals(ResponseStatus.MISUNDERSTOOD, new VinCommand().tryRun(connection));
+            assertEquals(1, replay.getMismatchCount());
+        } finally {
+            replay.close();
+        }
+    }
+
+    @Test
+    public void loopsOverSession() throws Exception {
+        ReplayTransport replay = new ReplayTransport(file);
+        replay.setLooping(true);
+        try {
+            ObdConnection connection = new ObdConnection(replay.getInputStream(), replay.getOutputStream());
+            StringBuilder results = new StringBuilder();
+            for (int i = 0; i < ROUNDS; i++) {
+                results.append(session(connection));
+            }
+            results.setLength(0);
+            for (int i = 0; i < ROUNDS; i++) {
+                results.append(session(connection));
+            }
+            assertEquals(captured, results.toString());
+            assertEquals(0, replay.getMismatchCount());
+        } finally {
+            replay.close();
+        }
+    }
+
+    @Test
+    public void readsLogInWindows() throws Exception {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        CaptureReader whole = new CaptureReader(raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length()));
+        // records cross the windows, which must be moved under them
+        CaptureReader windowed = new CaptureReader(raf.getChannel(), 64);
+        try {
+            long records = 0;
+            while (whole.next()) {
+                assertTrue(windowed.next());
+                assertEquals(whole.getType(), windowed.getType());
+                assertEquals(whole.getTimestampNanos(), windowed.getTimestampNanos());
+                assertEquals(whole.getLength(), windowed.getLength());
+                assertEquals(whole.byteAt(whole.getLength() - 1), windowed.byteAt(windowed.getLength() - 1));
+                records++;
+            }
+            assertFalse(windowed.next());
+            assertEquals(whole.position(), windowed.position());
+            assertTrue(records > ROUNDS);
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static String session(ObdConnection connection) throws Exception {
+        new EchoOffCommand().run(connection);
+        RPMCommand rpm = new RPMCommand();
+        rpm.run(connection);
+
+        ObdCommandGroup group = new ObdCommandGroup();
+        group.setBatching(true);
+        group.add(new SpeedCommand());
+        group.add(new EngineCoolantTemperatureCommand());
+        group.run(connection);
+        return rpm.getFormattedResult() + " " + group.getFormattedResult() + ";";
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package br.ufrn.imd.obd.commands;
+
+import org.junit.Test;
+
+import br.ufrn.imd.obd.commands.engine.RPMCommand;
+import br.ufrn.imd.obd.simulator.Elm327Simulator;
+import br.ufrn.imd.obd.simulator.VehicleModel;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Learns response counts from responses with and without the adapter echo.
+ */
+public class ExpectedResponseCountsTest {
+
+    @Test
+    public void countsEachResponse() {
+        ExpectedResponseCounts counts = new ExpectedResponseCounts();
+        counts.learn("01 0C", "41 0C 1A F8\r\r");
+        assertEquals(1, counts.getCount("01 0C"));
+
+        counts.learn("01 00", "SEARCHING...\r7E8 06 41 00 BE 3E B8 11\r7E9 06 41 00 80 00 00 01\r\r");
+        assertEquals(2, counts.getCount("01 00"));
+        assertEquals(" 2", counts.getSuffix("01 00"));
+    }
+
+    @Test
+    public void skipsEcho() {
+        ExpectedResponseCounts counts = new ExpectedResponseCounts();
+        counts.learn("01 0C", "01 0C\r41 0C 1A F8\r\r");
+        assertEquals(1, counts.getCount("01 0C"));
+
+        // once learned, the request is sent and echoed with its count
+        counts.learn("01 0C", "010C1\r410C1AF8\r\r");
+        assertEquals(1, counts.getCount("01 0C"));
+    }
+
+    @Test
+    public void learnsFromAdapterWithEchoOn() throws Exception {
+        // the simulator starts with the echo on, like the adapter
+        Elm327Simulator simulator = new Elm327Simulator(VehicleModel.idlingCar());
+        ExpectedResponseCounts counts = new ExpectedResponseCounts();
+        RPMCommand rpm = new RPMCommand();
+        rpm.setExpectedResponses(counts);
+        rpm.tryRun(simulator.getInputStream(), simulator.getOutputStream());
+        assertEquals(1, counts.getCount(rpm.getCommand()));
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package br.ufrn.imd.obd.commands;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import br.ufrn.imd.obd.commands.engine.LoadCommand;
+import br.ufrn.imd.obd.commands.engine.RPMCommand;
+import br.ufrn.imd.obd.commands.engine.SpeedCommand;
+import br.ufrn.imd.obd.commands.protocol.EchoOffCommand;
+import br.ufrn.imd.obd.commands.temperature.EngineCoolantTemperatureCommand;
+import br.ufrn.imd.obd.enums.ResponseStatus;
+import br.ufrn.imd.obd.simulator.Elm327Simulator;
+import br.ufrn.imd.obd.simulator.VehicleModel;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Decodes multi-PID answers from fixtures and from a simulated vehicle.
+ */
+public class MultiPidRequestTest {
+
+    private final RPMCommand rpm = new RPMCommand();
+    private final SpeedCommand speed = new SpeedCommand();
+    private final EngineCoolantTemperatureCommand coolant = new EngineCoolantTemperatureCommand();
+
+    @Test
+    public void decodesSingleFrameAnswer() {
+        assertEquals(ResponseStatus.OK, MultiPidRequest.decode("41 0C 0B B8 0D 28 05 50\r\r>", byPid(), 0));
+        assertDecoded();
+    }
+
+    @Test
+    public void keepsFirstAnswerOfSeveralEcus() {
+        // the second "41" is the service byte of another ECU, not PID 0x41
+        String response = "41 0C 0B B8 0D 28 05 50\r41 0C 0C 80 0D 32 05 51\r\r>";
+        assertEquals(ResponseStatus.OK, MultiPidRequest.decode(response, byPid(), 0));
+        assertDecoded();
+    }
+
+    @Test
+    public void decodesMultiFrameAnswer() {
+        String response = "00E\r0: 41 0C 0B B8 0D 28\r1: 05 50 41 00 07 65 00 00\r\r>";
+        assertEquals(ResponseStatus.OK, MultiPidRequest.decode(response, byPid(), 0));
+        assertDecoded();
+    }
+
+    @Test
+    public void reportsErrors() {
+        assertEquals(ResponseStatus.NO_DATA, MultiPidRequest.decode("NO DATA\r\r>", byPid(), 0));
+        assertEquals(ResponseStatus.STOPPED, MultiPidRequest.decode("STOPPED\r\r>", byPid(), 0));
+    }
+
+    @Test
+    public void batchesRequestToSeveralEcus() throws Exception {
+        VehicleModel vehicle = VehicleModel.idlingCar();
+        VehicleModel transmission = new VehicleModel();
+        transmission.setRpm(3000);
+        transmission.setSpeed(77);
+        vehicle.addModule(transmission);
+        Elm327Simulator elm = new Elm327Simulator(vehicle);
+        elm.setLatency(0, TimeUnit.MILLISECONDS);
+        new EchoOffCommand().run(elm.getInputStream(), elm.getOutputStream());
+
+        ObdCommandGroup group = new ObdCommandGroup();
+        group.setBatching(true);
+        LoadCommand load = new LoadCommand();
+        group.add(rpm);
+        group.add(speed);
+        group.add(coolant);
+        group.add(load);
+        group.run(elm.getInputStream(), elm.getOutputStream());
+
+        assertEquals(800, rpm.getRPM());
+        assertEquals(0, speed.getMetricSpeed());
+        assertEquals(83f, coolant.getTemperature(), 0);
+        assertEquals("23.5%", load.getFormattedResult());
+    }
+
+    @Test
+    public void runsCommandsOneByOneWhenBatchIsRefused() throws Exception {
+        // an ECU that doesn't take multi-PID requests, and isn't NO DATA about them
+        Elm327Simulator elm = new Elm327Simulator(VehicleModel.idlingCar()) {
+            @Override
+            public synchronized String respond(String line) {
+                String request = line.replace(" ", "");
+                if (request.startsWith("01") && request.length() > 4) {
+                    return "7F 01 12\r\r>";
+                }
+                return super.respond(line);
+            }
+        };
+        elm.setLatency(0, TimeUnit.MILLISECONDS);
+        new EchoOffCommand().run(elm.getInputStream(), elm.getOutputStream());
+
+        ObdCommandGroup group = new ObdCommandGroup();
+        group.setBatching(true);
+        group.add(rpm);
+        group.add(speed);
+        group.add(coolant);
+        assertEquals(ResponseStatus.OK, group.tryRun(elm.getInputStream(), elm.getOutputStream()));
+
+        assertEquals(800, rpm.getRPM());
+        assertEquals(0, speed.getMetricSpeed());
+        assertEquals(83f, coolant.getTemperature(), 0);
+        assertEquals(3, group.getName().split(",").length);
+    }
+
+    private ObdCommand[] byPid() {
+        ObdCommand[] byPid = new ObdCommand[256];
+        byPid[0x05] = coolant;
+        byPid[0x0C] = rpm;
+        byPid[0x0D] = speed;
+        return byPid;
+    }
+
+    private void assertDecoded() {
+        assertEquals(750, rpm.getRPM());
+        assertEquals(40, speed.getMetricSpeed());
+        assertEquals(40f, coolant.getTemperature(), 0);
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package br.ufrn.imd.obd.commands;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import br.ufrn.imd.obd.commands.control.ModuleVoltageCommand;
+import br.ufrn.imd.obd.commands.engine.RPMCommand;
+import br.ufrn.imd.obd.commands.engine.RuntimeCommand;
+import br.ufrn.imd.obd.commands.engine.SpeedCommand;
+import br.ufrn.imd.obd.commands.protocol.AvailablePidsCommand01to20;
+import br.ufrn.imd.obd.commands.protocol.EchoOffCommand;
+import br.ufrn.imd.obd.connection.ObdConnection;
+import br.ufrn.imd.obd.enums.ResponseStatus;
+import br.ufrn.imd.obd.exceptions.NoDataException;
+import br.ufrn.imd.obd.exceptions.NonNumericResponseException;
+import br.ufrn.imd.obd.simulator.Elm327Simulator;
+import br.ufrn.imd.obd.simulator.VehicleModel;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Decodes response fixtures into the byte buffer of a command.
+ */
+public class ObdCommandTest {
+
+    @Test
+    public void decodesHexPairs() {
+        RPMCommand rpm = new RPMCommand();
+        assertEquals(ResponseStatus.OK, rpm.decode("41 0C 1A F8\r\r", 0));
+        assertEquals(Arrays.asList(0x41, 0x0C, 0x1A, 0xF8), rpm.getBuffer());
+        assertEquals(1726, rpm.getRPM());
+    }
+
+    @Test
+    public void skipsSearchingMessage() {
+        RPMCommand rpm = new RPMCommand();
+        rpm.decode("SEARCHING...\r41 0C 1A F8\r\r", 0);
+        assertEquals("410C1AF8", rpm.getResult());
+        assertEquals(1726, rpm.getRPM());
+    }
+
+    @Test
+    public void decodesSuccessiveResponses() {
+        AvailablePidsCommand01to20 pids = new AvailablePidsCommand01to20();
+        pids.decode("41 00 BE 3E B8 11", 0);
+        assertEquals(6, pids.getBuffer().size());
+        assertEquals("BE3EB811", pids.getCalculatedResult());
+
+        pids.decode("41 00 80 00 00 01", 0);
+        assertEquals(Arrays.asList(0x41, 0x00, 0x80, 0x00, 0x00, 0x01), pids.getBuffer());
+        assertEquals("80000001", pids.getCalculatedResult());
+    }
+
+    @Test
+    public void decodesWords() {
+        RuntimeCommand runtime = new RuntimeCommand();
+        runtime.decode("41 1F 02 58", 0);
+        assertEquals("00:10:00", runtime.getFormattedResult());
+
+        ModuleVoltageCommand voltage = new ModuleVoltageCommand();
+        voltage.decode("41 42 37 5A", 0);
+        assertEquals("14.2V", voltage.getFormattedResult());
+    }
+
+    @Test
+    public void reportsErrorMessages() {
+        RPMCommand rpm = new RPMCommand();
+        assertEquals(ResponseStatus.NO_DATA, rpm.decode("NO DATA\r\r", 0));
+        assertEquals(ResponseStatus.UNABLE_TO_CONNECT, rpm.decode("SEARCHING...\rUNABLE TO CONNECT\r\r", 0));
+    }
+
+    @Test(expected = NonNumericResponseException.class)
+    public void rejectsNonHexResponse() {
+        new RPMCommand().decode("41 0C 1G F8", 0);
+    }
+
+    @Test
+    public void decodesEachEcuWithHeadersOn() {
+        RPMCommand rpm = new RPMCommand();
+        rpm.setHeadersOn(true);
+        assertEquals(ResponseStatus.OK, rpm.decode("7E9 04 41 0C 1A F8\r7E8 04 41 0C 0F A0\r\r>", 0));
+        assertEquals(1000, rpm.getRPM());
+        assertEquals("410C0FA0", rpm.getResult());
+        assertEquals("{7E8=1000, 7E9=1726}", rpm.getEcuResults().toString());
+    }
+
+    @Test
+    public void skipsNegativeResponsesWithHeadersOn() {
+        RPMCommand rpm = new RPMCommand();
+        rpm.setHeadersOn(true);
+        rpm.decode("7E8 04 41 0C 0F A0\r7E9 03 7F 01 12\r\r>", 0);
+        assertEquals("{7E8=1000}", rpm.getEcuResults().toString());
+
+        assertEquals(ResponseStatus.UNSUPPORTED, rpm.decode("7E8 03 7F 01 12\r\r>", 0));
+        assertEquals(0, rpm.getEcuResults().size());
+    }
+
+    @Test
+    public void runsOverriddenRunInGroups() throws Exception {
+        Elm327Simulator elm = simulator();
+        RPMCommand fake = new RPMCommand() {
+            @Override
+            public void run(InputStream in, OutputStream out) {
+                decode("41 0C 1A F8", 0);
+            }
+        };
+        SpeedCommand speed = new SpeedCommand();
+        ObdCommandGroup group = new ObdCommandGroup();
+        group.setBatching(true);
+        group.add(fake);
+        group.add(speed);
+
+        assertEquals(ResponseStatus.OK, group.tryRun(elm.getInputStream(), elm.getOutputStream()));
+        assertEquals(1726, fake.getRPM());
+        assertEquals(ResponseStatus.OK, group.tryRun(new ObdConnection(elm.getInputStream(), elm.getOutputStream())));
+        assertEquals(1726, fake.getRPM());
+    }
+
+    @Test
+    public void callsOverriddenReadResult() throws Exception {
+        Elm327Simulator elm = simulator();
+        RPMCommand rpm = new RPMCommand() {
+            @Override
+            protected void readResult(InputStream in) throws IOException {
+                super.readResult(in);
+                throw new NoDataException();
+            }
+        };
+        assertEquals(ResponseStatus.NO_DATA, rpm.tryRun(elm.getInputStream(), elm.getOutputStream()));
+        assertEquals(800, rpm.getRPM());
+    }
+
+    private static Elm327Simulator simulator() throws Exception {
+        Elm327Simulator elm = new Elm327Simulator(VehicleModel.idlingCar());
+        elm.setLatency(0, TimeUnit.MILLISECONDS);
+        new EchoOffCommand().run(elm.getInputStream(), elm.getOutputStream());
+        return elm;
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package br.ufrn.imd.obd.commands.control;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Decodes trouble code fixtures of CAN and legacy buses.
+ */
+public class TroubleCodesCommandTest {
+
+    @Test
+    public void decodesSingleFrameCanMessage() {
+        assertEquals("[P0133,U0123]", decode("43 02 01 33 C1 23"));
+        assertEquals("[]", decode("43 00"));
+    }
+
+    @Test
+    public void decodesMultiFrameCanMessage() {
+        assertEquals("[P0101,P0133,U0123]", decode("00A\r0: 43 04 01 33 C1 23\r1: 01 01 00 00 00 00 00\r\r>"));
+    }
+
+    @Test
+    public void decodesLegacyMessages() {
+        // three codes per message, padded with zeros
+        assertEquals("[P0133,P0244,P0355,P0466]", decode("43 01 33 02 44 03 55\r43 04 66 00 00 00 00\r\r>"));
+        assertEquals("[P0133]", decode("SEARCHING...\r43 01 33 00 00 00 00\r\r>"));
+    }
+
+    @Test
+    public void decodesEachEcuWithHeadersOn() {
+        TroubleCodesCommand command = new TroubleCodesCommand();
+        command.setHeadersOn(true);
+        command.decode("7E8 06 43 02 01 33 C1 23\r7E9 02 43 00\r\r>", 0);
+        assertEquals("[P0133,U0123]", command.getFormattedResult());
+        assertEquals("{7E8=[P0133,U0123], 7E9=[]}", command.getEcuResults().toString());
+
+        command.decode("7E8 10 0A 43 04 01 33 C1 23\r7E8 21 01 01 00 00 00 00 00\r\r>", 0);
+        assertEquals("[P0101,P0133,U0123]", command.getFormattedResult());
+    }
+
+    @Test
+    public void joinsLegacyMessagesWithHeadersOn() {
+        TroubleCodesCommand command = new TroubleCodesCommand();
+        command.setHeadersOn(true);
+        command.decode("48 6B 10 43 01 33 02 44 03 55 C1\r48 6B 10 43 04 66 00 00 00 00 C2\r\r>", 0);
+        assertEquals("[P0133,P0244,P0355,P0466]", command.getFormattedResult());
+        assertEquals("{10=[P0133,P0244,P0355,P0466]}", command.getEcuResults().toString());
+    }
+
+    @Test
+    public void tellsJoinedLegacyMessagesFromCanByAddress() {
+        // 14 bytes starting with 43 06 would also fit a CAN message of six codes
+        TroubleCodesCommand command = new TroubleCodesCommand();
+        command.setHeadersOn(true);
+        command.decode("48 6B 10 43 06 06 00 00 00 00 A4\r48 6B 10 43 01 33 00 00 00 00 C9\r\r>", 0);
+        assertEquals("[P0133,P0606]", command.getFormattedResult());
+
+        command.decode("7E8 10 0E 43 06 06 06 01 33\r7E8 21 02 44 03 55 04 66 05\r7E8 22 77 00 00 00 00 00 00\r\r>", 0);
+        assertEquals("[P0133,P0244,P0355,P0466,P0577,P0606]", command.getFormattedResult());
+    }
+
+    @Test
+    public void decodesPendingAndPermanentCodes() {
+        PendingTroubleCodesCommand pending = new PendingTroubleCodesCommand();
+        pending.decode("47 01 04 20", 0);
+        assertEquals("[P0420]", pending.getFormattedResult());
+
+        PermanentTroubleCodesCommand permanent = new PermanentTroubleCodesCommand();
+        permanent.decode("4A 01 52 34", 0);
+        assertEquals("[C1234]", permanent.getFormattedResult());
+    }
+
+    private static String decode(String response) {
+        TroubleCodesCommand command = new TroubleCodesCommand();
+        command.decode(response, 0);
+        return command.getFormattedResult();
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package br.ufrn.imd.obd.commands.control;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import br.ufrn.imd.obd.commands.protocol.EchoOffCommand;
+import br.ufrn.imd.obd.simulator.Elm327Simulator;
+import br.ufrn.imd.obd.simulator.VehicleModel;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Decodes VIN fixtures of CAN and legacy buses.
+ */
+public class VinCommandTest {
+
+    private static final String VIN = "1D4GP00R55B123456";
+
+    @Test
+    public void decodesMultiFrameCanMessage() {
+        assertEquals(VIN, decode("014\r0: 49 02 01 31 44 34\r1: 47 50 30 30 52 35 35\r2: 42 31 32 33 34 35 36\r\r>"));
+    }
+
+    @Test
+    public void decodesCompactedFrames() {
+        assertEquals(VIN, decode("SEARCHING...0140:4902013144341:47503030523535 2:42313233343536"));
+    }
+
+    @Test
+    public void decodesMessageWithoutItemCount() {
+        assertEquals(VIN, decode("013\r0: 49 02 31 44 34 47\r1: 50 30 30 52 35 35 42\r2: 31 32 33 34 35 36 00\r\r>"));
+    }
+
+    @Test
+    public void decodesLegacyMessages() {
+        assertEquals(VIN, decode("49 02 01 00 00 00 31\r49 02 02 44 34 47 50\r49 02 03 30 30 52 35\r"
+                + "49 02 04 35 42 31 32\r49 02 05 33 34 35 36\r\r>"));
+    }
+
+    @Test
+    public void cachesVinPerStream() throws Exception {
+        Elm327Simulator first = simulator(VIN);
+        Elm327Simulator second = simulator("WVWZZZ1JZXW000001");
+
+        VinCommand vin = new VinCommand();
+        vin.run(first.getInputStream(), first.getOutputStream());
+        assertEquals(VIN, vin.getFormattedResult());
+        vin = new VinCommand();
+        vin.run(second.getInputStream(), second.getOutputStream());
+        assertEquals("WVWZZZ1JZXW000001", vin.getFormattedResult());
+
+        // answered from the cache of its own stream
+        first.getModel().setVin("00000000000000000");
+        vin = new VinCommand();
+        vin.run(first.getInputStream(), first.getOutputStream());
+        assertEquals(VIN, vin.getFormattedResult());
+    }
+
+    private static Elm327Simulator simulator(String vin) throws Exception {
+        VehicleModel vehicle = VehicleModel.idlingCar();
+        vehicle.setVin(vin);
+        Elm327Simulator elm = new Elm327Simulator(vehicle);
+        elm.setLatency(0, TimeUnit.MILLISECONDS);
+        new EchoOffCommand().run(elm.getInputStream(), elm.getOutputStream());
+        return elm;
+    }
+
+    private static String decode(String response) {
+        VinCommand command = new VinCommand();
+        command.decode(response, 0);
+        return command.getFormattedResult();
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package br.ufrn.imd.obd.commands.protocol;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import br.ufrn.imd.obd.cache.FileResponseCache;
+import br.ufrn.imd.obd.connection.ObdConnection;
+import br.ufrn.imd.obd.simulator.Elm327Simulator;
+import br.ufrn.imd.obd.simulator.VehicleModel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Discovers the PIDs of a simulated vehicle, then answers it from its cache.
+ */
+public class SupportedPidsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void answersKnownVehicleFromItsCache() throws Exception {
+        VehicleModel vehicle = VehicleModel.idlingCar();
+        vehicle.setPid(0x3F, 0x00, 0x00);  // top bit of the first word
+        VehicleModel transmission = new VehicleModel();
+        transmission.setPid(0xA6, 0x00, 0x00, 0x10, 0x00);
+        vehicle.addModule(transmission);
+        File directory = folder.getRoot();
+
+        SupportedPids discovered = discover(vehicle, directory);
+        assertTrue(discovered.isSupported(0x01, 0x0C));
+        assertTrue(discovered.isSupported(0x01, 0x3F));
+        assertTrue(discovered.isSupported(0x01, 0xA6));
+        assertEquals(2, discovered.getEcus().size());
+
+        // a reconnect sends nothing, so the removed PID is still supported
+        vehicle.removePid(0x0C);
+        SupportedPids cached = discover(vehicle, directory);
+        assertEquals(discovered.format(), cached.format());
+        assertTrue(cached.isSupported(0x01, 0x0C));
+        assertEquals(discovered.getEcus(), cached.getEcus());
+    }
+
+    private static SupportedPids discover(VehicleModel vehicle, File directory) throws Exception {
+        Elm327Simulator elm = new Elm327Simulator(vehicle);
+        elm.setLatency(0, TimeUnit.MILLISECONDS);
+        ObdConnection connection = new ObdConnection(elm.getInputStream(), elm.getOutputStream());
+        new EchoOffCommand().run(connection);
+        FileResponseCache cache = FileResponseCache.forVehicle(directory, vehicle.getVin());
+        connection.setCache(cache);
+        try {
+            return SupportedPids.discover(connection);
+        } finally {
+            cache.close();
+            connection.close();
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package br.ufrn.imd.obd.connection;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import br.ufrn.imd.obd.commands.engine.RPMCommand;
+import br.ufrn.imd.obd.commands.engine.SpeedCommand;
+import br.ufrn.imd.obd.commands.protocol.EchoOffCommand;
+import br.ufrn.imd.obd.commands.temperature.EngineCoolantTemperatureCommand;
+import br.ufrn.imd.obd.simulator.Elm327Simulator;
+import br.ufrn.imd.obd.simulator.VehicleModel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs commands on several simulated adapters at once.
+ */
+public class ObdConnectionTest {
+
+    private static final int ADAPTERS = 4;
+    private static final int REQUESTS = 5;
+    private static final long LATENCY_MS = 10;
+
+    private final List<Elm327Simulator> simulators = new ArrayList<>();
+    private final List<ObdConnection> connections = new ArrayList<>();
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() throws Exception {
+        for (int i = 0; i < ADAPTERS; i++) {
+            VehicleModel model = VehicleModel.idlingCar();
+            model.setRpm(1000 + 100 * i);
+            model.setSpeed(10 + i);
+            Elm327Simulator simulator = new Elm327Simulator(model);
+            simulator.setLatency(LATENCY_MS, TimeUnit.MILLISECONDS);
+            ObdConnection connection = new ObdConnection(simulator.getInputStream(), simulator.getOutputStream());
+            new EchoOffCommand().run(connection);
+            // the first request searches for the protocol, which takes longer
+            new RPMCommand().run(connection);
+            simulators.add(simulator);
+            connections.add(connection);
+        }
+        executor = Executors.newFixedThreadPool(ADAPTERS);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+        for (ObdConnection connection : connections) {
+            connection.close();
+        }
+    }
+
+    @Test
+    public void adaptersAnswerInParallel() throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < ADAPTERS; i++) {
+            readRpm(i).call();
+        }
+        long serial = System.nanoTime() - start;
+
+        List<Future<Void>> futures = new ArrayList<>();
+        start = System.nanoTime();
+        for (int i = 0; i < ADAPTERS; i++) {
+            futures.add(executor.submit(readRpm(i)));
+        }
+        for (Future<Void> future : futures) {
+            future.get();
+        }
+        long parallel = System.nanoTime() - start;
+
+        assertTrue("serial " + serial / 1000000 + " ms, parallel " + parallel / 1000000 + " ms",
+                parallel * 2 < serial);
+    }
+
+    @Test
+    public void commandsOnOneAdapterAreSerialized() throws Exception {
+        final ObdConnection connection = connections.get(0);
+        List<Future<Void>> futures = new ArrayList<>();
+        futures.add(executor.submit(readRpm(0)));
+        futures.add(executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                for (int i = 0; i < REQUESTS; i++) {
+                    SpeedCommand speed = new SpeedCommand();
+                    speed.run(connection);
+                    assertEquals(10, speed.getMetricSpeed());
+                }
+                return null;
+            }
+        }));
+        futures.add(executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                for (int i = 0; i < REQUESTS; i++) {
+                    EngineCoolantTemperatureCommand temperature = new EngineCoolantTemperatureCommand();
+                    temperature.run(connection);
+                    assertEquals(83f, temperature.getTemperature(), 0);
+                }
+                return null;
+            }
+        }));
+        // a request written while another is pending would be answered "STOPPED"
+        for (Future<Void> future : futures) {
+            future.get();
+        }
+        assertEquals(3 * REQUESTS + 2, connection.getMetrics().getTotal().getCount());
+    }
+
+    @Test
+    public void sharesReaderWithDirectRuns() throws Exception {
+        Elm327Simulator simulator = simulators.get(0);
+        ObdConnection connection = connections.get(0);
+        assertSame(ResponseReader.wrap(simulator.getInputStream()), connection.getInputStream());
+
+        for (int i = 0; i < REQUESTS; i++) {
+            RPMCommand rpm = new RPMCommand();
+            rpm.run(connection);
+            assertEquals(1000, rpm.getRPM());
+            SpeedCommand speed = new SpeedCommand();
+            speed.run(simulator.getInputStream(), simulator.getOutputStream());
+            assertEquals(10, speed.getMetricSpeed());
+        }
+    }
+
+    private Callable<Void> readRpm(final int adapter) {
+        return new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                for (int i = 0; i < REQUESTS; i++) {
+                    RPMCommand rpm = new RPMCommand();
+                    rpm.run(connections.get(adapter));
+                    assertEquals(1000 + 100 * adapter, rpm.getRPM());
+                }
+                return null;
+            }
+        };
+    }
+}
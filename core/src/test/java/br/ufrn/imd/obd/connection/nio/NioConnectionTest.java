@@ -0,0 +1,221 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package br.ufrn.imd.obd.connection.nio;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import br.ufrn.imd.obd.commands.ObdCommand;
+import br.ufrn.imd.obd.commands.engine.RPMCommand;
+import br.ufrn.imd.obd.commands.engine.SpeedCommand;
+import br.ufrn.imd.obd.commands.protocol.EchoOffCommand;
+import br.ufrn.imd.obd.enums.ResponseStatus;
+import br.ufrn.imd.obd.simulator.Elm327Server;
+import br.ufrn.imd.obd.simulator.Elm327Simulator;
+import br.ufrn.imd.obd.simulator.VehicleModel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Runs commands on several Wi-Fi adapters served by local {@link Elm327Server}s.
+ */
+public class NioConnectionTest {
+
+    private static final int ADAPTERS = 3;
+    private static final int REQUESTS = 5;
+    private static final long WAIT_SECONDS = 10;
+
+    private final List<Elm327Server> servers = new ArrayList<>();
+    private ExecutorService parsers;
+    private NioTransport transport;
+
+    @Before
+    public void setUp() throws Exception {
+        parsers = Executors.newFixedThreadPool(2);
+        transport = new NioTransport(1, parsers);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        transport.close();
+        parsers.shutdownNow();
+        for (Elm327Server server : servers) {
+            server.close();
+        }
+    }
+
+    @Test
+    public void answersEachAdapter() throws Exception {
+        List<NioConnection> connections = new ArrayList<>();
+        List<List<PendingCommand>> submitted = new ArrayList<>();
+        for (int i = 0; i < ADAPTERS; i++) {
+            VehicleModel model = VehicleModel.idlingCar();
+            model.setRpm(1000 + 100 * i);
+            model.setSpeed(10 + i);
+            NioConnection connection = connect(model, 10);
+            connections.add(connection);
+
+            List<PendingCommand> pending = new ArrayList<>();
+            connection.submit(new EchoOffCommand());
+            for (int j = 0; j < REQUESTS; j++) {
+                pending.add(connection.submit(new RPMCommand()));
+                pending.add(connection.submit(new SpeedCommand()));
+            }
+            submitted.add(pending);
+        }
+
+        for (int i = 0; i < ADAPTERS; i++) {
+            for (PendingCommand pending : submitted.get(i)) {
+                assertEquals(ResponseStatus.OK, pending.get(WAIT_SECONDS, TimeUnit.SECONDS));
+                ObdCommand command = pending.getCommand();
+                if (command instanceof RPMCommand) {
+                    assertEquals(1000 + 100 * i, ((RPMCommand) command).getRPM());
+                } else {
+                    assertEquals(10 + i, ((SpeedCommand) command).getMetricSpeed());
+                }
+            }
+            assertEquals(0, connections.get(i).getQueuedCount());
+            assertEquals(2 * REQUESTS + 1, connections.get(i).getMetrics().getTotal().getCount());
+        }
+    }
+
+    @Test
+    public void discardsLateAnswerAfterTimeout() throws Exception {
+        VehicleModel model = VehicleModel.idlingCar();
+        model.setRpm(1500);
+        model.setSpeed(42);
+        // the first request searches for the protocol, ten times slower
+        NioConnection connection = connect(model, 100);
+        assertEquals(ResponseStatus.OK, connection.submit(new EchoOffCommand()).get(WAIT_SECONDS, TimeUnit.SECONDS));
+
+        CountingListener listener = new CountingListener();
+        connection.setTimeout(20, TimeUnit.MILLISECONDS);
+        PendingCommand rpm = connection.submit(new RPMCommand(), listener);
+        try {
+            rpm.get(WAIT_SECONDS, TimeUnit.SECONDS);
+            fail("RPM should time out");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof SocketTimeoutException);
+        }
+        assertTrue(rpm.getIOException() instanceof SocketTimeoutException);
+
+        // sent only after the prompt that ends the late "41 0C" answer
+        connection.setTimeout(2, TimeUnit.SECONDS);
+        PendingCommand speed = connection.submit(new SpeedCommand(), listener);
+        assertEquals(ResponseStatus.OK, speed.get(WAIT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(42, ((SpeedCommand) speed.getCommand()).getMetricSpeed());
+
+        PendingCommand next = connection.submit(new RPMCommand(), listener);
+        assertEquals(ResponseStatus.OK, next.get(WAIT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(1500, ((RPMCommand) next.getCommand()).getRPM());
+
+        // the timed out command is completed once, and never with the late answer;
+        // the listeners are called after the commands are done
+        assertTrue(listener.calls.await(WAIT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(2, listener.responses.get());
+        assertEquals(1, listener.failures.get());
+    }
+
+    @Test
+    public void failsQueuedCommandsOnClose() throws Exception {
+        NioConnection connection = connect(VehicleModel.idlingCar(), 50);
+        connection.submit(new EchoOffCommand());
+        List<PendingCommand> pending = new ArrayList<>();
+        for (int i = 0; i < REQUESTS; i++) {
+            pending.add(connection.submit(new RPMCommand()));
+        }
+        connection.close();
+
+        for (PendingCommand command : pending) {
+            try {
+                command.get(WAIT_SECONDS, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                assertNotNull(command.getIOException());
+            }
+            assertTrue(command.isDone());
+        }
+        try {
+            connection.submit(new RPMCommand()).get(WAIT_SECONDS, TimeUnit.SECONDS);
+            fail("A closed connection should fail its commands");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void failsCommandsSubmittedAfterTransportClose() throws Exception {
+        NioConnection connection = connect(VehicleModel.idlingCar(), 10);
+        assertEquals(ResponseStatus.OK, connection.submit(new EchoOffCommand()).get(WAIT_SECONDS, TimeUnit.SECONDS));
+        PendingCommand queued = connection.submit(new RPMCommand());
+        transport.close();
+
+        // failed right away, instead of waiting for a selector thread that is gone
+        PendingCommand late = connection.submit(new RPMCommand());
+        assertTrue(late.isDone());
+        assertNotNull(late.getIOException());
+        try {
+            queued.get(WAIT_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            assertNotNull(queued.getIOException());
+        }
+        try {
+            connect(VehicleModel.idlingCar(), 10);
+            fail("A closed transport should refuse connections");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    private NioConnection connect(VehicleModel model, long latencyMs) throws IOException {
+        Elm327Simulator simulator = new Elm327Simulator(model);
+        simulator.setLatency(latencyMs, TimeUnit.MILLISECONDS);
+        Elm327Server server = new Elm327Server(simulator, 0);
+        servers.add(server);
+        return transport.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort()));
+    }
+
+    private static final class CountingListener implements NioConnection.Listener {
+        private final AtomicInteger responses = new AtomicInteger();
+        private final AtomicInteger failures = new AtomicInteger();
+        private final CountDownLatch calls = new CountDownLatch(3);
+
+        @Override
+        public void onResponse(ObdCommand command, ResponseStatus status) {
+            responses.incrementAndGet();
+            calls.countDown();
+        }
+
+        @Override
+        public void onFailure(ObdCommand command, Throwable cause) {
+            failures.incrementAndGet();
+            calls.countDown();
+        }
+    }
+}
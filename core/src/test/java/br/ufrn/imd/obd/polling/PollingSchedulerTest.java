@@ -0,0 +1,71 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package br.ufrn.imd.obd.polling;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import br.ufrn.imd.obd.commands.engine.RPMCommand;
+import br.ufrn.imd.obd.commands.protocol.EchoOffCommand;
+import br.ufrn.imd.obd.connection.ObdConnection;
+import br.ufrn.imd.obd.enums.ResponseStatus;
+import br.ufrn.imd.obd.simulator.Elm327Simulator;
+import br.ufrn.imd.obd.simulator.VehicleModel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Polls commands on a simulated adapter.
+ */
+public class PollingSchedulerTest {
+
+    @Test
+    public void retriesOneShotCommandUntilAnswered() throws Exception {
+        Elm327Simulator simulator = new Elm327Simulator(VehicleModel.idlingCar());
+        simulator.setLatency(0, TimeUnit.MILLISECONDS);
+        ObdConnection connection = new ObdConnection(simulator.getInputStream(), simulator.getOutputStream());
+        new EchoOffCommand().run(connection);
+
+        PollingScheduler scheduler = new PollingScheduler(connection);
+        PollingScheduler.PolledCommand once = scheduler.addOnce(new StoppedOnceCommand());
+        scheduler.runNext();
+        assertEquals(ResponseStatus.STOPPED, once.getLastStatus());
+
+        // run again after the retry delay, then never again
+        scheduler.runNext();
+        assertEquals(ResponseStatus.OK, once.getLastStatus());
+        assertEquals(1, once.getSamples());
+        assertEquals(1, once.getErrors());
+        assertNull(scheduler.runNext());
+    }
+
+    /**
+     * A request interrupted the first time it is run.
+     */
+    private static final class StoppedOnceCommand extends RPMCommand {
+        private boolean stopped = false;
+
+        @Override
+        public ResponseStatus tryRun(ObdConnection connection) throws IOException, InterruptedException {
+            if (!stopped) {
+                stopped = true;
+                setStatus(ResponseStatus.STOPPED);
+                return ResponseStatus.STOPPED;
+            }
+            return super.tryRun(connection);
+        }
+    }
+}
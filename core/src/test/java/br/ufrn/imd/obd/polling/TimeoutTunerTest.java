@@ -0,0 +1,106 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package br.ufrn.imd.obd.polling;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import br.ufrn.imd.obd.commands.engine.RPMCommand;
+import br.ufrn.imd.obd.commands.protocol.EchoOffCommand;
+import br.ufrn.imd.obd.connection.ObdConnection;
+import br.ufrn.imd.obd.enums.AdaptiveTiming;
+import br.ufrn.imd.obd.enums.ResponseStatus;
+import br.ufrn.imd.obd.simulator.Elm327Simulator;
+import br.ufrn.imd.obd.simulator.VehicleModel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tunes the timeout of a simulated adapter whose vehicle slows down.
+ */
+public class TimeoutTunerTest {
+
+    private static final int SAMPLES = 8;
+    private static final int DEFAULT_TIMEOUT_MS = 200;
+
+    private Elm327Simulator simulator;
+    private ObdConnection connection;
+    private TimeoutTuner tuner;
+
+    @Before
+    public void setUp() throws Exception {
+        simulator = new Elm327Simulator(VehicleModel.idlingCar());
+        simulator.setLatency(5, TimeUnit.MILLISECONDS);
+        connection = new ObdConnection(simulator.getInputStream(), simulator.getOutputStream());
+        new EchoOffCommand().run(connection);
+        // the first request searches for the protocol, which takes longer
+        new RPMCommand().run(connection);
+        tuner = new TimeoutTuner(connection);
+        tuner.setSampling(SAMPLES, SAMPLES);
+    }
+
+    @Test
+    public void raisesTimeoutAfterCutOffAnswer() throws Exception {
+        for (int i = 0; i < SAMPLES; i++) {
+            assertFalse(runRpm());
+        }
+        int lowered = tuner.getCurrentTimeoutMs();
+        assertTrue("lowered to " + lowered + " ms", lowered > 0 && lowered < DEFAULT_TIMEOUT_MS);
+
+        // the vehicle now answers after the lowered timeout
+        simulator.setLatency(40, TimeUnit.MILLISECONDS);
+        assertTrue(runRpm());
+        assertEquals(DEFAULT_TIMEOUT_MS, tuner.getCurrentTimeoutMs());
+        assertEquals(AdaptiveTiming.ADAPTIVE_TIMING_AUTO_1, tuner.getCurrentMode());
+
+        for (int i = 0; i < SAMPLES; i++) {
+            assertFalse(runRpm());
+        }
+        assertTrue("tuned to " + tuner.getCurrentTimeoutMs() + " ms", tuner.getCurrentTimeoutMs() > lowered);
+    }
+
+    @Test
+    public void keepsPolledCommandCutOffByTuner() throws Exception {
+        PollingScheduler scheduler = new PollingScheduler(connection);
+        scheduler.setTimeoutTuner(tuner);
+        PollingScheduler.PolledCommand rpm = scheduler.add(new RPMCommand(), 1000);
+        for (int i = 0; i < SAMPLES; i++) {
+            scheduler.runNext();
+        }
+        assertTrue(tuner.getCurrentTimeoutMs() < DEFAULT_TIMEOUT_MS);
+
+        simulator.setLatency(40, TimeUnit.MILLISECONDS);
+        scheduler.runNext();
+        assertEquals(ResponseStatus.NO_DATA, rpm.getLastStatus());
+        assertEquals(1, scheduler.getPolledCommands().size());
+
+        scheduler.runNext();
+        assertEquals(ResponseStatus.OK, rpm.getLastStatus());
+    }
+
+    /**
+     * @return true if the tuner took the response as cut off.
+     */
+    private boolean runRpm() throws Exception {
+        RPMCommand rpm = new RPMCommand();
+        rpm.tryRun(connection);
+        boolean cutOff = tuner.record(rpm);
+        tuner.tuneIfNeeded();
+        assertEquals(cutOff ? ResponseStatus.NO_DATA : ResponseStatus.OK, rpm.getStatus());
+        return cutOff;
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package br.ufrn.imd.obd.utils;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Splits adapter response fixtures into messages.
+ */
+public class FrameReassemblerTest {
+
+    @Test
+    public void splitsCanResponseByEcu() {
+        Map<String, byte[]> messages = FrameReassembler.byEcu("SEARCHING...\r7E9 04 41 0C 1A F8\r7E8 04 41 0C 0F A0\r\r>");
+        assertEquals("{7E8=410C0FA0, 7E9=410C1AF8}", toString(messages));
+    }
+
+    @Test
+    public void joinsMultiFrameMessageOfEachEcu() {
+        Map<String, byte[]> messages = FrameReassembler.byEcu("7E8 10 14 49 02 01 31 44 34\r"
+                + "7E9 04 41 0C 1A F8\r"
+                + "7E8 21 47 50 30 30 52 35 35\r"
+                + "7E8 22 42 31 32 33 34 35 36\r\r>");
+        assertEquals("{7E8=4902013144344750303052353542313233343536, 7E9=410C1AF8}", toString(messages));
+    }
+
+    @Test
+    public void splitsExtendedCanResponseByEcu() {
+        Map<String, byte[]> messages = FrameReassembler.byEcu("18 DA F1 10 04 41 0C 0F A0\r18 DA F1 18 03 41 0D 4D\r\r>");
+        assertEquals("{18DAF110=410C0FA0, 18DAF118=410D4D}", toString(messages));
+    }
+
+    @Test
+    public void splitsLegacyResponseBySource() {
+        // priority, target and source bytes, then the data and the checksum
+        Map<String, byte[]> messages = FrameReassembler.byEcu("48 6B 10 41 0C 0F A0 D3\r48 6B 18 41 0C 1A F8 5A\r\r>");
+        assertEquals("{10=410C0FA0, 18=410C1AF8}", toString(messages));
+    }
+
+    @Test
+    public void keepsNegativeResponses() {
+        assertEquals("{7E8=7F0112}", toString(FrameReassembler.byEcu("7E8 03 7F 01 12\r\r>")));
+    }
+
+    @Test
+    public void keepsEachLineAsMessage() {
+        assertEquals("[410C0FA0, 410C1AF8]", toString(FrameReassembler.messages("41 0C 0F A0\r41 0C 1A F8\r\r>")));
+    }
+
+    @Test
+    public void joinsNumberedFrames() {
+        List<byte[]> messages = FrameReassembler.messages("SEARCHING...\r014\r0: 49 02 01 31 44 34\r"
+                + "1: 47 50 30 30 52 35 35\r2: 42 31 32 33 34 35 36\r\r>");
+        assertEquals("[4902013144344750303052353542313233343536]", toString(messages));
+    }
+
+    @Test
+    public void dropsPaddingOfLastFrame() {
+        List<byte[]> messages = FrameReassembler.messages("00A\r0: 43 04 01 33 C1 23\r1: 01 01 00 00 00 00 00\r43 00\r\r>");
+        assertEquals("[43040133C12301010000, 4300]", toString(messages));
+    }
+
+    @Test
+    public void joinsCompactedFrames() {
+        List<byte[]> messages = FrameReassembler.messages("SEARCHING...0140:4902013144341:47503030523535 2:42313233343536");
+        assertEquals("[4902013144344750303052353542313233343536]", toString(messages));
+    }
+
+    @Test
+    public void stopsAtPrompt() {
+        assertEquals("[410C0FA0]", toString(FrameReassembler.messages("41 0C 0F A0\r\r>41 0D 00")));
+        assertEquals("[]", toString(FrameReassembler.messages("NO DATA\r\r>")));
+    }
+
+    private static String toHex(byte[] message) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : message) {
+            hex.append(String.format("%02X", b & 0xFF));
+        }
+        return hex.toString();
+    }
+
+    private static String toString(Map<String, byte[]> messages) {
+        StringBuilder text = new StringBuilder("{");
+        for (Map.Entry<String, byte[]> entry : messages.entrySet()) {
+            if (text.length() > 1) {
+                text.append(", ");
+            }
+            text.append(entry.getKey()).append('=').append(toHex(entry.getValue()));
+        }
+        return text.append('}').toString();
+    }
+
+    private static String toString(List<byte[]> messages) {
+        StringBuilder text = new StringBuilder("[");
+        for (byte[] message : messages) {
+            if (text.length() > 1) {
+                text.append(", ");
+            }
+            text.append(toHex(message));
+        }
+        return text.append(']').toString();
+    }
+}
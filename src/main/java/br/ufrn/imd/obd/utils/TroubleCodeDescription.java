@@ -13,60 +13,98 @@
 package br.ufrn.imd.obd.utils;
 
 import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.content.res.Resources;
 import android.util.Log;
 
-import org.json.JSONException;
-import org.json.JSONObject;
-
-import java.io.BufferedReader;
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
 
 import br.ufrn.imd.obd.R;
 
 /**
  * Class to provide a description to a trouble code.
+ * <p>
+ * Descriptions are looked up in the prebuilt {@link TroubleCodeIndex} of
+ * res/raw/trouble_code_index.bin, which is memory-mapped from the APK
+ * (it is stored uncompressed) and loaded on the first lookup, not by
+ * {@link #getInstance(Context)}.
  */
 public class TroubleCodeDescription {
 
     private static final String TAG = TroubleCodeDescription.class.getName();
-    private static TroubleCodeDescription instance = null;
-    private JSONObject troubleCodes = new JSONObject();
-
-    /**
-     * Empty private constructor to prevent instantiation
-     */
-    private TroubleCodeDescription() {
-    }
+    private static volatile TroubleCodeDescription instance = null;
+    private final Context context;
+    private volatile TroubleCodeIndex index = null;
+    private boolean failed = false;
 
     /**
      * Default constructor
      */
     private TroubleCodeDescription(Context context) {
-        try (BufferedReader br = new BufferedReader(new InputStreamReader(context.getResources().openRawResource(R.raw.trouble_codes)))) {
-            StringBuilder sb = new StringBuilder();
-            String line;
-
-            while ((line = br.readLine()) != null) {
-                sb.append(line);
-            }
-
-            troubleCodes = new JSONObject(sb.toString());
-        } catch (IOException | JSONException e) {
-            Log.e(TAG, "TroubleCodeDescription: Error", e);
-        }
+        this.context = context;
     }
 
     public static TroubleCodeDescription getInstance(Context context) {
-        if (instance == null) {
-            instance = new TroubleCodeDescription(context);
+        TroubleCodeDescription result = instance;
+        if (result == null) {
+            synchronized (TroubleCodeDescription.class) {
+                result = instance;
+                if (result == null) {
+                    Context application = context.getApplicationContext();
+                    result = new TroubleCodeDescription(application != null ? application : context);
+                    instance = result;
+                }
+            }
         }
-
-        return instance;
+        return result;
     }
 
     public String getTroubleCodeDescription(String dtc) {
-        return troubleCodes.optString(dtc);
+        TroubleCodeIndex codes = getIndex();
+        String description = codes != null ? codes.getDescription(dtc) : null;
+        return description != null ? description : "";
     }
 
+    private TroubleCodeIndex getIndex() {
+        TroubleCodeIndex result = index;
+        if (result == null) {
+            synchronized (this) {
+                result = index;
+                if (result == null && !failed) {
+                    try {
+                        result = loadIndex();
+                        index = result;
+                    } catch (IOException e) {
+                        failed = true;
+                        Log.e(TAG, "TroubleCodeDescription: Error", e);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private TroubleCodeIndex loadIndex() throws IOException {
+        AssetFileDescriptor fd;
+        try {
+            fd = context.getResources().openRawResourceFd(R.raw.trouble_code_index);
+        } catch (Resources.NotFoundException e) {
+            fd = null;  // compressed in the APK: it can't be mapped
+        }
+        if (fd == null) {
+            try (InputStream in = context.getResources().openRawResource(R.raw.trouble_code_index)) {
+                return TroubleCodeIndex.read(in);
+            }
+        }
+
+        try (FileInputStream in = fd.createInputStream()) {
+            return new TroubleCodeIndex(in.getChannel().map(FileChannel.MapMode.READ_ONLY,
+                    fd.getStartOffset(), fd.getLength()));
+        } finally {
+            fd.close();
+        }
+    }
 }